@@ -0,0 +1,91 @@
+package com.moepus.serverwarashi.bench;
+
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * 基准测试用的合成 ticket 分布。
+ * 只生成区块坐标，每个元素代表一个 ticket，同一区块可以出现多次；固定种子保证各版本结果可比。
+ */
+public final class TicketFixtures {
+    private static final long SEED = 0x5EED_7A11L;
+
+    private TicketFixtures() {
+    }
+
+    /**
+     * 空间分布。
+     */
+    public enum Distribution {
+        // 散布在大范围内的孤立加载器
+        SCATTERED,
+        // 少量大基地，每个基地是一块致密区域
+        BASES,
+        // 沿主干道排布的长条
+        HIGHWAY
+    }
+
+    /**
+     * 生成指定数量的 ticket 区块坐标。
+     *
+     * @param ticketCount  ticket 数
+     * @param distribution 空间分布
+     * @return {@link ChunkPos#asLong} 形式的区块坐标
+     */
+    public static long[] tickets(int ticketCount, Distribution distribution) {
+        SplittableRandom random = new SplittableRandom(SEED ^ ((long) ticketCount << 8) ^ distribution.ordinal());
+        long[] chunks = new long[ticketCount];
+        switch (distribution) {
+            case SCATTERED -> {
+                int radius = (int) Math.sqrt(ticketCount) * 64;
+                for (int i = 0; i < ticketCount; i++) {
+                    chunks[i] = ChunkPos.asLong(random.nextInt(-radius, radius), random.nextInt(-radius, radius));
+                }
+            }
+            case BASES -> {
+                int baseCount = Math.max(1, ticketCount / 200);
+                int radius = (int) Math.sqrt(baseCount) * 256;
+                int[] baseX = new int[baseCount];
+                int[] baseZ = new int[baseCount];
+                for (int i = 0; i < baseCount; i++) {
+                    baseX[i] = random.nextInt(-radius, radius);
+                    baseZ[i] = random.nextInt(-radius, radius);
+                }
+                for (int i = 0; i < ticketCount; i++) {
+                    int base = random.nextInt(baseCount);
+                    chunks[i] = ChunkPos.asLong(baseX[base] + random.nextInt(-6, 7), baseZ[base] + random.nextInt(-6, 7));
+                }
+            }
+            case HIGHWAY -> {
+                for (int i = 0; i < ticketCount; i++) {
+                    int along = i / 4 - ticketCount / 8;
+                    chunks[i] = i % 2 == 0
+                            ? ChunkPos.asLong(along, random.nextInt(-1, 2))
+                            : ChunkPos.asLong(random.nextInt(-1, 2), along);
+                }
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * 去重后的区块坐标，保持首次出现的顺序。
+     *
+     * @param tickets ticket 区块坐标
+     * @return 不重复的区块坐标
+     */
+    public static long[] distinctChunks(long[] tickets) {
+        LongOpenHashSet seen = new LongOpenHashSet(tickets.length);
+        long[] chunks = new long[tickets.length];
+        int size = 0;
+        for (long chunk : tickets) {
+            if (seen.add(chunk)) {
+                chunks[size++] = chunk;
+            }
+        }
+        return Arrays.copyOf(chunks, size);
+    }
+}
@@ -0,0 +1,43 @@
+package com.moepus.serverwarashi.common.group;
+
+import com.moepus.serverwarashi.bench.TicketFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 区块空间聚类基准，{@link ChunkGroupCollector} 聚合阶段与自动分桶的基地锚定共用这一步。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkClustererBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int ticketCount;
+
+    @Param({"SCATTERED", "BASES", "HIGHWAY"})
+    public TicketFixtures.Distribution distribution;
+
+    @Param({"1", "2", "4", "16"})
+    public int clusterDistance;
+
+    private long[] chunks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        chunks = TicketFixtures.distinctChunks(TicketFixtures.tickets(ticketCount, distribution));
+    }
+
+    @Benchmark
+    public int[] clusterChunks() {
+        return ChunkClusterer.clusterChunks(chunks, clusterDistance);
+    }
+}
@@ -0,0 +1,58 @@
+package com.moepus.serverwarashi.common.group;
+
+import com.moepus.serverwarashi.bench.TicketFixtures;
+import com.moepus.serverwarashi.common.ticket.TicketOwner;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChunkGroupCollector#aggregate} 基准：按 owner 归组、排序与可选聚类。
+ * 原始数据离线构造：每 4x4 区块为一个 owner，负载计数随机。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkGroupAggregateBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int ticketCount;
+
+    @Param({"SCATTERED", "BASES", "HIGHWAY"})
+    public TicketFixtures.Distribution distribution;
+
+    // 0 表示关闭聚类，16 为配置允许的最大值
+    @Param({"0", "2", "16"})
+    public int clusterDistance;
+
+    private ChunkGroupCollector.RawCapture raw;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        long[] chunks = TicketFixtures.distinctChunks(TicketFixtures.tickets(ticketCount, distribution));
+        SplittableRandom random = new SplittableRandom(chunks.length);
+        Long2ObjectOpenHashMap<TicketOwner<?>> owners = new Long2ObjectOpenHashMap<>();
+        raw = new ChunkGroupCollector.RawCapture(chunks.length, clusterDistance);
+        for (long chunkPos : chunks) {
+            long region = ChunkPos.asLong(ChunkPos.getX(chunkPos) >> 2, ChunkPos.getZ(chunkPos) >> 2);
+            TicketOwner<?> owner = owners.computeIfAbsent(region,
+                    key -> new TicketOwner<>("Block{bench:loader}", key, null));
+            raw.add(chunkPos, owner, random.nextInt(64), random.nextInt(16));
+        }
+    }
+
+    @Benchmark
+    public ChunkGroupSnapshot.SnapshotData aggregate() {
+        return ChunkGroupCollector.aggregate(raw);
+    }
+}
@@ -0,0 +1,104 @@
+package com.moepus.serverwarashi.modules.bucket;
+
+import com.moepus.serverwarashi.bench.TicketFixtures;
+import it.unimi.dsi.fastutil.longs.Long2IntLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.server.level.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 自动分桶热路径基准：排序键计算（含基地锚定）与 Morton 切桶。
+ * ticket 本身依赖 mixin，游戏外无法构造，这里以 null 占位，只测与 ticket 内容无关的部分。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TicketBucketBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int ticketCount;
+
+    @Param({"SCATTERED", "BASES", "HIGHWAY"})
+    public TicketFixtures.Distribution distribution;
+
+    // 0 表示关闭基地聚类，16 为配置允许的最大值
+    @Param({"0", "2", "16"})
+    public int clusterDistance;
+
+    @Param({"48"})
+    public int groupSize;
+
+    @Param({"64"})
+    public int proximityThreshold;
+
+    private LongArrayList chunks;
+    private List<List<Ticket<?>>> ticketSets;
+    private TicketBucketService.BaseCache warmCache;
+    private List<TicketBucketService.TicketEntry> sortedEntries;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Long2IntLinkedOpenHashMap counts = new Long2IntLinkedOpenHashMap();
+        for (long chunkPos : TicketFixtures.tickets(ticketCount, distribution)) {
+            counts.addTo(chunkPos, 1);
+        }
+        chunks = new LongArrayList(counts.size());
+        ticketSets = new ArrayList<>(counts.size());
+        for (Long2IntMap.Entry entry : counts.long2IntEntrySet()) {
+            chunks.add(entry.getLongKey());
+            ticketSets.add(Collections.nCopies(entry.getIntValue(), null));
+        }
+        warmCache = new TicketBucketService.BaseCache();
+        sortedEntries = TicketBucketService.sortKeys(chunks, ticketSets, warmCache, clusterDistance, groupSize);
+        sortedEntries.sort(Comparator.comparingLong(TicketBucketService.TicketEntry::morton));
+    }
+
+    /**
+     * 稳态的排序键计算：区块集合不变，命中聚类缓存。
+     */
+    @Benchmark
+    public List<TicketBucketService.TicketEntry> sortKeys() {
+        return TicketBucketService.sortKeys(chunks, ticketSets, warmCache, clusterDistance, groupSize);
+    }
+
+    /**
+     * 区块集合变化后的排序键计算：每次都重新聚类。
+     */
+    @Benchmark
+    public List<TicketBucketService.TicketEntry> sortKeysRecluster() {
+        return TicketBucketService.sortKeys(chunks, ticketSets, new TicketBucketService.BaseCache(),
+                clusterDistance, groupSize);
+    }
+
+    /**
+     * 一次完整分桶：排序后切桶。
+     */
+    @Benchmark
+    public List<List<TicketBucketService.TicketEntry>> sortAndDivide() {
+        List<TicketBucketService.TicketEntry> entries = new ArrayList<>(sortedEntries);
+        entries.sort(Comparator.comparingLong(TicketBucketService.TicketEntry::morton));
+        return TicketMorton.divideChunkBuckets(entries, groupSize, proximityThreshold);
+    }
+
+    /**
+     * 仅切桶，输入已排序。
+     */
+    @Benchmark
+    public List<List<TicketBucketService.TicketEntry>> divideChunkBuckets() {
+        return TicketMorton.divideChunkBuckets(sortedEntries, groupSize, proximityThreshold);
+    }
+}
@@ -1,8 +1,12 @@
 package com.moepus.serverwarashi;
 
 import com.moepus.serverwarashi.modules.bucket.TicketBucketRuntime;
+import com.moepus.serverwarashi.modules.budget.TicketBudgetRuntime;
+import com.moepus.serverwarashi.modules.dedupe.TicketDedupeRuntime;
 import com.moepus.serverwarashi.modules.performance.TicketPerfRuntime;
 import com.moepus.serverwarashi.modules.idlefreeze.IdleFreezeRuntime;
+import com.moepus.serverwarashi.modules.metrics.MetricsRuntime;
+import com.moepus.serverwarashi.modules.spawnpolicy.SpawnPolicyRuntime;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
 import net.neoforged.bus.api.SubscribeEvent;
@@ -25,23 +29,32 @@ public final class ServerWarashiEvents {
     @SubscribeEvent
     public static void onServerStarted(ServerStartedEvent event) {
         TicketPerfRuntime.rebuildSnapshots(event.getServer());
+        TicketPerfRuntime.openHistory(event.getServer());
+        TicketPerfRuntime.startHangSampler(event.getServer());
         IdleFreezeRuntime.onServerStarted(event.getServer());
+        MetricsRuntime.onServerStarted(event.getServer());
     }
 
     @SubscribeEvent
     public static void onServerTickPre(ServerTickEvent.Pre event) {
         TicketBucketRuntime.onServerTickPre();
+        TicketPerfRuntime.onServerTickPre();
     }
 
     @SubscribeEvent
     public static void onServerTickPost(ServerTickEvent.Post event) {
         TicketPerfRuntime.tickSessions(event.getServer());
+        MetricsRuntime.onServerTickPost(event.getServer());
     }
 
     @SubscribeEvent
     public static void onLevelTickPre(LevelTickEvent.Pre event) {
         if (event.getLevel() instanceof ServerLevel serverLevel) {
             TicketBucketRuntime.onLevelTickPre(serverLevel);
+            TicketDedupeRuntime.onLevelTickPre(serverLevel);
+            SpawnPolicyRuntime.onLevelTickPre(serverLevel);
+            TicketBudgetRuntime.onLevelTickPre(serverLevel);
+            TicketDedupeRuntime.releaseUncovered(serverLevel);
         }
     }
 
@@ -55,6 +68,10 @@ public final class ServerWarashiEvents {
     @SubscribeEvent
     public static void onServerStopped(ServerStoppedEvent event) {
         TicketBucketRuntime.clearRuntimeState();
+        TicketDedupeRuntime.clearRuntimeState();
+        SpawnPolicyRuntime.clearRuntimeState();
+        TicketBudgetRuntime.clearRuntimeState();
         TicketPerfRuntime.clearSnapshots();
+        MetricsRuntime.clearRuntimeState();
     }
 }
@@ -0,0 +1,101 @@
+package com.moepus.serverwarashi.command;
+
+import com.moepus.serverwarashi.config.BudgetConfig;
+import com.moepus.serverwarashi.modules.budget.TicketBudgetApi;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.arguments.DoubleArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+
+/**
+ * 耗时预算限流命令入口。
+ * 层级：命令入口层。
+ * 上游：WarashiCommands。下游：TicketBudgetApi / BudgetConfig。
+ */
+public final class BudgetCommands {
+    private BudgetCommands() {
+    }
+
+    /**
+     * 将 {@code /warashi budget ...} 命令挂载到根节点。
+     *
+     * @param root 根命令节点
+     */
+    public static void register(LiteralArgumentBuilder<CommandSourceStack> root) {
+        root.then(net.minecraft.commands.Commands.literal("budget")
+                .then(net.minecraft.commands.Commands.literal("status")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    TicketBudgetApi.status(context.getSource().getLevel()), false);
+                            return 1;
+                        })
+                )
+                .then(net.minecraft.commands.Commands.literal("enabled")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    Component.literal("budget = " + BudgetConfig.enabled()), false);
+                            return 1;
+                        })
+                        .then(net.minecraft.commands.Commands.argument("enabled", BoolArgumentType.bool())
+                                .executes(context -> {
+                                    boolean enabled = BoolArgumentType.getBool(context, "enabled");
+                                    BudgetConfig.setEnabled(enabled);
+                                    BudgetConfig.save();
+                                    if (!enabled) {
+                                        TicketBudgetApi.clearAll(context.getSource().getLevel());
+                                    }
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal("budget set to " + BudgetConfig.enabled()), false);
+                                    return 1;
+                                })
+                        )
+                )
+                .then(net.minecraft.commands.Commands.literal("mspt")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    Component.literal("budget mspt = " + BudgetConfig.budgetMspt()), false);
+                            return 1;
+                        })
+                        .then(net.minecraft.commands.Commands.argument("mspt", DoubleArgumentType.doubleArg(0.5, 1000.0))
+                                .executes(context -> {
+                                    BudgetConfig.setBudgetMspt(DoubleArgumentType.getDouble(context, "mspt"));
+                                    BudgetConfig.save();
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal("budget mspt set to " + BudgetConfig.budgetMspt()), false);
+                                    return 1;
+                                })
+                        )
+                )
+                .then(net.minecraft.commands.Commands.literal("exempt")
+                        .then(net.minecraft.commands.Commands.literal("add")
+                                .then(net.minecraft.commands.Commands.argument("owner", StringArgumentType.greedyString())
+                                        .executes(context -> {
+                                            String owner = StringArgumentType.getString(context, "owner");
+                                            boolean added = BudgetConfig.addExemptOwner(owner);
+                                            BudgetConfig.save();
+                                            context.getSource().sendSuccess(() -> Component.literal(added
+                                                    ? "budget exempt added: " + owner
+                                                    : "budget exempt already present: " + owner), false);
+                                            return added ? 1 : 0;
+                                        })
+                                )
+                        )
+                        .then(net.minecraft.commands.Commands.literal("remove")
+                                .then(net.minecraft.commands.Commands.argument("owner", StringArgumentType.greedyString())
+                                        .executes(context -> {
+                                            String owner = StringArgumentType.getString(context, "owner");
+                                            boolean removed = BudgetConfig.removeExemptOwner(owner);
+                                            BudgetConfig.save();
+                                            context.getSource().sendSuccess(() -> Component.literal(removed
+                                                    ? "budget exempt removed: " + owner
+                                                    : "budget exempt not found: " + owner), false);
+                                            return removed ? 1 : 0;
+                                        })
+                                )
+                        )
+                )
+        );
+    }
+}
@@ -0,0 +1,55 @@
+package com.moepus.serverwarashi.command;
+
+import com.moepus.serverwarashi.config.TicketDedupeConfig;
+import com.moepus.serverwarashi.modules.dedupe.TicketDedupeApi;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+
+/**
+ * 冗余 ticket 去重命令入口。
+ * 层级：命令入口层。
+ * 上游：WarashiCommands。下游：TicketDedupeApi / TicketDedupeConfig。
+ */
+public final class DedupeCommands {
+    private DedupeCommands() {
+    }
+
+    /**
+     * 将 {@code /warashi dedupe ...} 命令挂载到根节点。
+     *
+     * @param root 根命令节点
+     */
+    public static void register(LiteralArgumentBuilder<CommandSourceStack> root) {
+        root.then(net.minecraft.commands.Commands.literal("dedupe")
+                .then(net.minecraft.commands.Commands.literal("scan")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    TicketDedupeApi.scan(context.getSource().getLevel()), false);
+                            return 1;
+                        })
+                )
+                .then(net.minecraft.commands.Commands.literal("enabled")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    Component.literal("dedupe = " + TicketDedupeConfig.enabled()), false);
+                            return 1;
+                        })
+                        .then(net.minecraft.commands.Commands.argument("enabled", BoolArgumentType.bool())
+                                .executes(context -> {
+                                    boolean enabled = BoolArgumentType.getBool(context, "enabled");
+                                    TicketDedupeConfig.setEnabled(enabled);
+                                    TicketDedupeConfig.save();
+                                    if (!enabled) {
+                                        TicketDedupeApi.clearAll(context.getSource().getLevel());
+                                    }
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal("dedupe set to " + TicketDedupeConfig.enabled()), false);
+                                    return 1;
+                                })
+                        )
+                )
+        );
+    }
+}
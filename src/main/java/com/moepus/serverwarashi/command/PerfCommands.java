@@ -1,7 +1,9 @@
 package com.moepus.serverwarashi.command;
 
 import com.moepus.serverwarashi.modules.performance.TicketPerfApi;
+import com.mojang.brigadier.arguments.BoolArgumentType;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.builder.LiteralArgumentBuilder;
 import com.mojang.brigadier.context.CommandContext;
 import com.moepus.serverwarashi.config.TicketPerfConfig;
@@ -9,6 +11,7 @@ import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.commands.arguments.coordinates.BlockPosArgument;
 import net.minecraft.core.BlockPos;
+import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerPlayer;
 
 import java.util.UUID;
@@ -19,6 +22,9 @@ import java.util.UUID;
  * 上游：WarashiCommands。下游：TicketPerfApi。
  */
 public final class PerfCommands {
+    // (2r+1)^2 不超过区域分析的区块上限
+    private static final int MAX_RADIUS_CHUNKS = 127;
+
     private PerfCommands() {
     }
 
@@ -41,6 +47,48 @@ public final class PerfCommands {
                 .then(net.minecraft.commands.Commands.literal("dump")
                         .executes(PerfCommands::dumpTickets)
                 )
+                .then(net.minecraft.commands.Commands.literal("sampler")
+                        .executes(PerfCommands::samplerReport)
+                        .then(net.minecraft.commands.Commands.literal("enabled")
+                                .executes(context -> {
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal("sampler = " + TicketPerfConfig.samplerEnabled()), false);
+                                    return 1;
+                                })
+                                .then(net.minecraft.commands.Commands.argument("enabled", BoolArgumentType.bool())
+                                        .executes(context -> {
+                                            TicketPerfConfig.setSamplerEnabled(BoolArgumentType.getBool(context, "enabled"));
+                                            TicketPerfConfig.save();
+                                            context.getSource().sendSuccess(() ->
+                                                    Component.literal("sampler set to " + TicketPerfConfig.samplerEnabled()), false);
+                                            return 1;
+                                        })
+                                )
+                        )
+                )
+                .then(net.minecraft.commands.Commands.literal("history")
+                        .then(net.minecraft.commands.Commands.argument("group", StringArgumentType.greedyString())
+                                .executes(PerfCommands::history)
+                        )
+                )
+                .then(net.minecraft.commands.Commands.literal("spike")
+                        .then(net.minecraft.commands.Commands.literal("enabled")
+                                .executes(context -> {
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal("spike capture = " + TicketPerfConfig.spikeCaptureEnabled()), false);
+                                    return 1;
+                                })
+                                .then(net.minecraft.commands.Commands.argument("enabled", BoolArgumentType.bool())
+                                        .executes(context -> {
+                                            TicketPerfConfig.setSpikeCaptureEnabled(BoolArgumentType.getBool(context, "enabled"));
+                                            TicketPerfConfig.save();
+                                            context.getSource().sendSuccess(() ->
+                                                    Component.literal("spike capture set to " + TicketPerfConfig.spikeCaptureEnabled()), false);
+                                            return 1;
+                                        })
+                                )
+                        )
+                )
                 .then(net.minecraft.commands.Commands.literal("analyze")
                         .then(net.minecraft.commands.Commands.literal("start")
                                 .then(net.minecraft.commands.Commands.literal("all")
@@ -63,6 +111,24 @@ public final class PerfCommands {
                                                 )
                                         )
                                 )
+                                .then(net.minecraft.commands.Commands.literal("region")
+                                        .then(net.minecraft.commands.Commands.argument("from", BlockPosArgument.blockPos())
+                                                .then(net.minecraft.commands.Commands.argument("to", BlockPosArgument.blockPos())
+                                                        .executes(ctx -> startPerfRegion(ctx, null))
+                                                        .then(net.minecraft.commands.Commands.argument("seconds", IntegerArgumentType.integer(1, 3600))
+                                                                .executes(ctx -> startPerfRegion(ctx, "seconds"))
+                                                        )
+                                                )
+                                        )
+                                )
+                                .then(net.minecraft.commands.Commands.literal("radius")
+                                        .then(net.minecraft.commands.Commands.argument("radius", IntegerArgumentType.integer(0, MAX_RADIUS_CHUNKS))
+                                                .executes(ctx -> startPerfRadius(ctx, null))
+                                                .then(net.minecraft.commands.Commands.argument("seconds", IntegerArgumentType.integer(1, 3600))
+                                                        .executes(ctx -> startPerfRadius(ctx, "seconds"))
+                                                )
+                                        )
+                                )
                         )
                         .then(net.minecraft.commands.Commands.literal("stop")
                                 .executes(PerfCommands::stopPerfGroup)
@@ -81,6 +147,30 @@ public final class PerfCommands {
         return runStartAt(context, pos, secondsArg);
     }
 
+    private static int startPerfRegion(CommandContext<CommandSourceStack> context, String secondsArg) {
+        BlockPos from = BlockPosArgument.getBlockPos(context, "from");
+        BlockPos to = BlockPosArgument.getBlockPos(context, "to");
+        int seconds = secondsArg == null
+                ? defaultAnalyzeSeconds()
+                : IntegerArgumentType.getInteger(context, secondsArg);
+        UUID playerId = getPlayerId(context.getSource());
+        context.getSource().sendSuccess(() ->
+                TicketPerfApi.startRegion(context.getSource().getLevel(), from, to, seconds, playerId), false);
+        return 1;
+    }
+
+    private static int startPerfRadius(CommandContext<CommandSourceStack> context, String secondsArg) {
+        BlockPos center = BlockPos.containing(context.getSource().getPosition());
+        int radius = IntegerArgumentType.getInteger(context, "radius");
+        int seconds = secondsArg == null
+                ? defaultAnalyzeSeconds()
+                : IntegerArgumentType.getInteger(context, secondsArg);
+        UUID playerId = getPlayerId(context.getSource());
+        context.getSource().sendSuccess(() ->
+                TicketPerfApi.startRadius(context.getSource().getLevel(), center, radius, seconds, playerId), false);
+        return 1;
+    }
+
     private static int runStartAt(CommandContext<CommandSourceStack> context,
                                   BlockPos pos,
                                   String secondsArg) {
@@ -144,8 +234,23 @@ public final class PerfCommands {
     }
 
     private static int dumpTickets(CommandContext<CommandSourceStack> context) {
+        CommandSourceStack source = context.getSource();
+        source.sendSuccess(() ->
+                TicketPerfApi.dumpTickets(source.getLevel(), ChunkGroupSnapshot.PauseMode.ALL, true,
+                        message -> source.sendSuccess(() -> message, false)), true);
+        return 1;
+    }
+
+    private static int samplerReport(CommandContext<CommandSourceStack> context) {
         context.getSource().sendSuccess(() ->
-                TicketPerfApi.dumpTickets(context.getSource().getLevel(), ChunkGroupSnapshot.PauseMode.ALL, true), true);
+                TicketPerfApi.samplerReport(context.getSource().getLevel()), false);
+        return 1;
+    }
+
+    private static int history(CommandContext<CommandSourceStack> context) {
+        String group = StringArgumentType.getString(context, "group");
+        CommandSourceStack source = context.getSource();
+        TicketPerfApi.history(source.getLevel(), group, message -> source.sendSuccess(() -> message, false));
         return 1;
     }
 
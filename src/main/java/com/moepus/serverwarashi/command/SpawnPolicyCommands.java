@@ -0,0 +1,55 @@
+package com.moepus.serverwarashi.command;
+
+import com.moepus.serverwarashi.config.SpawnPolicyConfig;
+import com.moepus.serverwarashi.modules.spawnpolicy.SpawnPolicyApi;
+import com.mojang.brigadier.arguments.BoolArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.network.chat.Component;
+
+/**
+ * 自然生成抑制命令入口。
+ * 层级：命令入口层。
+ * 上游：WarashiCommands。下游：SpawnPolicyApi / SpawnPolicyConfig。
+ */
+public final class SpawnPolicyCommands {
+    private SpawnPolicyCommands() {
+    }
+
+    /**
+     * 将 {@code /warashi spawn ...} 命令挂载到根节点。
+     *
+     * @param root 根命令节点
+     */
+    public static void register(LiteralArgumentBuilder<CommandSourceStack> root) {
+        root.then(net.minecraft.commands.Commands.literal("spawn")
+                .then(net.minecraft.commands.Commands.literal("scan")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    SpawnPolicyApi.scan(context.getSource().getLevel()), false);
+                            return 1;
+                        })
+                )
+                .then(net.minecraft.commands.Commands.literal("suppress")
+                        .executes(context -> {
+                            context.getSource().sendSuccess(() ->
+                                    Component.literal("spawn suppress = " + SpawnPolicyConfig.enabled()), false);
+                            return 1;
+                        })
+                        .then(net.minecraft.commands.Commands.argument("enabled", BoolArgumentType.bool())
+                                .executes(context -> {
+                                    boolean enabled = BoolArgumentType.getBool(context, "enabled");
+                                    SpawnPolicyConfig.setEnabled(enabled);
+                                    SpawnPolicyConfig.save();
+                                    if (!enabled) {
+                                        SpawnPolicyApi.clearAll();
+                                    }
+                                    context.getSource().sendSuccess(() ->
+                                            Component.literal("spawn suppress set to " + SpawnPolicyConfig.enabled()), false);
+                                    return 1;
+                                })
+                        )
+                )
+        );
+    }
+}
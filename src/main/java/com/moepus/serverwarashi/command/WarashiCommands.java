@@ -18,6 +18,9 @@ public class WarashiCommands {
         BucketCommands.register(root);
         PerfCommands.register(root);
         IdleFreezeCommands.register(root);
+        DedupeCommands.register(root);
+        SpawnPolicyCommands.register(root);
+        BudgetCommands.register(root);
         dispatcher.register(root);
     }
 }
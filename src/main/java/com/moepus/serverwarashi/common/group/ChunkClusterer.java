@@ -0,0 +1,192 @@
+package com.moepus.serverwarashi.common.group;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 基于区块位置的空间聚类（并查集）。
+ * 两个区块的切比雪夫距离不超过阈值即视为相连，相连关系传递后得到“基地”。
+ */
+public final class ChunkClusterer {
+    private ChunkClusterer() {
+    }
+
+    /**
+     * 对一组区块做空间聚类。
+     *
+     * @param chunks   区块坐标（不可重复）
+     * @param distance 相连距离阈值（区块数，至少为 1）
+     * @return 与输入等长的数组，值为所属簇的代表下标
+     */
+    public static int[] clusterChunks(long[] chunks, int distance) {
+        Long2IntOpenHashMap indexByChunk = new Long2IntOpenHashMap(chunks.length);
+        indexByChunk.defaultReturnValue(-1);
+        for (int i = 0; i < chunks.length; i++) {
+            indexByChunk.put(chunks[i], i);
+        }
+        UnionFind unionFind = new UnionFind(chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            unionNeighbours(unionFind, indexByChunk, chunks[i], i, distance);
+        }
+        int[] roots = new int[chunks.length];
+        for (int i = 0; i < chunks.length; i++) {
+            roots[i] = unionFind.find(i);
+        }
+        return roots;
+    }
+
+    /**
+     * 将空间上相连的分组合并为基地条目。
+     * 合并后条目的 owner 取成员中方块实体最多者，区块与统计为成员之和。
+     *
+     * @param groups   原始分组（每个区块至多属于一个分组）
+     * @param distance 相连距离阈值（区块数，至少为 1）
+     * @return 合并后的条目，排序规则与采集器一致
+     */
+    public static List<ChunkGroupSnapshot.ChunkGroupEntry> clusterGroups(
+            List<ChunkGroupSnapshot.ChunkGroupEntry> groups,
+            int distance
+    ) {
+        if (groups.size() < 2) {
+            return groups;
+        }
+        Long2IntOpenHashMap groupByChunk = new Long2IntOpenHashMap();
+        groupByChunk.defaultReturnValue(-1);
+        for (int i = 0; i < groups.size(); i++) {
+            for (long chunkPos : groups.get(i).chunks()) {
+                groupByChunk.put(chunkPos, i);
+            }
+        }
+        UnionFind unionFind = new UnionFind(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            for (long chunkPos : groups.get(i).chunks()) {
+                unionNeighbours(unionFind, groupByChunk, chunkPos, i, distance);
+            }
+        }
+        if (unionFind.components == groups.size()) {
+            return groups;
+        }
+
+        List<List<ChunkGroupSnapshot.ChunkGroupEntry>> members = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            members.add(null);
+        }
+        for (int i = 0; i < groups.size(); i++) {
+            int root = unionFind.find(i);
+            List<ChunkGroupSnapshot.ChunkGroupEntry> list = members.get(root);
+            if (list == null) {
+                list = new ArrayList<>();
+                members.set(root, list);
+            }
+            list.add(groups.get(i));
+        }
+
+        List<ChunkGroupSnapshot.ChunkGroupEntry> bases = new ArrayList<>(unionFind.components);
+        for (List<ChunkGroupSnapshot.ChunkGroupEntry> list : members) {
+            if (list != null) {
+                bases.add(mergeMembers(list));
+            }
+        }
+        bases.sort(Comparator
+                .comparingInt((ChunkGroupSnapshot.ChunkGroupEntry e) -> e.stats().blockEntityCount())
+                .reversed()
+                .thenComparing(e -> e.owner().toString()));
+        return bases;
+    }
+
+    private static ChunkGroupSnapshot.ChunkGroupEntry mergeMembers(List<ChunkGroupSnapshot.ChunkGroupEntry> list) {
+        if (list.size() == 1) {
+            return list.get(0);
+        }
+        ChunkGroupSnapshot.ChunkGroupEntry primary = list.get(0);
+        Set<Long> chunks = new HashSet<>();
+        int blockEntities = 0;
+        int entities = 0;
+        int memberCount = 0;
+        for (ChunkGroupSnapshot.ChunkGroupEntry member : list) {
+            if (member.stats().blockEntityCount() > primary.stats().blockEntityCount()) {
+                primary = member;
+            }
+            chunks.addAll(member.chunks());
+            blockEntities += member.stats().blockEntityCount();
+            entities += member.stats().entityCount();
+            memberCount += member.memberCount();
+        }
+        return new ChunkGroupSnapshot.ChunkGroupEntry(
+                primary.owner(),
+                chunks,
+                new ChunkGroupSnapshot.OwnerStats(chunks.size(), blockEntities, entities),
+                memberCount
+        );
+    }
+
+    private static void unionNeighbours(UnionFind unionFind,
+                                        Long2IntOpenHashMap indexByChunk,
+                                        long chunkPos,
+                                        int index,
+                                        int distance) {
+        int x = ChunkPos.getX(chunkPos);
+        int z = ChunkPos.getZ(chunkPos);
+        for (int dx = -distance; dx <= distance; dx++) {
+            for (int dz = -distance; dz <= distance; dz++) {
+                if (dx == 0 && dz == 0) {
+                    continue;
+                }
+                int other = indexByChunk.get(ChunkPos.asLong(x + dx, z + dz));
+                if (other >= 0 && other != index) {
+                    unionFind.union(index, other);
+                }
+            }
+        }
+    }
+
+    /**
+     * 按秩合并、路径减半的并查集。
+     */
+    private static final class UnionFind {
+        private final int[] parent;
+        private final int[] rank;
+        private int components;
+
+        UnionFind(int size) {
+            parent = new int[size];
+            rank = new int[size];
+            for (int i = 0; i < size; i++) {
+                parent[i] = i;
+            }
+            components = size;
+        }
+
+        int find(int i) {
+            while (parent[i] != i) {
+                parent[i] = parent[parent[i]];
+                i = parent[i];
+            }
+            return i;
+        }
+
+        void union(int a, int b) {
+            int rootA = find(a);
+            int rootB = find(b);
+            if (rootA == rootB) {
+                return;
+            }
+            if (rank[rootA] < rank[rootB]) {
+                int tmp = rootA;
+                rootA = rootB;
+                rootB = tmp;
+            }
+            parent[rootB] = rootA;
+            if (rank[rootA] == rank[rootB]) {
+                rank[rootA]++;
+            }
+            components--;
+        }
+    }
+}
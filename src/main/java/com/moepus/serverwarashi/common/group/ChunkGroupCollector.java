@@ -2,19 +2,21 @@ package com.moepus.serverwarashi.common.group;
 
 import com.moepus.serverwarashi.common.ticket.IPauseableTicket;
 import com.moepus.serverwarashi.common.ticket.TicketOwner;
+import com.moepus.serverwarashi.common.ticket.TicketOwnerCache;
 import com.moepus.serverwarashi.common.ticket.TicketUtils;
+import com.moepus.serverwarashi.config.ChunkGroupConfig;
 import com.moepus.serverwarashi.mixin.DistanceManagerAccessor;
 import com.moepus.serverwarashi.mixin.EntitySectionStorageAccessor;
 import com.moepus.serverwarashi.mixin.PersistentEntitySectionManagerAccessor;
 import com.moepus.serverwarashi.mixin.ServerLevelAccessor;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.Ticket;
 import net.minecraft.util.SortedArraySet;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkPos;
-import net.minecraft.world.level.chunk.ChunkAccess;
-import net.minecraft.world.level.chunk.status.ChunkStatus;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraft.world.level.entity.EntitySection;
 import net.minecraft.world.level.entity.EntitySectionStorage;
 import net.minecraft.world.level.entity.PersistentEntitySectionManager;
@@ -29,6 +31,9 @@ import java.util.Set;
 /**
  * Chunk 分组快照采集器。
  * 负责从运行时状态中采集分组与统计快照。
+ * 采集分为两步：{@link #capture} 必须在服务器线程读取世界状态，产出原始数据；
+ * {@link #aggregate} 只处理原始数据，可在任意线程执行。
+ * 区块、实体分区与 owner 解析都属于世界读取，无法移出服务器线程，因此 capture 是主要开销。
  */
 public final class ChunkGroupCollector {
     private ChunkGroupCollector() {
@@ -36,26 +41,30 @@ public final class ChunkGroupCollector {
 
     public static ChunkGroupSnapshot.SnapshotData collect(ServerLevel level,
                                                           ChunkGroupSnapshot.PauseMode pauseMode) {
-        HashMap<TicketOwner<?>, Set<Long>> ownerMap = collectTicketOwners(level, pauseMode);
-        if (ownerMap.isEmpty()) {
-            return ChunkGroupSnapshot.EMPTY_SNAPSHOT;
+        return aggregate(capture(level, pauseMode));
+    }
+
+    /**
+     * 在服务器线程读取 ticket 与区块负载，生成与世界状态无关的原始数据。
+     *
+     * @param level     目标维度
+     * @param pauseMode 暂停过滤模式
+     * @return 原始采集数据
+     */
+    public static RawCapture capture(ServerLevel level, ChunkGroupSnapshot.PauseMode pauseMode) {
+        DistanceManagerAccessor distanceManager = TicketUtils.getDistanceManager(level);
+        Long2ObjectOpenHashMap<SortedArraySet<Ticket<?>>> ticketMap = TicketUtils.getTickets(distanceManager);
+        RawCapture raw = new RawCapture(ticketMap.size(), ChunkGroupConfig.clusterDistance());
+        if (ticketMap.isEmpty()) {
+            return raw;
         }
         PersistentEntitySectionManager<Entity> entityManager = ((ServerLevelAccessor) level).getEntityManager();
         PersistentEntitySectionManagerAccessor entityAccessor = (PersistentEntitySectionManagerAccessor) entityManager;
         EntitySectionStorage<?> sectionStorage = entityAccessor.getSectionStorage();
         EntitySectionStorageAccessor sectionAccessor = (EntitySectionStorageAccessor) sectionStorage;
-        HashMap<Long, ChunkGroupSnapshot.ChunkLoadInfo> chunkLoadInfoMap =
-                collectChunkLoadInfo(level, ownerMap, sectionAccessor, sectionStorage);
-        List<ChunkGroupSnapshot.ChunkGroupEntry> groups = buildGroupEntries(ownerMap, chunkLoadInfoMap);
-        return new ChunkGroupSnapshot.SnapshotData(groups, chunkLoadInfoMap);
-    }
-
-    private static HashMap<TicketOwner<?>, Set<Long>> collectTicketOwners(ServerLevel level,
-                                                                          ChunkGroupSnapshot.PauseMode pauseMode) {
-        DistanceManagerAccessor distanceManager = TicketUtils.getDistanceManager(level);
-        HashMap<TicketOwner<?>, Set<Long>> ownerMap = new HashMap<>();
+        TicketOwnerCache ownerCache = new TicketOwnerCache(level);
 
-        for (Long2ObjectMap.Entry<SortedArraySet<Ticket<?>>> entry : distanceManager.getTickets().long2ObjectEntrySet()) {
+        for (Long2ObjectMap.Entry<SortedArraySet<Ticket<?>>> entry : ticketMap.long2ObjectEntrySet()) {
             long chunkPos = entry.getLongKey();
             SortedArraySet<Ticket<?>> tickets = entry.getValue();
             if (tickets == null || tickets.isEmpty()) {
@@ -66,49 +75,66 @@ public final class ChunkGroupCollector {
                 continue;
             }
 
-            TicketOwner<?> owner = new TicketOwner<>(ticket, level);
+            TicketOwner<?> owner = ownerCache.resolve(ticket);
             String ownerName = owner.getName();
             if ("unknown".equals(ownerName)
                     || "Unknown block".equals(ownerName)
                     || "Unknown entity".equals(ownerName)) {
                 continue;
             }
-            ownerMap.computeIfAbsent(owner, ignored -> new HashSet<>()).add(chunkPos);
+            raw.add(
+                    chunkPos,
+                    owner,
+                    countBlockEntities(level, chunkPos),
+                    countEntities(chunkPos, sectionAccessor, sectionStorage)
+            );
         }
+        return raw;
+    }
 
-        return ownerMap;
+    /**
+     * 将原始数据聚合为分组快照。不访问世界状态，可在后台线程执行。
+     *
+     * @param raw 原始采集数据
+     * @return 分组快照
+     */
+    public static ChunkGroupSnapshot.SnapshotData aggregate(RawCapture raw) {
+        if (raw.size == 0) {
+            return ChunkGroupSnapshot.EMPTY_SNAPSHOT;
+        }
+        HashMap<TicketOwner<?>, Set<Long>> ownerMap = new HashMap<>();
+        HashMap<Long, ChunkGroupSnapshot.ChunkLoadInfo> chunkLoadInfoMap = new HashMap<>(raw.size * 2);
+        for (int i = 0; i < raw.size; i++) {
+            ownerMap.computeIfAbsent(raw.owners[i], ignored -> new HashSet<>()).add(raw.chunks[i]);
+            chunkLoadInfoMap.put(raw.chunks[i],
+                    new ChunkGroupSnapshot.ChunkLoadInfo(raw.blockEntityCounts[i], raw.entityCounts[i]));
+        }
+        List<ChunkGroupSnapshot.ChunkGroupEntry> groups = buildGroupEntries(ownerMap, chunkLoadInfoMap);
+        if (raw.clusterDistance > 0) {
+            groups = ChunkClusterer.clusterGroups(groups, raw.clusterDistance);
+        }
+        return new ChunkGroupSnapshot.SnapshotData(groups, chunkLoadInfoMap);
     }
 
-    private static HashMap<Long, ChunkGroupSnapshot.ChunkLoadInfo> collectChunkLoadInfo(
-            ServerLevel level,
-            HashMap<TicketOwner<?>, Set<Long>> ownerMap,
-            EntitySectionStorageAccessor sectionAccessor,
-            EntitySectionStorage<?> sectionStorage
-    ) {
-        HashMap<Long, ChunkGroupSnapshot.ChunkLoadInfo> chunkLoadInfoMap = new HashMap<>();
-        for (Set<Long> chunks : ownerMap.values()) {
-            for (long chunkPos : chunks) {
-                if (chunkLoadInfoMap.containsKey(chunkPos)) {
-                    continue;
-                }
-                ChunkPos pos = new ChunkPos(chunkPos);
-                int blockEntityCount = 0;
-                ChunkAccess chunk = level.getChunk(pos.x, pos.z, ChunkStatus.FULL, false);
-                if (chunk != null) {
-                    blockEntityCount = chunk.getBlockEntitiesPos().size();
-                }
-                int entityCount = 0;
-                var sectionIterator = sectionAccessor.invokeGetChunkSections(pos.x, pos.z).iterator();
-                while (sectionIterator.hasNext()) {
-                    EntitySection<?> section = sectionStorage.getSection(sectionIterator.nextLong());
-                    if (section != null) {
-                        entityCount += section.size();
-                    }
-                }
-                chunkLoadInfoMap.put(chunkPos, new ChunkGroupSnapshot.ChunkLoadInfo(blockEntityCount, entityCount));
+    private static int countBlockEntities(ServerLevel level, long chunkPos) {
+        // 直接读取已加载的完整区块，不经过区块加载的 future 路径
+        LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos));
+        return chunk == null ? 0 : chunk.getBlockEntitiesPos().size();
+    }
+
+    private static int countEntities(long chunkPos,
+                                     EntitySectionStorageAccessor sectionAccessor,
+                                     EntitySectionStorage<?> sectionStorage) {
+        int entityCount = 0;
+        var sectionIterator = sectionAccessor.invokeGetChunkSections(ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos))
+                .iterator();
+        while (sectionIterator.hasNext()) {
+            EntitySection<?> section = sectionStorage.getSection(sectionIterator.nextLong());
+            if (section != null) {
+                entityCount += section.size();
             }
         }
-        return chunkLoadInfoMap;
+        return entityCount;
     }
 
     private static List<ChunkGroupSnapshot.ChunkGroupEntry> buildGroupEntries(
@@ -170,4 +196,38 @@ public final class ChunkGroupCollector {
         }
         return 255;
     }
+
+    /**
+     * 单个维度的原始采集数据：每个被选中区块的 owner 与负载计数（并行数组）。
+     * 采集完成后不再修改，可安全交给后台线程聚合。
+     * 聚类距离在采集时从配置读取，保证聚合阶段不依赖全局状态。
+     */
+    public static final class RawCapture {
+        private final long[] chunks;
+        private final TicketOwner<?>[] owners;
+        private final int[] blockEntityCounts;
+        private final int[] entityCounts;
+        private final int clusterDistance;
+        private int size;
+
+        RawCapture(int capacity, int clusterDistance) {
+            this.clusterDistance = clusterDistance;
+            this.chunks = new long[capacity];
+            this.owners = new TicketOwner<?>[capacity];
+            this.blockEntityCounts = new int[capacity];
+            this.entityCounts = new int[capacity];
+        }
+
+        void add(long chunkPos, TicketOwner<?> owner, int blockEntityCount, int entityCount) {
+            chunks[size] = chunkPos;
+            owners[size] = owner;
+            blockEntityCounts[size] = blockEntityCount;
+            entityCounts[size] = entityCount;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
 }
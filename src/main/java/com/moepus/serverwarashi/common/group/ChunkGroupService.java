@@ -1,13 +1,19 @@
 package com.moepus.serverwarashi.common.group;
 
+import com.moepus.serverwarashi.common.jfr.SnapshotRefreshEvent;
+import com.moepus.serverwarashi.config.ChunkGroupConfig;
+import net.minecraft.Util;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Chunk 分组查询服务（公共基础设施）。
  * 负责快照刷新、按区块定位分组以及快照视图读取。
+ * 读取入口优先复用未过期的缓存快照，只有 {@code refresh*} 系列方法会强制重新采集。
  */
 public final class ChunkGroupService {
     private static final ChunkGroupSnapshot SNAPSHOT_CACHE = new ChunkGroupSnapshot();
@@ -21,18 +27,16 @@ public final class ChunkGroupService {
         return SNAPSHOT_CACHE;
     }
 
-    // --- 便捷静态方法（refresh + query） ---
+    // --- 便捷静态方法（共享读取 + query） ---
 
     public static List<ChunkGroupSnapshot.ChunkGroupEntry> listGroups(ServerLevel level,
                                                                        ChunkGroupSnapshot.PauseMode pauseMode) {
-        refresh(level);
         return groups(level, pauseMode);
     }
 
     public static GroupChunkLookup resolveAtChunk(ServerLevel level,
                                                     long chunkPos,
                                                     ChunkGroupSnapshot.PauseMode pauseMode) {
-        refresh(level);
         ChunkGroupSnapshot.SnapshotData snapshot = snapshot(level, pauseMode);
         List<ChunkGroupSnapshot.ChunkGroupEntry> groups = snapshot.groups();
         if (groups.isEmpty()) {
@@ -71,35 +75,89 @@ public final class ChunkGroupService {
     // --- 查询与刷新 ---
 
     public static void refresh(ServerLevel level) {
-        ChunkGroupSnapshot.SnapshotData snapshot = ChunkGroupCollector.collect(level, ChunkGroupSnapshot.PauseMode.ALL);
-        SNAPSHOT_CACHE.putSnapshot(level.dimension(), snapshot);
+        refreshSnapshot(level, ChunkGroupSnapshot.PauseMode.ALL);
     }
 
+    /**
+     * 强制重新采集指定模式的快照并写入缓存。
+     */
     public static ChunkGroupSnapshot.SnapshotData refreshSnapshot(ServerLevel level,
                                                                    ChunkGroupSnapshot.PauseMode pauseMode) {
-        if (pauseMode == ChunkGroupSnapshot.PauseMode.ALL) {
-            refresh(level);
-            return SNAPSHOT_CACHE.getSnapshot(level.dimension());
-        }
-        return ChunkGroupCollector.collect(level, pauseMode);
+        SnapshotRefreshEvent event = new SnapshotRefreshEvent();
+        event.begin();
+        ChunkGroupSnapshot.SnapshotData snapshot = ChunkGroupCollector.collect(level, pauseMode);
+        event.end();
+        SNAPSHOT_CACHE.putSnapshot(level.dimension(), pauseMode, snapshot);
+        commitRefreshEvent(event, level, pauseMode, snapshot);
+        return snapshot;
     }
 
+    /**
+     * 强制刷新全部维度的全量快照。
+     * 只有聚合（按 owner 归组、排序、聚类）交给后台线程池并行执行；
+     * 原始采集要读取区块、实体分区并解析 owner，仍在服务器线程逐维度串行完成，
+     * 这部分耗时随全部维度的 ticket 区块总数增长。最后在服务器线程统一写回缓存。
+     */
     public static void refreshAll(MinecraftServer server) {
+        List<ServerLevel> levels = new ArrayList<>();
+        List<SnapshotRefreshEvent> events = new ArrayList<>();
+        List<CompletableFuture<ChunkGroupSnapshot.SnapshotData>> pending = new ArrayList<>();
         for (ServerLevel level : server.getAllLevels()) {
-            refresh(level);
+            // 事件只覆盖服务器线程上的原始采集
+            SnapshotRefreshEvent event = new SnapshotRefreshEvent();
+            event.begin();
+            ChunkGroupCollector.RawCapture raw = ChunkGroupCollector.capture(level, ChunkGroupSnapshot.PauseMode.ALL);
+            event.end();
+            levels.add(level);
+            events.add(event);
+            pending.add(CompletableFuture.supplyAsync(() -> ChunkGroupCollector.aggregate(raw), Util.backgroundExecutor()));
+        }
+        for (int i = 0; i < levels.size(); i++) {
+            ChunkGroupSnapshot.SnapshotData snapshot = pending.get(i).join();
+            SNAPSHOT_CACHE.putSnapshot(levels.get(i).dimension(), ChunkGroupSnapshot.PauseMode.ALL, snapshot);
+            commitRefreshEvent(events.get(i), levels.get(i), ChunkGroupSnapshot.PauseMode.ALL, snapshot);
         }
     }
 
+    private static void commitRefreshEvent(SnapshotRefreshEvent event,
+                                           ServerLevel level,
+                                           ChunkGroupSnapshot.PauseMode pauseMode,
+                                           ChunkGroupSnapshot.SnapshotData snapshot) {
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.dimension = level.dimension().location().toString();
+        event.pauseMode = pauseMode.name();
+        event.groupCount = snapshot.groups().size();
+        event.chunkCount = snapshot.chunkLoadInfoMap().size();
+        event.commit();
+    }
+
+    /**
+     * 读取快照：缓存仍新鲜时直接复用，否则重新采集。
+     */
     public static ChunkGroupSnapshot.SnapshotData snapshot(ServerLevel level,
                                                             ChunkGroupSnapshot.PauseMode pauseMode) {
-        if (pauseMode == ChunkGroupSnapshot.PauseMode.ALL) {
-            return SNAPSHOT_CACHE.getSnapshot(level.dimension());
+        ChunkGroupSnapshot.SnapshotData cached = SNAPSHOT_CACHE.getFreshSnapshot(
+                level.dimension(),
+                pauseMode,
+                ChunkGroupConfig.snapshotMaxAgeNanos()
+        );
+        if (cached != null) {
+            return cached;
         }
-        return ChunkGroupCollector.collect(level, pauseMode);
+        return refreshSnapshot(level, pauseMode);
     }
 
     public static List<ChunkGroupSnapshot.ChunkGroupEntry> groups(ServerLevel level,
                                                                   ChunkGroupSnapshot.PauseMode pauseMode) {
         return snapshot(level, pauseMode).groups();
     }
+
+    /**
+     * 通知指定维度的 ticket 暂停状态已变化，使依赖暂停状态的快照失效。
+     */
+    public static void markPauseStateChanged(ServerLevel level) {
+        SNAPSHOT_CACHE.markPauseStateChanged(level.dimension());
+    }
 }
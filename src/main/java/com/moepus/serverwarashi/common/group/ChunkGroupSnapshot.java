@@ -4,6 +4,7 @@ import com.moepus.serverwarashi.common.ticket.TicketOwner;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.Level;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,23 +12,32 @@ import java.util.Set;
 
 /**
  * Chunk 分组运行期快照缓存容器。
- * 该类在服务器运行期保持单实例，按维度缓存快照数据。
+ * 该类在服务器运行期保持单实例，按维度与暂停过滤模式缓存快照数据。
+ * 每个维度维护一个暂停状态版本号，ticket 暂停状态变化时递增，
+ * 使依赖暂停状态的 {@link PauseMode#ACTIVE_ONLY} 快照失效。
  */
 public class ChunkGroupSnapshot {
     public static final SnapshotData EMPTY_SNAPSHOT = new SnapshotData(List.of(), new HashMap<>());
 
-    private final Map<ResourceKey<Level>, SnapshotData> dimensionSnapshots = new HashMap<>();
+    private final Map<ResourceKey<Level>, DimensionCache> dimensionCaches = new HashMap<>();
 
     /**
      * 票据分组条目：包含 owner 对应的区块集合与统计信息。
+     * 启用空间聚类时，一个条目可能代表由多个 owner 合并而成的基地，
+     * 此时 {@code owner} 为成员中方块实体最多者。
      */
     public record ChunkGroupEntry(
             TicketOwner<?> owner,
             Set<Long> chunks,
-            OwnerStats stats
+            OwnerStats stats,
+            int memberCount
     ) {
+        public ChunkGroupEntry(TicketOwner<?> owner, Set<Long> chunks, OwnerStats stats) {
+            this(owner, chunks, stats, 1);
+        }
+
         public String label() {
-            return owner.toString();
+            return memberCount > 1 ? owner + " (+" + (memberCount - 1) + ")" : owner.toString();
         }
     }
 
@@ -55,6 +65,24 @@ public class ChunkGroupSnapshot {
     ) {
     }
 
+    /**
+     * 缓存中的快照条目。
+     *
+     * @param data            快照数据
+     * @param version         采集时的维度暂停状态版本号
+     * @param capturedAtNanos 采集时刻（{@link System#nanoTime()}）
+     */
+    public record CachedSnapshot(SnapshotData data, long version, long capturedAtNanos) {
+    }
+
+    /**
+     * 单个维度的缓存槽位。
+     */
+    private static final class DimensionCache {
+        long version;
+        final EnumMap<PauseMode, CachedSnapshot> snapshots = new EnumMap<>(PauseMode.class);
+    }
+
     /**
      * 暂停状态过滤模式。
      */
@@ -68,6 +96,13 @@ public class ChunkGroupSnapshot {
                 case ALL -> true;
             };
         }
+
+        /**
+         * 该模式的快照内容是否依赖 ticket 暂停状态。
+         */
+        public boolean dependsOnPauseState() {
+            return this == ACTIVE_ONLY;
+        }
     }
 
     /**
@@ -82,20 +117,76 @@ public class ChunkGroupSnapshot {
      * 清理运行期缓存。
      */
     public void clear() {
-        dimensionSnapshots.clear();
+        dimensionCaches.clear();
     }
 
     /**
-     * 读取指定维度当前缓存的快照。
+     * 读取指定维度当前缓存的全量快照（不检查新鲜度）。
      */
     public SnapshotData getSnapshot(ResourceKey<Level> dimension) {
-        return dimensionSnapshots.getOrDefault(dimension, EMPTY_SNAPSHOT);
+        return getSnapshot(dimension, PauseMode.ALL);
+    }
+
+    /**
+     * 读取指定维度与模式当前缓存的快照（不检查新鲜度）。
+     */
+    public SnapshotData getSnapshot(ResourceKey<Level> dimension, PauseMode pauseMode) {
+        DimensionCache cache = dimensionCaches.get(dimension);
+        CachedSnapshot cached = cache == null ? null : cache.snapshots.get(pauseMode);
+        return cached == null ? EMPTY_SNAPSHOT : cached.data();
+    }
+
+    /**
+     * 读取仍然新鲜的缓存快照。
+     *
+     * @param maxAgeNanos 允许的最大时长
+     * @return 新鲜快照；若不存在、已过期或暂停状态版本已变化则返回 {@code null}
+     */
+    public SnapshotData getFreshSnapshot(ResourceKey<Level> dimension, PauseMode pauseMode, long maxAgeNanos) {
+        DimensionCache cache = dimensionCaches.get(dimension);
+        if (cache == null) {
+            return null;
+        }
+        CachedSnapshot cached = cache.snapshots.get(pauseMode);
+        if (cached == null || System.nanoTime() - cached.capturedAtNanos() > maxAgeNanos) {
+            return null;
+        }
+        if (pauseMode.dependsOnPauseState() && cached.version() != cache.version) {
+            return null;
+        }
+        return cached.data();
     }
 
     /**
-     * 写入指定维度的快照。
+     * 写入指定维度的全量快照。
      */
     public void putSnapshot(ResourceKey<Level> dimension, SnapshotData snapshot) {
-        dimensionSnapshots.put(dimension, snapshot);
+        putSnapshot(dimension, PauseMode.ALL, snapshot);
+    }
+
+    /**
+     * 写入指定维度与模式的快照，并记录当前暂停状态版本号。
+     */
+    public void putSnapshot(ResourceKey<Level> dimension, PauseMode pauseMode, SnapshotData snapshot) {
+        DimensionCache cache = dimensionCaches.computeIfAbsent(dimension, ignored -> new DimensionCache());
+        cache.snapshots.put(pauseMode, new CachedSnapshot(snapshot, cache.version, System.nanoTime()));
+    }
+
+    /**
+     * 读取指定维度当前的暂停状态版本号。
+     */
+    public long version(ResourceKey<Level> dimension) {
+        DimensionCache cache = dimensionCaches.get(dimension);
+        return cache == null ? 0L : cache.version;
+    }
+
+    /**
+     * 标记指定维度的 ticket 暂停状态已变化。
+     */
+    public void markPauseStateChanged(ResourceKey<Level> dimension) {
+        DimensionCache cache = dimensionCaches.get(dimension);
+        if (cache != null) {
+            cache.version++;
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.moepus.serverwarashi.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次自动分桶轮换，持续时间覆盖收集、分桶与区块 level 更新。
+ */
+@Name("serverwarashi.BucketRotation")
+@Label("Bucket Rotation")
+@Description("One auto-bucket pass: ticket collection, bucketing and chunk level updates")
+@Category({"Serverwarashi", "Scheduler"})
+@StackTrace(false)
+public final class BucketRotationEvent extends jdk.jfr.Event {
+    @Label("Dimension")
+    public String dimension;
+
+    @Label("Tickets")
+    public int ticketCount;
+
+    @Label("Buckets")
+    @Description("0 when all tickets are paused at once")
+    public int bucketCount;
+
+    @Label("Active Bucket")
+    public int activeBucket;
+
+    @Label("Modified Chunks")
+    public int modifiedChunks;
+}
@@ -0,0 +1,44 @@
+package com.moepus.serverwarashi.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * 一个 ticket 分组的每 tick 耗时，常驻采样器每次折叠窗口以及分析会话结束时提交。
+ */
+@Name("serverwarashi.GroupCost")
+@Label("Ticket Group Cost")
+@Description("Per-tick cost of a ticket group, split by source category")
+@Category({"Serverwarashi", "Tick"})
+@StackTrace(false)
+public final class GroupCostEvent extends jdk.jfr.Event {
+    @Label("Dimension")
+    public String dimension;
+
+    @Label("Group")
+    public String group;
+
+    @Label("Source")
+    @Description("sampler, session, all_groups or spike")
+    public String source;
+
+    @Label("Block Entity Cost")
+    @Timespan(Timespan.NANOSECONDS)
+    public long blockEntityNanos;
+
+    @Label("Entity Cost")
+    @Timespan(Timespan.NANOSECONDS)
+    public long entityNanos;
+
+    @Label("Chunk Cost")
+    @Timespan(Timespan.NANOSECONDS)
+    public long chunkNanos;
+
+    @Label("Scheduled Tick Cost")
+    @Timespan(Timespan.NANOSECONDS)
+    public long scheduledNanos;
+}
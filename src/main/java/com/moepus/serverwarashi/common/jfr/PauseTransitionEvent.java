@@ -0,0 +1,27 @@
+package com.moepus.serverwarashi.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一批区块的暂停状态变化，持续时间为区块 level 更新耗时。
+ */
+@Name("serverwarashi.PauseTransition")
+@Label("Pause Transition")
+@Description("Chunk level update after ticket pause reasons changed")
+@Category({"Serverwarashi", "Scheduler"})
+@StackTrace(false)
+public final class PauseTransitionEvent extends jdk.jfr.Event {
+    @Label("Dimension")
+    public String dimension;
+
+    @Label("Reason Mask")
+    @Description("2=auto, 4=idle, 8=redundant, 16=budget")
+    public int reasonMask;
+
+    @Label("Chunks")
+    public int chunkCount;
+}
@@ -0,0 +1,29 @@
+package com.moepus.serverwarashi.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 一次分组快照采集，持续时间为服务器线程上的阻塞时间。
+ */
+@Name("serverwarashi.SnapshotRefresh")
+@Label("Group Snapshot Refresh")
+@Description("Ticket group snapshot collection on the server thread")
+@Category({"Serverwarashi", "Scheduler"})
+@StackTrace(false)
+public final class SnapshotRefreshEvent extends jdk.jfr.Event {
+    @Label("Dimension")
+    public String dimension;
+
+    @Label("Pause Mode")
+    public String pauseMode;
+
+    @Label("Groups")
+    public int groupCount;
+
+    @Label("Chunks")
+    public int chunkCount;
+}
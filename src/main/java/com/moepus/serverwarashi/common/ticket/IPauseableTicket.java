@@ -3,6 +3,8 @@ package com.moepus.serverwarashi.common.ticket;
 public interface IPauseableTicket {
     int PAUSE_REASON_AUTO = 2;
     int PAUSE_REASON_IDLE = 4;
+    int PAUSE_REASON_REDUNDANT = 8;
+    int PAUSE_REASON_BUDGET = 16;
 
     int serverWarashi$getPauseMask();
     void serverWarashi$setPauseMask(int mask);
@@ -20,6 +20,15 @@ public class TicketOwner<OwnerType> {
     private String name;
     private BlockPos pos;
 
+    /**
+     * 直接指定名称、来源与位置，不经过 ticket 解析，用于离线构造的分组数据。
+     */
+    public TicketOwner(String name, Object owner, BlockPos pos) {
+        this.name = name;
+        this.owner = owner;
+        this.pos = pos;
+    }
+
     public TicketOwner(Ticket<OwnerType> ticket, ServerLevel level) {
         IPauseableTicket pauseable = (IPauseableTicket) (Object) ticket;
         OwnerType key = (OwnerType) pauseable.serverWarashi$getKey();
@@ -0,0 +1,41 @@
+package com.moepus.serverwarashi.common.ticket;
+
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.Ticket;
+import net.minecraft.server.level.TicketType;
+
+import java.util.HashMap;
+
+/**
+ * 单次扫描内的 {@link TicketOwner} 解析缓存。
+ * 同一来源（ticket 类型 + key）往往在多个区块上持有 ticket，
+ * 构造 owner 需要反射与世界查询，按来源缓存可避免逐区块重复解析。
+ * 仅在单次扫描期间于服务器线程使用。
+ */
+public final class TicketOwnerCache {
+    private final ServerLevel level;
+    private final HashMap<OwnerKey, TicketOwner<?>> owners = new HashMap<>();
+
+    public TicketOwnerCache(ServerLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * 解析 ticket 对应的 owner，同一来源只构造一次。
+     *
+     * @param ticket 目标 ticket
+     * @return ticket owner
+     */
+    public TicketOwner<?> resolve(Ticket<?> ticket) {
+        OwnerKey key = new OwnerKey(ticket.getType(), ((IPauseableTicket) (Object) ticket).serverWarashi$getKey());
+        TicketOwner<?> owner = owners.get(key);
+        if (owner == null) {
+            owner = new TicketOwner<>(ticket, level);
+            owners.put(key, owner);
+        }
+        return owner;
+    }
+
+    private record OwnerKey(TicketType<?> type, Object key) {
+    }
+}
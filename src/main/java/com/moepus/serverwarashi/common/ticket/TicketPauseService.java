@@ -1,5 +1,7 @@
 package com.moepus.serverwarashi.common.ticket;
 
+import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import com.moepus.serverwarashi.common.jfr.PauseTransitionEvent;
 import com.moepus.serverwarashi.mixin.DistanceManagerAccessor;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.server.level.ServerLevel;
@@ -12,11 +14,18 @@ import java.util.List;
 public final class TicketPauseService {
 
     public static void clearAutoPause(ServerLevel level) {
-        applyPauseReasonToChunks(
+        clearPauseReason(level, IPauseableTicket.PAUSE_REASON_AUTO);
+    }
+
+    /**
+     * 清除当前维度全部非系统 ticket 上的指定暂停原因。
+     */
+    public static int clearPauseReason(ServerLevel level, int reasonMask) {
+        return applyPauseReasonToChunks(
                 level,
                 TicketUtils.getTickets(TicketUtils.getDistanceManager(level)).keySet(),
                 false,
-                IPauseableTicket.PAUSE_REASON_AUTO
+                reasonMask
         );
     }
 
@@ -48,11 +57,29 @@ public final class TicketPauseService {
             }
         }
         if (!modifiedChunks.isEmpty()) {
-            updateChunkLevel(accessor, modifiedChunks);
+            updateChunkLevel(level, modifiedChunks, reasonMask);
         }
         return updated;
     }
 
+    /**
+     * 更新指定维度中被修改区块的 level，并使依赖暂停状态的分组快照失效。
+     *
+     * @param reasonMask 本次变化涉及的暂停原因，仅用于 JFR 事件
+     */
+    public static void updateChunkLevel(ServerLevel level, LongOpenHashSet modifiedChunks, int reasonMask) {
+        PauseTransitionEvent event = new PauseTransitionEvent();
+        event.begin();
+        updateChunkLevel(TicketUtils.getDistanceManager(level), modifiedChunks);
+        ChunkGroupService.markPauseStateChanged(level);
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.reasonMask = reasonMask;
+            event.chunkCount = modifiedChunks.size();
+            event.commit();
+        }
+    }
+
     /**
      * 重排 ticketSet 并根据实际 level 变化更新 tracker。
      * 新旧 level 都取 {@link Ticket#getTicketLevel()}（masked），与 vanilla
@@ -0,0 +1,131 @@
+package com.moepus.serverwarashi.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * budget 模块配置门面。
+ */
+public final class BudgetConfig {
+    private BudgetConfig() {
+    }
+
+    /**
+     * 读取按实测耗时限流的开关。
+     *
+     * @return 是否启用
+     */
+    public static boolean enabled() {
+        return Config.BUDGET_ENABLED.get();
+    }
+
+    /**
+     * 设置按实测耗时限流的开关。
+     *
+     * @param enabled 是否启用
+     */
+    public static void setEnabled(boolean enabled) {
+        Config.BUDGET_ENABLED.set(enabled);
+    }
+
+    /**
+     * 读取单个维度内全部分组合计耗时的预算。
+     *
+     * @return 预算（毫秒/tick）
+     */
+    public static double budgetMspt() {
+        return Config.BUDGET_MSPT.get();
+    }
+
+    /**
+     * 设置单个维度内全部分组合计耗时的预算。
+     *
+     * @param mspt 预算（毫秒/tick）
+     */
+    public static void setBudgetMspt(double mspt) {
+        Config.BUDGET_MSPT.set(mspt);
+    }
+
+    /**
+     * 读取预算（纳秒/tick）。
+     *
+     * @return 预算
+     */
+    public static double budgetNanosPerTick() {
+        return budgetMspt() * 1_000_000.0;
+    }
+
+    /**
+     * 读取恢复阈值占预算的比例。合计耗时加上待恢复分组的耗时不超过该阈值时才恢复，留出回差避免反复暂停。
+     *
+     * @return 比例
+     */
+    public static double releaseRatio() {
+        return Config.BUDGET_RELEASE_RATIO.get();
+    }
+
+    /**
+     * 读取单个维度最多同时限流的分组数。
+     *
+     * @return 分组数上限
+     */
+    public static int maxThrottledGroups() {
+        return Config.BUDGET_MAX_THROTTLED_GROUPS.get();
+    }
+
+    /**
+     * 读取重新评估预算的周期。
+     *
+     * @return 周期 tick 数
+     */
+    public static int scanIntervalTicks() {
+        return Config.BUDGET_SCAN_INTERVAL_SECONDS.get() * 20;
+    }
+
+    /**
+     * 读取豁免列表。条目可以是 owner 名称（如 {@code Block{minecraft:hopper}}），也可以是带坐标的完整标签。
+     *
+     * @return 豁免条目
+     */
+    public static List<? extends String> exemptOwners() {
+        return Config.BUDGET_EXEMPT_OWNERS.get();
+    }
+
+    /**
+     * 添加豁免条目。
+     *
+     * @param owner 条目
+     * @return 是否新增
+     */
+    public static boolean addExemptOwner(String owner) {
+        List<String> owners = new ArrayList<>(exemptOwners());
+        if (owners.contains(owner)) {
+            return false;
+        }
+        owners.add(owner);
+        Config.BUDGET_EXEMPT_OWNERS.set(owners);
+        return true;
+    }
+
+    /**
+     * 移除豁免条目。
+     *
+     * @param owner 条目
+     * @return 是否存在并已移除
+     */
+    public static boolean removeExemptOwner(String owner) {
+        List<String> owners = new ArrayList<>(exemptOwners());
+        if (!owners.remove(owner)) {
+            return false;
+        }
+        Config.BUDGET_EXEMPT_OWNERS.set(owners);
+        return true;
+    }
+
+    /**
+     * 将当前配置写回配置文件。
+     */
+    public static void save() {
+        Config.SPEC.save();
+    }
+}
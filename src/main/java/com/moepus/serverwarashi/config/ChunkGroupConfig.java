@@ -0,0 +1,28 @@
+package com.moepus.serverwarashi.config;
+
+/**
+ * 分组快照（公共基础设施）配置门面。
+ */
+public final class ChunkGroupConfig {
+    private ChunkGroupConfig() {
+    }
+
+    /**
+     * 读取分组快照可被复用的最大时长。
+     *
+     * @return 最大时长纳秒数；为 0 时每次读取都会重新采集
+     */
+    public static long snapshotMaxAgeNanos() {
+        return Config.SNAPSHOT_MAX_AGE_MILLIS.get() * 1_000_000L;
+    }
+
+    /**
+     * 读取分组空间聚类的相连距离。
+     * 自动分桶也按此聚类，ticket 数超过 ticket_group_size 的基地会被切成多段分别轮换。
+     *
+     * @return 相连距离（区块数）；未启用聚类时返回 0
+     */
+    public static int clusterDistance() {
+        return Config.CLUSTER_ENABLED.get() ? Config.CLUSTER_DISTANCE.get() : 0;
+    }
+}
@@ -2,6 +2,8 @@ package com.moepus.serverwarashi.config;
 
 import net.neoforged.neoforge.common.ModConfigSpec;
 
+import java.util.List;
+
 public class Config
 {
     private static final ModConfigSpec.Builder BUILDER = new ModConfigSpec.Builder();
@@ -20,6 +22,53 @@ public class Config
 
     public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_DEFAULT_ANALYZE_SECONDS = BUILDER
             .defineInRange("chunkperf_default_analyze_seconds", 9999, 1, 86400);
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_SAMPLER_ENABLED = BUILDER
+            .define("chunkperf_sampler_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_SAMPLER_RATE = BUILDER
+            .defineInRange("chunkperf_sampler_rate", 64, 1, 65536);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_SAMPLER_HALF_LIFE_SECONDS = BUILDER
+            .defineInRange("chunkperf_sampler_half_life_seconds", 60, 1, 3600);
+    public static final ModConfigSpec.ConfigValue<Double> CHUNKPERF_SAMPLER_MAX_OVERHEAD_PERCENT = BUILDER
+            .defineInRange("chunkperf_sampler_max_overhead_percent", 0.5, 0.01, 10.0);
+
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_SPIKE_CAPTURE_ENABLED = BUILDER
+            .define("chunkperf_spike_capture_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Double> CHUNKPERF_SPIKE_MSPT_THRESHOLD = BUILDER
+            .defineInRange("chunkperf_spike_mspt_threshold", 60.0, 1.0, 10000.0);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_SPIKE_TICKS = BUILDER
+            .defineInRange("chunkperf_spike_ticks", 20, 1, 1200);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_SPIKE_CAPTURE_SECONDS = BUILDER
+            .defineInRange("chunkperf_spike_capture_seconds", 10, 1, 300);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_SPIKE_COOLDOWN_SECONDS = BUILDER
+            .defineInRange("chunkperf_spike_cooldown_seconds", 600, 0, 86400);
+
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_HISTORY_ENABLED = BUILDER
+            .define("chunkperf_history_enabled", true);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_HISTORY_SAMPLER_INTERVAL_MINUTES = BUILDER
+            .defineInRange("chunkperf_history_sampler_interval_minutes", 10, 1, 1440);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_HISTORY_RETENTION_DAYS = BUILDER
+            .defineInRange("chunkperf_history_retention_days", 90, 1, 3650);
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_DUMP_GZIP = BUILDER
+            .define("chunkperf_dump_gzip", false);
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_EXPORT_SESSION_FILES = BUILDER
+            .define("chunkperf_export_session_files", false);
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_WATCHDOG_SNAPSHOT_ENABLED = BUILDER
+            .define("chunkperf_watchdog_snapshot_enabled", true);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_WATCHDOG_SNAPSHOT_SECONDS = BUILDER
+            .defineInRange("chunkperf_watchdog_snapshot_seconds", 5, 1, 300);
+    public static final ModConfigSpec.ConfigValue<Boolean> CHUNKPERF_HANG_SAMPLER_ENABLED = BUILDER
+            .define("chunkperf_hang_sampler_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_HANG_THRESHOLD_MILLIS = BUILDER
+            .defineInRange("chunkperf_hang_threshold_millis", 1000, 100, 60000);
+    public static final ModConfigSpec.ConfigValue<Integer> CHUNKPERF_HANG_SAMPLE_INTERVAL_MILLIS = BUILDER
+            .defineInRange("chunkperf_hang_sample_interval_millis", 10, 1, 1000);
+
+    public static final ModConfigSpec.ConfigValue<Integer> SNAPSHOT_MAX_AGE_MILLIS = BUILDER
+            .defineInRange("snapshot_max_age_millis", 1000, 0, 60000);
+    public static final ModConfigSpec.ConfigValue<Boolean> CLUSTER_ENABLED = BUILDER
+            .define("cluster_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Integer> CLUSTER_DISTANCE = BUILDER
+            .defineInRange("cluster_distance", 1, 1, 16);
 
     public static final ModConfigSpec.ConfigValue<Boolean> IDLEFREEZE_ENABLED = BUILDER
             .define("idlefreeze_enabled", true);
@@ -32,5 +81,37 @@ public class Config
     public static final ModConfigSpec.ConfigValue<Integer> IDLEFREEZE_INITIAL_SCAN_DELAY_SECONDS = BUILDER
             .defineInRange("idlefreeze_initial_scan_delay_seconds", 180, 0, 3600);
 
+    public static final ModConfigSpec.ConfigValue<Boolean> DEDUPE_ENABLED = BUILDER
+            .define("dedupe_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Integer> DEDUPE_SCAN_INTERVAL_SECONDS = BUILDER
+            .defineInRange("dedupe_scan_interval_seconds", 30, 1, 3600);
+
+    public static final ModConfigSpec.ConfigValue<Boolean> SPAWN_SUPPRESS_ENABLED = BUILDER
+            .define("spawn_suppress_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Integer> SPAWN_SUPPRESS_PLAYER_RADIUS = BUILDER
+            .defineInRange("spawn_suppress_player_radius", 8, 1, 64);
+    public static final ModConfigSpec.ConfigValue<Integer> SPAWN_SUPPRESS_SCAN_INTERVAL_SECONDS = BUILDER
+            .defineInRange("spawn_suppress_scan_interval_seconds", 5, 1, 3600);
+
+    public static final ModConfigSpec.ConfigValue<Boolean> BUDGET_ENABLED = BUILDER
+            .define("budget_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Double> BUDGET_MSPT = BUILDER
+            .defineInRange("budget_mspt", 20.0, 0.5, 1000.0);
+    public static final ModConfigSpec.ConfigValue<Double> BUDGET_RELEASE_RATIO = BUILDER
+            .defineInRange("budget_release_ratio", 0.8, 0.1, 1.0);
+    public static final ModConfigSpec.ConfigValue<Integer> BUDGET_MAX_THROTTLED_GROUPS = BUILDER
+            .defineInRange("budget_max_throttled_groups", 16, 1, 4096);
+    public static final ModConfigSpec.ConfigValue<Integer> BUDGET_SCAN_INTERVAL_SECONDS = BUILDER
+            .defineInRange("budget_scan_interval_seconds", 10, 1, 3600);
+    public static final ModConfigSpec.ConfigValue<List<? extends String>> BUDGET_EXEMPT_OWNERS = BUILDER
+            .defineListAllowEmpty("budget_exempt_owners", List.of(), () -> "", value -> value instanceof String);
+
+    public static final ModConfigSpec.ConfigValue<Boolean> METRICS_ENABLED = BUILDER
+            .define("metrics_enabled", false);
+    public static final ModConfigSpec.ConfigValue<Integer> METRICS_PORT = BUILDER
+            .defineInRange("metrics_port", 9464, 1024, 65535);
+    public static final ModConfigSpec.ConfigValue<Integer> METRICS_TOP_GROUPS = BUILDER
+            .defineInRange("metrics_top_groups", 10, 1, 100);
+
     public static final ModConfigSpec SPEC = BUILDER.build();
 }
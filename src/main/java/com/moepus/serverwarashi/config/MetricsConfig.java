@@ -0,0 +1,36 @@
+package com.moepus.serverwarashi.config;
+
+/**
+ * metrics 模块配置门面。
+ */
+public final class MetricsConfig {
+    private MetricsConfig() {
+    }
+
+    /**
+     * 读取是否启用本地指标端点。只在服务器启动时生效。
+     *
+     * @return 是否启用
+     */
+    public static boolean enabled() {
+        return Config.METRICS_ENABLED.get();
+    }
+
+    /**
+     * 读取指标端点监听的本地端口。
+     *
+     * @return 端口
+     */
+    public static int port() {
+        return Config.METRICS_PORT.get();
+    }
+
+    /**
+     * 读取每个维度导出耗时的分组数。
+     *
+     * @return 分组数
+     */
+    public static int topGroups() {
+        return Config.METRICS_TOP_GROUPS.get();
+    }
+}
@@ -0,0 +1,52 @@
+package com.moepus.serverwarashi.config;
+
+/**
+ * spawnpolicy 模块配置门面。
+ */
+public final class SpawnPolicyConfig {
+    private SpawnPolicyConfig() {
+    }
+
+    /**
+     * 读取“无玩家分组禁止自然生成”开关。
+     *
+     * @return 是否启用
+     */
+    public static boolean enabled() {
+        return Config.SPAWN_SUPPRESS_ENABLED.get();
+    }
+
+    /**
+     * 设置“无玩家分组禁止自然生成”开关。
+     *
+     * @param enabled 是否启用
+     */
+    public static void setEnabled(boolean enabled) {
+        Config.SPAWN_SUPPRESS_ENABLED.set(enabled);
+    }
+
+    /**
+     * 读取判定“附近有玩家”的半径。
+     *
+     * @return 切比雪夫距离（区块数）
+     */
+    public static int playerRadiusChunks() {
+        return Config.SPAWN_SUPPRESS_PLAYER_RADIUS.get();
+    }
+
+    /**
+     * 读取重新评估分组的周期。
+     *
+     * @return 周期 tick 数
+     */
+    public static int scanIntervalTicks() {
+        return Config.SPAWN_SUPPRESS_SCAN_INTERVAL_SECONDS.get() * 20;
+    }
+
+    /**
+     * 将当前配置写回配置文件。
+     */
+    public static void save() {
+        Config.SPEC.save();
+    }
+}
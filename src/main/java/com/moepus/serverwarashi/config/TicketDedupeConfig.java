@@ -0,0 +1,43 @@
+package com.moepus.serverwarashi.config;
+
+/**
+ * dedupe 模块配置门面。
+ */
+public final class TicketDedupeConfig {
+    private TicketDedupeConfig() {
+    }
+
+    /**
+     * 读取冗余 ticket 自动去重开关。
+     *
+     * @return 是否启用自动去重
+     */
+    public static boolean enabled() {
+        return Config.DEDUPE_ENABLED.get();
+    }
+
+    /**
+     * 设置冗余 ticket 自动去重开关。
+     *
+     * @param enabled 是否启用自动去重
+     */
+    public static void setEnabled(boolean enabled) {
+        Config.DEDUPE_ENABLED.set(enabled);
+    }
+
+    /**
+     * 读取自动去重的扫描周期。
+     *
+     * @return 扫描周期 tick 数
+     */
+    public static int scanIntervalTicks() {
+        return Config.DEDUPE_SCAN_INTERVAL_SECONDS.get() * 20;
+    }
+
+    /**
+     * 将当前去重配置写回配置文件。
+     */
+    public static void save() {
+        Config.SPEC.save();
+    }
+}
@@ -10,4 +10,200 @@ public final class TicketPerfConfig {
     public static int defaultAnalyzeSeconds() {
         return Config.CHUNKPERF_DEFAULT_ANALYZE_SECONDS.get();
     }
+
+    /**
+     * 读取常驻采样开关。
+     *
+     * @return 是否启用常驻采样
+     */
+    public static boolean samplerEnabled() {
+        return Config.CHUNKPERF_SAMPLER_ENABLED.get();
+    }
+
+    /**
+     * 设置常驻采样开关。
+     *
+     * @param enabled 是否启用常驻采样
+     */
+    public static void setSamplerEnabled(boolean enabled) {
+        Config.CHUNKPERF_SAMPLER_ENABLED.set(enabled);
+    }
+
+    /**
+     * 读取基础采样率：平均每 N 次 tick 计时一次。
+     *
+     * @return 采样间隔 N
+     */
+    public static int samplerRate() {
+        return Config.CHUNKPERF_SAMPLER_RATE.get();
+    }
+
+    /**
+     * 读取指数衰减的半衰期。
+     *
+     * @return 半衰期 tick 数
+     */
+    public static int samplerHalfLifeTicks() {
+        return Config.CHUNKPERF_SAMPLER_HALF_LIFE_SECONDS.get() * 20;
+    }
+
+    /**
+     * 读取采样自身开销上限（占平均 MSPT 的比例）。
+     *
+     * @return 开销比例，0.005 表示 0.5%
+     */
+    public static double samplerMaxOverheadFraction() {
+        return Config.CHUNKPERF_SAMPLER_MAX_OVERHEAD_PERCENT.get() / 100.0;
+    }
+
+    /**
+     * 读取卡顿自动捕获开关。
+     *
+     * @return 是否启用
+     */
+    public static boolean spikeCaptureEnabled() {
+        return Config.CHUNKPERF_SPIKE_CAPTURE_ENABLED.get();
+    }
+
+    /**
+     * 设置卡顿自动捕获开关。
+     *
+     * @param enabled 是否启用
+     */
+    public static void setSpikeCaptureEnabled(boolean enabled) {
+        Config.CHUNKPERF_SPIKE_CAPTURE_ENABLED.set(enabled);
+    }
+
+    /**
+     * 读取判定为卡顿的单 tick 耗时阈值。
+     *
+     * @return 阈值纳秒
+     */
+    public static long spikeThresholdNanos() {
+        return (long) (Config.CHUNKPERF_SPIKE_MSPT_THRESHOLD.get() * 1_000_000.0);
+    }
+
+    /**
+     * 读取触发捕获所需的连续超阈值 tick 数。
+     *
+     * @return tick 数
+     */
+    public static int spikeTicks() {
+        return Config.CHUNKPERF_SPIKE_TICKS.get();
+    }
+
+    /**
+     * 读取自动捕获会话的时长。
+     *
+     * @return 秒数
+     */
+    public static int spikeCaptureSeconds() {
+        return Config.CHUNKPERF_SPIKE_CAPTURE_SECONDS.get();
+    }
+
+    /**
+     * 读取两次自动捕获之间的冷却（从捕获结束算起）。
+     *
+     * @return 冷却 tick 数
+     */
+    public static int spikeCooldownTicks() {
+        return Config.CHUNKPERF_SPIKE_COOLDOWN_SECONDS.get() * 20;
+    }
+
+    /**
+     * 读取分组耗时历史记录开关。
+     *
+     * @return 是否启用
+     */
+    public static boolean historyEnabled() {
+        return Config.CHUNKPERF_HISTORY_ENABLED.get();
+    }
+
+    /**
+     * 读取常驻采样估计写入历史的周期。
+     *
+     * @return 周期 tick 数
+     */
+    public static int historySamplerIntervalTicks() {
+        return Config.CHUNKPERF_HISTORY_SAMPLER_INTERVAL_MINUTES.get() * 60 * 20;
+    }
+
+    /**
+     * 读取历史记录的保留天数，更早的数据在压缩时丢弃。
+     *
+     * @return 保留天数
+     */
+    public static int historyRetentionDays() {
+        return Config.CHUNKPERF_HISTORY_RETENTION_DAYS.get();
+    }
+
+    /**
+     * 读取文本导出（CSV、报告）是否以 gzip 压缩写出。
+     *
+     * @return 是否压缩
+     */
+    public static boolean dumpGzip() {
+        return Config.CHUNKPERF_DUMP_GZIP.get();
+    }
+
+    /**
+     * 读取手动分析会话结束时是否导出延迟 CSV 与热力图。卡顿自动捕获从不导出。
+     *
+     * @return 是否导出
+     */
+    public static boolean exportSessionFiles() {
+        return Config.CHUNKPERF_EXPORT_SESSION_FILES.get();
+    }
+
+    /**
+     * 读取是否为看门狗崩溃报告周期性拍摄分组快照。
+     *
+     * @return 是否启用
+     */
+    public static boolean watchdogSnapshotEnabled() {
+        return Config.CHUNKPERF_WATCHDOG_SNAPSHOT_ENABLED.get();
+    }
+
+    /**
+     * 读取看门狗快照的刷新间隔（tick）。
+     *
+     * @return 间隔 tick 数
+     */
+    public static int watchdogSnapshotIntervalTicks() {
+        return Config.CHUNKPERF_WATCHDOG_SNAPSHOT_SECONDS.get() * 20;
+    }
+
+    /**
+     * 读取是否启用主线程卡顿栈采样。
+     *
+     * @return 是否启用
+     */
+    public static boolean hangSamplerEnabled() {
+        return Config.CHUNKPERF_HANG_SAMPLER_ENABLED.get();
+    }
+
+    /**
+     * 读取开始栈采样的单 tick 耗时阈值（纳秒）。
+     *
+     * @return 阈值纳秒数
+     */
+    public static long hangThresholdNanos() {
+        return Config.CHUNKPERF_HANG_THRESHOLD_MILLIS.get() * 1_000_000L;
+    }
+
+    /**
+     * 读取卡顿期间的栈采样间隔（毫秒）。
+     *
+     * @return 间隔毫秒数
+     */
+    public static int hangSampleIntervalMillis() {
+        return Config.CHUNKPERF_HANG_SAMPLE_INTERVAL_MILLIS.get();
+    }
+
+    /**
+     * 将当前 performance 配置写回配置文件。
+     */
+    public static void save() {
+        Config.SPEC.save();
+    }
 }
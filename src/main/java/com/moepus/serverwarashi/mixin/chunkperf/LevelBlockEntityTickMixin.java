@@ -7,19 +7,16 @@ import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
-import java.util.Iterator;
-import java.util.List;
-
 /**
- * 在方块实体迭代器层做轻量包装，未分析时直接返回原始迭代器。
+ * 在方块实体 tick 调用点直接计时，未分析时原样转发，不包装迭代器与 ticker。
  */
 @Mixin(value = Level.class, remap = false)
 public abstract class LevelBlockEntityTickMixin {
     @Redirect(
             method = "tickBlockEntities",
-            at = @At(value = "INVOKE", target = "Ljava/util/List;iterator()Ljava/util/Iterator;")
+            at = @At(value = "INVOKE", target = "Lnet/minecraft/world/level/block/entity/TickingBlockEntity;tick()V")
     )
-    private Iterator<TickingBlockEntity> onBlockEntityIterator(List<TickingBlockEntity> tickers) {
-        return TicketPerfMixinHooks.wrapBlockEntityIterator((Level) (Object) this, tickers.iterator());
+    private void onTickBlockEntity(TickingBlockEntity ticker) {
+        TicketPerfMixinHooks.tickBlockEntity((Level) (Object) this, ticker);
     }
 }
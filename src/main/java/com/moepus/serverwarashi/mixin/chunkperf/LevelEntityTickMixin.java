@@ -10,7 +10,7 @@ import org.spongepowered.asm.mixin.injection.Redirect;
 import java.util.function.Consumer;
 
 /**
- * 在真实实体 tick 调用点包装 Consumer，避免常驻共享状态对象。
+ * 在真实实体 tick 调用点直接计时，未分析时原样转发，分析时也不分配包装对象。
  */
 @Mixin(value = ServerLevel.class, remap = false)
 public abstract class LevelEntityTickMixin {
@@ -22,6 +22,6 @@ public abstract class LevelEntityTickMixin {
             )
     )
     private void onGuardEntityTick(ServerLevel level, Consumer<Entity> consumer, Entity entity) {
-        level.guardEntityTick(TicketPerfMixinHooks.wrapEntityTickConsumer(level, consumer, entity), entity);
+        TicketPerfMixinHooks.guardEntityTick(level, consumer, entity);
     }
 }
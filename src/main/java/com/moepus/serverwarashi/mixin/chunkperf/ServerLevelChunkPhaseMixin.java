@@ -0,0 +1,50 @@
+package com.moepus.serverwarashi.mixin.chunkperf;
+
+import com.moepus.serverwarashi.modules.performance.TicketPerfMixinHooks;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.profiling.ProfilerFiller;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+/**
+ * 借用 tickChunk 内原有的 profiler 分段调用作为子阶段边界，只对正在计时的区块打点。
+ */
+@Mixin(value = ServerLevel.class, remap = false)
+public abstract class ServerLevelChunkPhaseMixin {
+    @Redirect(
+            method = "tickChunk",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/util/profiling/ProfilerFiller;push(Ljava/lang/String;)V"
+            )
+    )
+    private void onPhasePush(ProfilerFiller profiler, String section) {
+        profiler.push(section);
+        TicketPerfMixinHooks.markChunkPhase(section);
+    }
+
+    @Redirect(
+            method = "tickChunk",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/util/profiling/ProfilerFiller;popPush(Ljava/lang/String;)V"
+            )
+    )
+    private void onPhasePopPush(ProfilerFiller profiler, String section) {
+        profiler.popPush(section);
+        TicketPerfMixinHooks.markChunkPhase(section);
+    }
+
+    @Redirect(
+            method = "tickChunk",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/util/profiling/ProfilerFiller;pop()V"
+            )
+    )
+    private void onPhasePop(ProfilerFiller profiler) {
+        profiler.pop();
+        TicketPerfMixinHooks.markChunkPhase(null);
+    }
+}
@@ -3,13 +3,14 @@ package com.moepus.serverwarashi.mixin.chunkperf;
 import com.moepus.serverwarashi.modules.performance.TicketPerfMixinHooks;
 import net.minecraft.server.level.ServerChunkCache;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.NaturalSpawner;
 import net.minecraft.world.level.chunk.LevelChunk;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Redirect;
 
 /**
- * 在区块 tick 调用点做 branch，避免在 ServerLevel.tickChunk 内部维持共享状态。
+ * 在区块 tick 与自然生成调用点做 branch，避免在 ServerLevel.tickChunk 内部维持共享状态。
  */
 @Mixin(value = ServerChunkCache.class, remap = false)
 public abstract class ServerLevelChunkTickMixin {
@@ -23,4 +24,20 @@ public abstract class ServerLevelChunkTickMixin {
     private void onTickChunk(ServerLevel level, LevelChunk chunk, int randomTickSpeed) {
         TicketPerfMixinHooks.profileChunkTick(level, chunk, randomTickSpeed);
     }
+
+    @Redirect(
+            method = "tickChunks",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/world/level/NaturalSpawner;spawnForChunk(Lnet/minecraft/server/level/ServerLevel;Lnet/minecraft/world/level/chunk/LevelChunk;Lnet/minecraft/world/level/NaturalSpawner$SpawnState;ZZZ)V"
+            )
+    )
+    private void onSpawnForChunk(ServerLevel level,
+                                 LevelChunk chunk,
+                                 NaturalSpawner.SpawnState spawnState,
+                                 boolean spawnFriendlies,
+                                 boolean spawnMonsters,
+                                 boolean spawnPersistent) {
+        TicketPerfMixinHooks.spawnForChunk(level, chunk, spawnState, spawnFriendlies, spawnMonsters, spawnPersistent);
+    }
 }
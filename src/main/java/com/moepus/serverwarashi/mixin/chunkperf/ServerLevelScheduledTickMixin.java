@@ -0,0 +1,40 @@
+package com.moepus.serverwarashi.mixin.chunkperf;
+
+import com.moepus.serverwarashi.modules.performance.TicketPerfMixinHooks;
+import net.minecraft.core.BlockPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.RandomSource;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.material.FluidState;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+/**
+ * 在计划刻（LevelTicks 中的方块 / 流体 tick）执行点直接计时，未分析时原样转发。
+ */
+@Mixin(value = ServerLevel.class, remap = false)
+public abstract class ServerLevelScheduledTickMixin {
+    @Redirect(
+            method = "tickBlock",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/world/level/block/state/BlockState;tick(Lnet/minecraft/server/level/ServerLevel;Lnet/minecraft/core/BlockPos;Lnet/minecraft/util/RandomSource;)V"
+            )
+    )
+    private void onTickBlock(BlockState state, ServerLevel level, BlockPos pos, RandomSource random) {
+        TicketPerfMixinHooks.tickScheduledBlock(level, state, pos, random);
+    }
+
+    @Redirect(
+            method = "tickFluid",
+            at = @At(
+                    value = "INVOKE",
+                    target = "Lnet/minecraft/world/level/material/FluidState;tick(Lnet/minecraft/world/level/Level;Lnet/minecraft/core/BlockPos;)V"
+            )
+    )
+    private void onTickFluid(FluidState state, Level level, BlockPos pos) {
+        TicketPerfMixinHooks.tickScheduledFluid((ServerLevel) (Object) this, state, pos);
+    }
+}
@@ -43,11 +43,22 @@ public final class TicketBucketRuntime {
         SERVICE.processTickets(level, tickAge);
     }
 
+    /**
+     * 读取指定维度最近一次自动分桶的统计。
+     *
+     * @param level 目标维度
+     * @return 统计；未启用或没有候选 ticket 时为 {@code null}
+     */
+    public static TicketBucketService.BucketStats lastStats(ServerLevel level) {
+        return SERVICE.lastStats(level.dimension());
+    }
+
     /**
      * 清空自动分桶模块的全部运行时状态。
      */
     public static void clearRuntimeState() {
         tickAge = 0;
         ANALYSIS_SUSPENDED_LEVELS.clear();
+        SERVICE.clear();
     }
 }
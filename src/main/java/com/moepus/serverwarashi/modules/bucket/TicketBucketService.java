@@ -1,24 +1,41 @@
 package com.moepus.serverwarashi.modules.bucket;
 
+import com.moepus.serverwarashi.common.group.ChunkClusterer;
+import com.moepus.serverwarashi.common.jfr.BucketRotationEvent;
 import com.moepus.serverwarashi.common.ticket.IPauseableTicket;
 import com.moepus.serverwarashi.common.ticket.TicketPauseService;
 import com.moepus.serverwarashi.common.ticket.TicketUtils;
+import com.moepus.serverwarashi.config.ChunkGroupConfig;
 import com.moepus.serverwarashi.config.TicketBucketConfig;
 import com.moepus.serverwarashi.mixin.DistanceManagerAccessor;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.Ticket;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 自动分桶策略实现。
  */
 public final class TicketBucketService {
+    private final Map<ResourceKey<Level>, BucketStats> lastStats = new HashMap<>();
+    private final Map<ResourceKey<Level>, BaseCache> baseCaches = new HashMap<>();
+
     /**
      * 在一次维度 tick 中执行自动分桶逻辑。
      *
@@ -26,19 +43,55 @@ public final class TicketBucketService {
      * @param age 当前全局 tick 计数
      */
     public void processTickets(ServerLevel level, int age) {
-        if (!TicketBucketConfig.enabled()||age % TicketBucketConfig.runEvery() != 0) {
+        if (!TicketBucketConfig.enabled()) {
+            lastStats.remove(level.dimension());
+            baseCaches.remove(level.dimension());
+            return;
+        }
+        if (age % TicketBucketConfig.runEvery() != 0) {
             return;
         }
+        BucketRotationEvent event = new BucketRotationEvent();
+        event.begin();
         DistanceManagerAccessor distanceManager = TicketUtils.getDistanceManager(level);
-        var tickets = collectTickets(TicketUtils.getTickets(distanceManager).long2ObjectEntrySet());
+        var tickets = collectTickets(level.dimension(), TicketUtils.getTickets(distanceManager).long2ObjectEntrySet());
         if (tickets.isEmpty()) {
+            lastStats.remove(level.dimension());
             return;
         }
 
-        LongOpenHashSet modifiedChunks = TicketBucketConfig.pauseAll() ? pauseAllTickets(tickets) : bucketTickets(tickets, age);
+        BucketPass pass = TicketBucketConfig.pauseAll() ? pauseAllTickets(tickets) : bucketTickets(tickets, age);
+        LongOpenHashSet modifiedChunks = pass.modifiedChunks();
         if (!modifiedChunks.isEmpty()) {
-            TicketPauseService.updateChunkLevel(distanceManager, modifiedChunks);
+            TicketPauseService.updateChunkLevel(level, modifiedChunks, IPauseableTicket.PAUSE_REASON_AUTO);
         }
+        lastStats.put(level.dimension(), new BucketStats(tickets.size(), pass.bucketCount(), pass.activeTickets()));
+        if (event.shouldCommit()) {
+            event.dimension = level.dimension().location().toString();
+            event.ticketCount = tickets.size();
+            event.bucketCount = pass.bucketCount();
+            event.activeBucket = pass.activeBucket();
+            event.modifiedChunks = modifiedChunks.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * 读取指定维度最近一次分桶的统计。
+     *
+     * @param dimension 目标维度
+     * @return 统计；未启用或没有候选 ticket 时为 {@code null}
+     */
+    public BucketStats lastStats(ResourceKey<Level> dimension) {
+        return lastStats.get(dimension);
+    }
+
+    /**
+     * 清空各维度的分桶统计与聚类缓存。
+     */
+    public void clear() {
+        lastStats.clear();
+        baseCaches.clear();
     }
 
     /**
@@ -47,29 +100,136 @@ public final class TicketBucketService {
      * vanilla 会在玩家 viewDistance 范围内每个 chunk 都注册一个 PLAYER ticket
      * 实例（level=31），借此天然覆盖玩家可见范围，避免削掉这些 chunk 的实体 tick。
      *
+     * @param dimension 目标维度，用于复用基地聚类结果
      * @param tickets 当前维度全部 ticket 入口
      * @return 可参与自动分桶的 ticket 列表
      */
     private List<TicketEntry> collectTickets(
+            ResourceKey<Level> dimension,
             Iterable<? extends Long2ObjectMap.Entry<? extends Iterable<Ticket<?>>>> tickets
     ) {
-        List<TicketEntry> allTickets = new ArrayList<>();
+        LongArrayList chunks = new LongArrayList();
+        List<Iterable<Ticket<?>>> ticketSets = new ArrayList<>();
         for (var entry : tickets) {
-            long chunkPosLong = entry.getLongKey();
             if (containsSystemTicket(entry.getValue())) {
                 continue;
             }
+            chunks.add(entry.getLongKey());
+            ticketSets.add(entry.getValue());
+        }
+        int clusterDistance = ChunkGroupConfig.clusterDistance();
+        BaseCache cache = null;
+        if (clusterDistance > 0) {
+            cache = baseCaches.computeIfAbsent(dimension, ignored -> new BaseCache());
+        } else {
+            baseCaches.remove(dimension);
+        }
+        return sortKeys(chunks, ticketSets, cache, clusterDistance, TicketBucketConfig.groupSize());
+    }
+
+    /**
+     * 为已排除系统 ticket 的区块生成分桶条目：排序键为区块 Morton 编码，启用聚类时替换为基地锚点编码。
+     * 不读取配置与世界状态。
+     *
+     * @param chunks 区块坐标
+     * @param ticketSets 与 {@code chunks} 对应的 ticket 集合
+     * @param cache 聚类缓存，未启用聚类时可为 {@code null}
+     * @param clusterDistance 相连距离阈值，0 表示不聚类
+     * @param maxBaseTickets 单段基地的 ticket 上限
+     * @return 可参与自动分桶的 ticket 列表
+     */
+    static List<TicketEntry> sortKeys(LongList chunks,
+                                      List<? extends Iterable<Ticket<?>>> ticketSets,
+                                      BaseCache cache,
+                                      int clusterDistance,
+                                      int maxBaseTickets) {
+        List<TicketEntry> allTickets = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            long chunkPosLong = chunks.getLong(i);
             int chunkX = ChunkPos.getX(chunkPosLong);
             int chunkZ = ChunkPos.getZ(chunkPosLong);
             long morton = TicketMorton.morton2D(chunkX, chunkZ);
 
-            for (Ticket<?> ticket : entry.getValue()) {
+            for (Ticket<?> ticket : ticketSets.get(i)) {
                 allTickets.add(new TicketEntry(ticket, morton, chunkPosLong));
             }
         }
+        if (clusterDistance > 0 && !allTickets.isEmpty()) {
+            return anchorToBases(allTickets, cache, clusterDistance, maxBaseTickets);
+        }
         return allTickets;
     }
 
+    /**
+     * 将空间相连的区块聚成基地，并把基地内全部 ticket 的排序键替换为基地的锚点编码。
+     * 排序后同一基地的 ticket 连续排列，分桶时不会被拆开，整个基地同时运行或同时暂停。
+     * ticket 数超过 {@code maxBaseTickets} 的基地按区块 Morton 顺序切成若干段，每段至多
+     * {@code maxBaseTickets} 个 ticket（单个区块不拆开），各段以段内最小编码为锚点，
+     * 避免一个大基地变成不受 group_size 约束的单个桶。
+     * 聚类结果按区块集合缓存，ticket 所在区块不变时不会重新聚类。
+     *
+     * @param allTickets 全部候选 ticket，排序键为所在区块的 Morton 编码
+     * @param cache 聚类缓存
+     * @param clusterDistance 相连距离阈值
+     * @param maxBaseTickets 单段基地的 ticket 上限
+     * @return 使用基地锚点编码的 ticket 列表
+     */
+    static List<TicketEntry> anchorToBases(List<TicketEntry> allTickets,
+                                           BaseCache cache,
+                                           int clusterDistance,
+                                           int maxBaseTickets) {
+        Long2IntOpenHashMap chunkIndex = new Long2IntOpenHashMap();
+        chunkIndex.defaultReturnValue(-1);
+        LongArrayList chunks = new LongArrayList();
+        LongArrayList chunkMortons = new LongArrayList();
+        IntArrayList chunkTickets = new IntArrayList();
+        for (TicketEntry entry : allTickets) {
+            int index = chunkIndex.putIfAbsent(entry.chunkPos, chunks.size());
+            if (index == -1) {
+                chunks.add(entry.chunkPos);
+                chunkMortons.add(entry.morton);
+                chunkTickets.add(1);
+            } else {
+                chunkTickets.set(index, chunkTickets.getInt(index) + 1);
+            }
+        }
+        long[] bases = cache.resolve(chunks.toLongArray(), chunkMortons.toLongArray(), clusterDistance);
+
+        Long2IntOpenHashMap baseTickets = new Long2IntOpenHashMap();
+        for (int i = 0; i < bases.length; i++) {
+            baseTickets.addTo(bases[i], chunkTickets.getInt(i));
+        }
+        // 默认锚点为基地最小编码，超大基地再按段改写
+        long[] anchors = bases.clone();
+        Long2ObjectOpenHashMap<IntArrayList> oversized = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < bases.length; i++) {
+            if (baseTickets.get(bases[i]) > maxBaseTickets) {
+                oversized.computeIfAbsent(bases[i], ignored -> new IntArrayList()).add(i);
+            }
+        }
+        for (IntArrayList members : oversized.values()) {
+            members.sort((a, b) -> Long.compare(chunkMortons.getLong(a), chunkMortons.getLong(b)));
+            long anchor = chunkMortons.getLong(members.getInt(0));
+            int runTickets = 0;
+            for (int i = 0; i < members.size(); i++) {
+                int member = members.getInt(i);
+                int tickets = chunkTickets.getInt(member);
+                if (runTickets > 0 && runTickets + tickets > maxBaseTickets) {
+                    anchor = chunkMortons.getLong(member);
+                    runTickets = 0;
+                }
+                anchors[member] = anchor;
+                runTickets += tickets;
+            }
+        }
+
+        List<TicketEntry> anchored = new ArrayList<>(allTickets.size());
+        for (TicketEntry entry : allTickets) {
+            anchored.add(new TicketEntry(entry.ticket, anchors[chunkIndex.get(entry.chunkPos)], entry.chunkPos));
+        }
+        return anchored;
+    }
+
     private static boolean containsSystemTicket(Iterable<? extends Ticket<?>> tickets) {
         for (Ticket<?> ticket : tickets) {
             if (TicketUtils.isSystemTicket(ticket)) {
@@ -83,16 +243,16 @@ public final class TicketBucketService {
      * 将收集到的所有 ticket 一次性打上 AUTO 暂停原因。
      *
      * @param allTickets 全部候选 ticket
-     * @return 被修改的区块映射
+     * @return 本次分桶结果
      */
-    private LongOpenHashSet pauseAllTickets(List<TicketEntry> allTickets) {
+    private BucketPass pauseAllTickets(List<TicketEntry> allTickets) {
         LongOpenHashSet modifiedChunks = new LongOpenHashSet();
         for (TicketEntry entry : allTickets) {
             if (TicketPauseService.updateTicketPauseReason(entry.ticket, true, IPauseableTicket.PAUSE_REASON_AUTO)) {
                 modifiedChunks.add(entry.chunkPos);
             }
         }
-        return modifiedChunks;
+        return new BucketPass(modifiedChunks, 0, -1, 0);
     }
 
     /**
@@ -100,9 +260,9 @@ public final class TicketBucketService {
      *
      * @param allTickets 全部候选 ticket
      * @param age 当前全局 tick 计数
-     * @return 被修改的区块映射
+     * @return 本次分桶结果
      */
-    private LongOpenHashSet bucketTickets(List<TicketEntry> allTickets, int age) {
+    private BucketPass bucketTickets(List<TicketEntry> allTickets, int age) {
         allTickets.sort(Comparator.comparingLong(te -> te.morton));
         List<List<TicketEntry>> buckets = TicketMorton.divideChunkBuckets(allTickets);
         int currentGroupIndex = (age / TicketBucketConfig.runEvery()) % buckets.size();
@@ -116,14 +276,89 @@ public final class TicketBucketService {
                 }
             }
         }
-        return modifiedChunks;
+        return new BucketPass(modifiedChunks, buckets.size(), currentGroupIndex, buckets.get(currentGroupIndex).size());
+    }
+
+    /**
+     * 一次分桶的结果。
+     *
+     * @param modifiedChunks 被修改的区块
+     * @param bucketCount    桶数，全部暂停模式下为 0
+     * @param activeBucket   活动桶下标，全部暂停模式下为 -1
+     * @param activeTickets  活动桶内的 ticket 数
+     */
+    private record BucketPass(LongOpenHashSet modifiedChunks, int bucketCount, int activeBucket, int activeTickets) {
+    }
+
+    /**
+     * 单个维度最近一次分桶的统计。
+     *
+     * @param ticketCount   参与分桶的 ticket 数
+     * @param bucketCount   桶数，全部暂停模式下为 0
+     * @param activeTickets 活动桶内的 ticket 数
+     */
+    public record BucketStats(int ticketCount, int bucketCount, int activeTickets) {
+        /**
+         * 参与分桶的 ticket 中当前处于运行状态的比例。
+         */
+        public double dutyCycle() {
+            return ticketCount == 0 ? 0.0 : (double) activeTickets / ticketCount;
+        }
+    }
+
+    /**
+     * 单个维度的基地聚类缓存：区块 -> 所在基地的最小 Morton 编码。
+     * 只有区块集合或相连距离变化时才重新聚类，分桶轮换本身不会触发。
+     */
+    static final class BaseCache {
+        private final Long2LongOpenHashMap baseByChunk = new Long2LongOpenHashMap();
+        private int clusterDistance = -1;
+
+        /**
+         * @param chunks 不重复的区块坐标
+         * @param mortons 与 {@code chunks} 对应的 Morton 编码
+         * @param clusterDistance 相连距离阈值
+         * @return 与输入等长的基地编码
+         */
+        long[] resolve(long[] chunks, long[] mortons, int clusterDistance) {
+            if (!matches(chunks, clusterDistance)) {
+                int[] roots = ChunkClusterer.clusterChunks(chunks, clusterDistance);
+                long[] rootMortons = new long[roots.length];
+                Arrays.fill(rootMortons, Long.MAX_VALUE);
+                for (int i = 0; i < roots.length; i++) {
+                    rootMortons[roots[i]] = Math.min(rootMortons[roots[i]], mortons[i]);
+                }
+                baseByChunk.clear();
+                for (int i = 0; i < chunks.length; i++) {
+                    baseByChunk.put(chunks[i], rootMortons[roots[i]]);
+                }
+                this.clusterDistance = clusterDistance;
+            }
+            long[] bases = new long[chunks.length];
+            for (int i = 0; i < chunks.length; i++) {
+                bases[i] = baseByChunk.get(chunks[i]);
+            }
+            return bases;
+        }
+
+        private boolean matches(long[] chunks, int clusterDistance) {
+            if (clusterDistance != this.clusterDistance || chunks.length != baseByChunk.size()) {
+                return false;
+            }
+            for (long chunk : chunks) {
+                if (!baseByChunk.containsKey(chunk)) {
+                    return false;
+                }
+            }
+            return true;
+        }
     }
 
     /**
      * 自动分桶过程中使用的 ticket 条目。
      *
      * @param ticket 原始 ticket
-     * @param morton 所在 chunk 的 Morton 编码
+     * @param morton 所在 chunk 的 Morton 编码（启用聚类时为所在基地的锚点编码）
      * @param chunkPos 所在 chunk 坐标
      */
     record TicketEntry(Ticket<?> ticket, long morton, long chunkPos) {}
@@ -40,14 +40,27 @@ public class TicketMorton {    /**
      * @return 切分后的桶列表
      */
     static List<List<TicketBucketService.TicketEntry>> divideChunkBuckets(List<TicketBucketService.TicketEntry> allTickets) {
-        int targetBucketSize = TicketBucketConfig.groupSize();
+        return divideChunkBuckets(allTickets, TicketBucketConfig.groupSize(), TicketBucketConfig.proximityThreshold());
+    }
+
+    /**
+     * 按给定参数切分，不读取配置，便于在游戏外做基准测试。
+     *
+     * @param allTickets         已按 Morton 编码排序的 ticket
+     * @param targetBucketSize   目标桶大小
+     * @param proximityThreshold 邻近阈值
+     * @return 切分后的桶列表
+     */
+    static List<List<TicketBucketService.TicketEntry>> divideChunkBuckets(List<TicketBucketService.TicketEntry> allTickets,
+                                                                         int targetBucketSize,
+                                                                         int proximityThreshold) {
         int maxBucketSize = targetBucketSize * 2;
 
         List<List<TicketBucketService.TicketEntry>> buckets = new ArrayList<>();
         List<TicketBucketService.TicketEntry> current = new ArrayList<>();
 
         for (TicketBucketService.TicketEntry entry : allTickets) {
-            if (shouldAppendToCurrentBucket(current, entry, targetBucketSize, maxBucketSize)) {
+            if (shouldAppendToCurrentBucket(current, entry, targetBucketSize, maxBucketSize, proximityThreshold)) {
                 current.add(entry);
                 continue;
             }
@@ -65,14 +78,19 @@ public class TicketMorton {    /**
     private static boolean shouldAppendToCurrentBucket(List<TicketBucketService.TicketEntry> current,
                                                 TicketBucketService.TicketEntry entry,
                                                 int targetBucketSize,
-                                                int maxBucketSize) {
+                                                int maxBucketSize,
+                                                int proximityThreshold) {
         if (current.size() < targetBucketSize) {
             return true;
         }
+        long diff = entry.morton() - current.get(current.size() - 1).morton();
+        // 相同编码代表同一区块或同一基地（超大基地已按 group_size 切段），始终放入同一桶
+        if (diff == 0) {
+            return true;
+        }
         if (current.size() >= maxBucketSize) {
             return false;
         }
-        long diff = entry.morton() - current.get(current.size() - 1).morton();
-        return diff <= TicketBucketConfig.proximityThreshold();
+        return diff <= proximityThreshold;
     }
 }
@@ -0,0 +1,92 @@
+package com.moepus.serverwarashi.modules.budget;
+
+import com.moepus.serverwarashi.config.BudgetConfig;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.server.level.ServerLevel;
+
+import java.util.List;
+
+/**
+ * 耗时预算限流模块对外入口。
+ * 层级：入口层。
+ * 上游：Commands / TicketBudgetRuntime。下游：TicketBudgetService。
+ */
+public final class TicketBudgetApi {
+    private TicketBudgetApi() {
+    }
+
+    /**
+     * 列出当前维度的预算、最近一次评估的合计耗时与被限流的分组，不修改任何状态。
+     *
+     * @param level 目标维度
+     * @return 状态报告
+     */
+    public static Component status(ServerLevel level) {
+        TicketBudgetService.DimensionBudget state = TicketBudgetRuntime.state(level);
+        List<TicketBudgetService.ThrottledGroup> throttled = state == null ? List.of() : state.throttled();
+        double activeMspt = state == null ? 0.0 : state.lastActiveNanos() / 1_000_000.0;
+        long tick = level.getServer().getTickCount();
+        MutableComponent root = Component.literal("Cost budget:\n").withStyle(ChatFormatting.AQUA)
+                .append(Component.literal(String.format("Dimension: %s | Budget=%.2fms/tick | Active=%.2fms/tick"
+                                + " | Throttled=%d | Policy=%s\n",
+                        level.dimension().location(),
+                        BudgetConfig.budgetMspt(),
+                        activeMspt,
+                        throttled.size(),
+                        BudgetConfig.enabled() ? "on" : "off"))
+                        .withStyle(ChatFormatting.GRAY));
+        if (throttled.isEmpty()) {
+            root = root.append(Component.literal("No group is throttled\n"));
+        }
+        for (int i = 0; i < throttled.size(); i++) {
+            TicketBudgetService.ThrottledGroup group = throttled.get(i);
+            root = root.append(Component.empty()
+                    .append(TicketPerfMessages.groupComponent(group.owner(), group.memberCount()))
+                    .append(Component.literal(" ").withStyle(ChatFormatting.DARK_GRAY))
+                    .append(Component.literal("T" + i + ": ").withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal(String.format("C=%d, for %ds ",
+                                    group.chunks().size(),
+                                    (tick - group.sinceTick()) / 20))
+                            .withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal(String.format("mspt=%.2f", group.nanosPerTick() / 1_000_000.0))
+                            .withStyle(ChatFormatting.GOLD))
+                    .append(Component.literal("\n").withStyle(ChatFormatting.DARK_GRAY)));
+        }
+        List<? extends String> exempt = BudgetConfig.exemptOwners();
+        root = root.append(Component.literal("Exempt: " + (exempt.isEmpty() ? "-" : String.join(", ", exempt)) + "\n")
+                .withStyle(ChatFormatting.DARK_AQUA));
+        return root;
+    }
+
+    /**
+     * 解除当前服务器全部维度上的 BUDGET 暂停原因。
+     *
+     * @param level 任意维度，用于定位服务器
+     */
+    public static void clearAll(ServerLevel level) {
+        for (ServerLevel serverLevel : level.getServer().getAllLevels()) {
+            TicketBudgetService.releaseAll(serverLevel, TicketBudgetRuntime.state(serverLevel));
+        }
+        TicketBudgetRuntime.clearRuntimeState();
+    }
+
+    /**
+     * 格式化一次评估中的限流变化，输出到服务器日志。
+     */
+    static Component formatPass(ServerLevel level, TicketBudgetService.BudgetPass pass) {
+        MutableComponent root = Component.literal(String.format("[budget] %s: %.2f/%.2fms/tick",
+                level.dimension().location(),
+                pass.activeNanos() / 1_000_000.0,
+                pass.budgetNanos() / 1_000_000.0));
+        for (TicketBudgetService.ThrottledGroup group : pass.paused()) {
+            root = root.append(String.format(" | throttled %s (%.2fms)", group.owner(), group.nanosPerTick() / 1_000_000.0));
+        }
+        for (TicketBudgetService.ThrottledGroup group : pass.released()) {
+            root = root.append(String.format(" | released %s", group.owner()));
+        }
+        return root;
+    }
+}
@@ -0,0 +1,63 @@
+package com.moepus.serverwarashi.modules.budget;
+
+import com.moepus.serverwarashi.config.BudgetConfig;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 耗时预算限流模块运行时入口。
+ * 层级：入口层。
+ * 上游：ServerWarashiEvents。下游：TicketBudgetService。
+ */
+public final class TicketBudgetRuntime {
+    private static final Map<ResourceKey<Level>, TicketBudgetService.DimensionBudget> STATES = new HashMap<>();
+
+    private TicketBudgetRuntime() {
+    }
+
+    /**
+     * 在维度 tick 中按周期重新评估预算。
+     * 关闭策略后首次进入该维度时会解除全部 BUDGET 暂停原因。
+     *
+     * @param level 目标维度
+     */
+    public static void onLevelTickPre(ServerLevel level) {
+        if (!BudgetConfig.enabled()) {
+            TicketBudgetService.DimensionBudget state = STATES.remove(level.dimension());
+            if (state != null) {
+                TicketBudgetService.releaseAll(level, state);
+            }
+            return;
+        }
+        if (level.getServer().getTickCount() % BudgetConfig.scanIntervalTicks() != 0) {
+            return;
+        }
+        TicketBudgetService.DimensionBudget state =
+                STATES.computeIfAbsent(level.dimension(), ignored -> new TicketBudgetService.DimensionBudget());
+        TicketBudgetService.BudgetPass pass = TicketBudgetService.enforce(level, state);
+        if (!pass.paused().isEmpty() || !pass.released().isEmpty()) {
+            level.getServer().sendSystemMessage(TicketBudgetApi.formatPass(level, pass));
+        }
+    }
+
+    /**
+     * 读取维度的限流状态。
+     *
+     * @param level 目标维度
+     * @return 限流状态，未启用过时为 null
+     */
+    static TicketBudgetService.DimensionBudget state(ServerLevel level) {
+        return STATES.get(level.dimension());
+    }
+
+    /**
+     * 清空限流模块的全部运行时状态。
+     */
+    public static void clearRuntimeState() {
+        STATES.clear();
+    }
+}
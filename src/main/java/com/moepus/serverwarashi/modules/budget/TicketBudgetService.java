@@ -0,0 +1,228 @@
+package com.moepus.serverwarashi.modules.budget;
+
+import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.common.ticket.IPauseableTicket;
+import com.moepus.serverwarashi.common.ticket.TicketOwner;
+import com.moepus.serverwarashi.common.ticket.TicketPauseService;
+import com.moepus.serverwarashi.config.BudgetConfig;
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.server.level.ServerLevel;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按实测耗时限流的实现。
+ * 耗时来自常驻采样器的分组估计：维度内活跃分组合计耗时超出预算时，从最贵的非豁免分组开始挂 BUDGET 暂停原因，
+ * 直到回到预算内；合计耗时加上被限流分组暂停前的耗时不超过 {@code 预算 * releaseRatio} 时按暂停的逆序恢复。
+ * 分组本身只由非系统 ticket 组成，系统 ticket 不会被限流。
+ */
+public final class TicketBudgetService {
+    private TicketBudgetService() {
+    }
+
+    /**
+     * 对当前维度执行一次预算评估，并更新限流状态。
+     * 采样器未启用时没有耗时数据，解除该维度的全部限流。
+     *
+     * @param level 目标维度
+     * @param state 该维度的限流状态
+     * @return 本次评估结果
+     */
+    public static BudgetPass enforce(ServerLevel level, DimensionBudget state) {
+        long tick = level.getServer().getTickCount();
+        state.recentlyReleased.values().removeIf(released -> released.untilTick() <= tick);
+        TicketPerfSampler.SamplerReport report = TicketPerfSampler.report(level.dimension(), Integer.MAX_VALUE);
+        double budgetNanos = BudgetConfig.budgetNanosPerTick();
+        List<ThrottledGroup> paused = new ArrayList<>();
+        List<ThrottledGroup> released = new ArrayList<>();
+        if (!report.enabled()) {
+            released.addAll(state.throttled.values());
+            releaseAll(level, state);
+            state.lastActiveNanos = 0.0;
+            return new BudgetPass(false, 0.0, budgetNanos, paused, released);
+        }
+
+        // 豁免名单变化后立即放行
+        for (ThrottledGroup group : List.copyOf(state.throttled.values())) {
+            if (isExempt(group.owner())) {
+                release(level, state, group, tick, released);
+            }
+        }
+
+        // 不按暂停状态过滤：开启分桶时大部分分组此刻都处于 AUTO 暂停，采样估计已按轮换平均
+        Map<TicketOwner<?>, ChunkGroupSnapshot.ChunkGroupEntry> active = new HashMap<>();
+        for (ChunkGroupSnapshot.ChunkGroupEntry entry :
+                ChunkGroupService.listGroups(level, ChunkGroupSnapshot.PauseMode.ALL)) {
+            ThrottledGroup throttled = state.throttled.get(entry.owner());
+            if (throttled != null) {
+                // 被限流的 owner 又加载了新区块或新 ticket，并入原限流
+                TicketPauseService.applyPauseReasonToChunks(level, entry.chunks(), true, IPauseableTicket.PAUSE_REASON_BUDGET);
+                throttled.chunks().addAll(entry.chunks());
+                continue;
+            }
+            active.put(entry.owner(), entry);
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        double activeNanos = 0.0;
+        for (TicketPerfSampler.GroupCost cost : report.groups()) {
+            ChunkGroupSnapshot.ChunkGroupEntry entry = active.get(cost.owner());
+            if (entry == null) {
+                // 已限流或已卸载的分组，估计值仍在衰减
+                continue;
+            }
+            double nanos = cost.totalNanosPerTick();
+            ReleasedGroup recent = state.recentlyReleased.get(cost.owner());
+            if (recent != null) {
+                // 刚恢复的分组估计值需要若干半衰期才能回升，期间按暂停前的耗时计
+                nanos = Math.max(nanos, recent.nanosPerTick());
+            }
+            activeNanos += nanos;
+            candidates.add(new Candidate(entry, nanos));
+        }
+
+        if (activeNanos > budgetNanos) {
+            candidates.sort(Comparator.comparingDouble(Candidate::nanosPerTick).reversed());
+            int maxThrottled = BudgetConfig.maxThrottledGroups();
+            for (Candidate candidate : candidates) {
+                if (activeNanos <= budgetNanos || state.throttled.size() >= maxThrottled) {
+                    break;
+                }
+                ChunkGroupSnapshot.ChunkGroupEntry entry = candidate.entry();
+                if (isExempt(entry.owner())) {
+                    continue;
+                }
+                ThrottledGroup group = new ThrottledGroup(
+                        entry.owner(),
+                        entry.memberCount(),
+                        new LongOpenHashSet(entry.chunks()),
+                        candidate.nanosPerTick(),
+                        tick
+                );
+                TicketPauseService.applyPauseReasonToChunks(level, group.chunks(), true, IPauseableTicket.PAUSE_REASON_BUDGET);
+                state.throttled.put(group.owner(), group);
+                state.recentlyReleased.remove(group.owner());
+                paused.add(group);
+                activeNanos -= candidate.nanosPerTick();
+            }
+        } else if (!state.throttled.isEmpty()) {
+            double headroom = budgetNanos * BudgetConfig.releaseRatio() - activeNanos;
+            List<ThrottledGroup> newestFirst = new ArrayList<>(state.throttled.values());
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                ThrottledGroup group = newestFirst.get(i);
+                if (group.nanosPerTick() > headroom) {
+                    continue;
+                }
+                release(level, state, group, tick, released);
+                headroom -= group.nanosPerTick();
+                activeNanos += group.nanosPerTick();
+            }
+        }
+        state.lastActiveNanos = activeNanos;
+        return new BudgetPass(true, activeNanos, budgetNanos, paused, released);
+    }
+
+    /**
+     * 解除当前维度全部 BUDGET 暂停原因。
+     *
+     * @param level 目标维度
+     * @param state 该维度的限流状态，可为 null
+     * @return 被修改的区块数
+     */
+    public static int releaseAll(ServerLevel level, DimensionBudget state) {
+        if (state != null) {
+            state.throttled.clear();
+            state.recentlyReleased.clear();
+        }
+        return TicketPauseService.clearPauseReason(level, IPauseableTicket.PAUSE_REASON_BUDGET);
+    }
+
+    /**
+     * 判断 owner 是否在豁免名单中。条目可匹配 owner 名称或带坐标的完整标签。
+     *
+     * @param owner 分组 owner
+     * @return 是否豁免
+     */
+    public static boolean isExempt(TicketOwner<?> owner) {
+        List<? extends String> exempt = BudgetConfig.exemptOwners();
+        if (exempt.isEmpty()) {
+            return false;
+        }
+        return exempt.contains(owner.getName()) || exempt.contains(owner.toString());
+    }
+
+    private static void release(ServerLevel level,
+                                DimensionBudget state,
+                                ThrottledGroup group,
+                                long tick,
+                                List<ThrottledGroup> released) {
+        TicketPauseService.applyPauseReasonToChunks(level, group.chunks(), false, IPauseableTicket.PAUSE_REASON_BUDGET);
+        state.throttled.remove(group.owner());
+        long holdTicks = TicketPerfConfig.samplerHalfLifeTicks() * 2L;
+        state.recentlyReleased.put(group.owner(), new ReleasedGroup(group.nanosPerTick(), tick + holdTicks));
+        released.add(group);
+    }
+
+    /**
+     * 单个维度的限流状态。按暂停顺序保存被限流分组，恢复时逆序处理。
+     */
+    public static final class DimensionBudget {
+        private final LinkedHashMap<TicketOwner<?>, ThrottledGroup> throttled = new LinkedHashMap<>();
+        private final Map<TicketOwner<?>, ReleasedGroup> recentlyReleased = new HashMap<>();
+        private double lastActiveNanos;
+
+        public List<ThrottledGroup> throttled() {
+            return List.copyOf(throttled.values());
+        }
+
+        public double lastActiveNanos() {
+            return lastActiveNanos;
+        }
+    }
+
+    /**
+     * 一个被限流的分组。
+     *
+     * @param owner        分组 owner
+     * @param memberCount  聚类合并的成员数
+     * @param chunks       被挂上 BUDGET 原因的区块
+     * @param nanosPerTick 暂停前的估计耗时
+     * @param sinceTick    暂停时的服务器 tick
+     */
+    public record ThrottledGroup(TicketOwner<?> owner,
+                                 int memberCount,
+                                 LongOpenHashSet chunks,
+                                 double nanosPerTick,
+                                 long sinceTick) {
+    }
+
+    /**
+     * 一次预算评估的结果。
+     *
+     * @param samplerEnabled 采样器是否启用
+     * @param activeNanos    评估后活跃分组的合计耗时（纳秒/tick）
+     * @param budgetNanos    预算（纳秒/tick）
+     * @param paused         本次新限流的分组
+     * @param released       本次恢复的分组
+     */
+    public record BudgetPass(boolean samplerEnabled,
+                             double activeNanos,
+                             double budgetNanos,
+                             List<ThrottledGroup> paused,
+                             List<ThrottledGroup> released) {
+    }
+
+    private record ReleasedGroup(double nanosPerTick, long untilTick) {
+    }
+
+    private record Candidate(ChunkGroupSnapshot.ChunkGroupEntry entry, double nanosPerTick) {
+    }
+}
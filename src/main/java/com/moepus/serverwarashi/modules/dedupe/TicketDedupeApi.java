@@ -0,0 +1,59 @@
+package com.moepus.serverwarashi.modules.dedupe;
+
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.server.level.ServerLevel;
+
+/**
+ * 冗余 ticket 去重模块对外入口。
+ * 层级：入口层。
+ * 上游：Commands。下游：TicketDedupeService。
+ */
+public final class TicketDedupeApi {
+    private TicketDedupeApi() {
+    }
+
+    /**
+     * 扫描当前维度并列出被完全覆盖的冗余分组，不修改任何 ticket。
+     *
+     * @param level 目标维度
+     * @return 分析报告
+     */
+    public static Component scan(ServerLevel level) {
+        return formatScan(level, TicketDedupeService.scan(level), "Redundant ticket groups:");
+    }
+
+    /**
+     * 解除当前服务器全部维度上的 REDUNDANT 暂停原因。
+     *
+     * @param level 任意维度，用于定位服务器
+     */
+    public static void clearAll(ServerLevel level) {
+        level.getServer().getAllLevels().forEach(TicketDedupeService::clear);
+    }
+
+    private static Component formatScan(ServerLevel level, TicketDedupeService.DedupeScan scan, String header) {
+        int redundantTickets = scan.redundantTickets().size();
+        MutableComponent root = Component.literal(header + "\n").withStyle(ChatFormatting.AQUA)
+                .append(Component.literal("Dimension: " + level.dimension().location()
+                        + " | Groups=" + scan.ownerCount()
+                        + " | Tickets=" + scan.ticketCount()
+                        + " | Redundant=" + scan.redundantGroups().size() + "/" + redundantTickets + "\n")
+                        .withStyle(ChatFormatting.GRAY));
+        if (scan.redundantGroups().isEmpty()) {
+            return root.append(Component.literal("No redundant tickets found\n"));
+        }
+        for (int i = 0; i < scan.redundantGroups().size(); i++) {
+            TicketDedupeService.RedundantGroup group = scan.redundantGroups().get(i);
+            root = root.append(Component.empty()
+                    .append(group.owner().asComponent())
+                    .append(Component.literal(" ").withStyle(ChatFormatting.DARK_GRAY))
+                    .append(Component.literal("R" + i + ": ").withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal("C=" + group.chunkCount() + " T=" + group.ticketCount())
+                            .withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal("\n").withStyle(ChatFormatting.DARK_GRAY)));
+        }
+        return root;
+    }
+}
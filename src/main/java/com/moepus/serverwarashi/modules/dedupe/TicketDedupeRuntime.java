@@ -0,0 +1,63 @@
+package com.moepus.serverwarashi.modules.dedupe;
+
+import com.moepus.serverwarashi.config.TicketDedupeConfig;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 冗余 ticket 去重模块运行时入口。
+ * 层级：入口层。
+ * 上游：ServerWarashiEvents。下游：TicketDedupeService。
+ */
+public final class TicketDedupeRuntime {
+    // 已应用去重的维度 -> 最近一次扫描结果，用于每 tick 检查覆盖者是否仍然存在
+    private static final Map<ResourceKey<Level>, TicketDedupeService.DedupeScan> APPLIED_SCANS = new HashMap<>();
+
+    private TicketDedupeRuntime() {
+    }
+
+    /**
+     * 在维度 tick 中按周期重新评估冗余 ticket。
+     * 关闭策略后首次进入该维度时会解除全部 REDUNDANT 暂停原因。
+     *
+     * @param level 目标维度
+     */
+    public static void onLevelTickPre(ServerLevel level) {
+        if (!TicketDedupeConfig.enabled()) {
+            if (APPLIED_SCANS.remove(level.dimension()) != null) {
+                TicketDedupeService.clear(level);
+            }
+            return;
+        }
+        if (level.getServer().getTickCount() % TicketDedupeConfig.scanIntervalTicks() != 0) {
+            return;
+        }
+        TicketDedupeService.DedupeScan scan = TicketDedupeService.scan(level);
+        TicketDedupeService.apply(level, scan);
+        APPLIED_SCANS.put(level.dimension(), scan);
+    }
+
+    /**
+     * 覆盖者消失或被其他原因暂停时立即解除相应区块的 REDUNDANT。
+     * 在本 tick 其他暂停策略之后调用，保证区块 level 更新前完成解除。
+     *
+     * @param level 目标维度
+     */
+    public static void releaseUncovered(ServerLevel level) {
+        TicketDedupeService.DedupeScan scan = APPLIED_SCANS.get(level.dimension());
+        if (scan != null) {
+            TicketDedupeService.releaseUncovered(level, scan);
+        }
+    }
+
+    /**
+     * 清空去重模块的全部运行时状态。
+     */
+    public static void clearRuntimeState() {
+        APPLIED_SCANS.clear();
+    }
+}
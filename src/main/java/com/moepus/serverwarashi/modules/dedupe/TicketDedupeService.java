@@ -0,0 +1,304 @@
+package com.moepus.serverwarashi.modules.dedupe;
+
+import com.moepus.serverwarashi.common.ticket.IPauseableTicket;
+import com.moepus.serverwarashi.common.ticket.TicketOwner;
+import com.moepus.serverwarashi.common.ticket.TicketOwnerCache;
+import com.moepus.serverwarashi.common.ticket.TicketPauseService;
+import com.moepus.serverwarashi.common.ticket.TicketUtils;
+import com.moepus.serverwarashi.mixin.DistanceManagerAccessor;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.Ticket;
+import net.minecraft.server.level.TicketType;
+import net.minecraft.util.SortedArraySet;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * 冗余 ticket 分析与去重策略实现。
+ * 若某个 owner 分组的每个区块都已被其他 ticket 以不高于其 level 的级别覆盖，
+ * 则暂停该分组不会改变任何区块的最终 level，可安全打上 REDUNDANT 暂停原因。
+ */
+public final class TicketDedupeService {
+    /**
+     * 分析时视为“可恢复”的暂停原因：AUTO 随分桶轮换，REDUNDANT 由本模块自身维护。
+     * 同一区块内的 ticket 共享 Morton 编码，切桶时按 {@link com.moepus.serverwarashi.modules.bucket.TicketMorton}
+     * 的同编码规则始终落入同一桶，会一同轮换，因此不影响覆盖关系。
+     */
+    private static final int TRANSIENT_PAUSE_MASK =
+            IPauseableTicket.PAUSE_REASON_AUTO | IPauseableTicket.PAUSE_REASON_REDUNDANT;
+
+    private TicketDedupeService() {
+    }
+
+    /**
+     * 扫描当前维度的全部 ticket，找出被其他分组完全覆盖的冗余分组。
+     *
+     * @param level 目标维度
+     * @return 扫描结果
+     */
+    public static DedupeScan scan(ServerLevel level) {
+        DistanceManagerAccessor distanceManager = TicketUtils.getDistanceManager(level);
+        TicketOwnerCache ownerCache = new TicketOwnerCache(level);
+        HashMap<TicketOwner<?>, OwnerFootprint> footprintByOwner = new HashMap<>();
+        Long2ObjectOpenHashMap<ChunkCover> covers = new Long2ObjectOpenHashMap<>();
+        int candidateTickets = 0;
+
+        for (Long2ObjectMap.Entry<SortedArraySet<Ticket<?>>> entry
+                : TicketUtils.getTickets(distanceManager).long2ObjectEntrySet()) {
+            SortedArraySet<Ticket<?>> tickets = entry.getValue();
+            if (tickets == null || tickets.isEmpty()) {
+                continue;
+            }
+            long chunkPos = entry.getLongKey();
+            ChunkCover cover = null;
+            for (Ticket<?> ticket : tickets) {
+                int mask = ((IPauseableTicket) (Object) ticket).serverWarashi$getPauseMask();
+                if ((mask & ~TRANSIENT_PAUSE_MASK) != 0) {
+                    continue;
+                }
+                if (cover == null) {
+                    cover = covers.computeIfAbsent(chunkPos, ignored -> new ChunkCover());
+                }
+                int ticketLevel = TicketUtils.getOriginLevel(ticket);
+                if (TicketUtils.isSystemTicket(ticket)) {
+                    // 玩家、传送门等短时 ticket 随时会消失，不能作为覆盖者
+                    if (isPersistentSystemTicket(ticket)) {
+                        cover.systemLevel = Math.min(cover.systemLevel, ticketLevel);
+                    }
+                    continue;
+                }
+                OwnerFootprint footprint = footprintByOwner.computeIfAbsent(
+                        ownerCache.resolve(ticket),
+                        OwnerFootprint::new
+                );
+                if (footprint.add(chunkPos, ticketLevel, ticket)) {
+                    cover.owners.add(footprint);
+                }
+                candidateTickets++;
+            }
+        }
+
+        List<OwnerFootprint> candidates = new ArrayList<>(footprintByOwner.values());
+        candidates.sort(Comparator
+                .comparingInt((OwnerFootprint f) -> f.levels.size())
+                .thenComparing(f -> f.owner.toString()));
+        List<RedundantGroup> redundantGroups = new ArrayList<>();
+        ReferenceOpenHashSet<Ticket<?>> redundantTickets = new ReferenceOpenHashSet<>();
+        Long2IntOpenHashMap coveredLevels = new Long2IntOpenHashMap();
+        coveredLevels.defaultReturnValue(Integer.MAX_VALUE);
+        for (OwnerFootprint candidate : candidates) {
+            if (!isFullyCovered(candidate, covers)) {
+                continue;
+            }
+            candidate.redundant = true;
+            redundantTickets.addAll(candidate.tickets);
+            for (Long2IntMap.Entry entry : candidate.levels.long2IntEntrySet()) {
+                coveredLevels.put(entry.getLongKey(),
+                        Math.min(coveredLevels.get(entry.getLongKey()), entry.getIntValue()));
+            }
+            redundantGroups.add(new RedundantGroup(candidate.owner, candidate.levels.size(), candidate.tickets.size()));
+        }
+        redundantGroups.sort(Comparator.comparingInt(RedundantGroup::ticketCount).reversed()
+                .thenComparing(group -> group.owner().toString()));
+        return new DedupeScan(footprintByOwner.size(), candidateTickets, redundantGroups, redundantTickets, coveredLevels);
+    }
+
+    /**
+     * 按扫描结果为冗余 ticket 叠加 REDUNDANT 暂停原因，并解除不再冗余的 ticket。
+     *
+     * @param level 目标维度
+     * @param scan  同一 tick 内得到的扫描结果
+     * @return level 发生变化的区块数
+     */
+    public static int apply(ServerLevel level, DedupeScan scan) {
+        DistanceManagerAccessor distanceManager = TicketUtils.getDistanceManager(level);
+        LongOpenHashSet modifiedChunks = new LongOpenHashSet();
+        for (Long2ObjectMap.Entry<SortedArraySet<Ticket<?>>> entry
+                : TicketUtils.getTickets(distanceManager).long2ObjectEntrySet()) {
+            SortedArraySet<Ticket<?>> tickets = entry.getValue();
+            if (tickets == null || tickets.isEmpty()) {
+                continue;
+            }
+            for (Ticket<?> ticket : tickets) {
+                if (TicketUtils.isSystemTicket(ticket)) {
+                    continue;
+                }
+                boolean paused = scan.redundantTickets().contains(ticket);
+                if (TicketPauseService.updateTicketPauseReason(ticket, paused, IPauseableTicket.PAUSE_REASON_REDUNDANT)) {
+                    modifiedChunks.add(entry.getLongKey());
+                }
+            }
+        }
+        if (!modifiedChunks.isEmpty()) {
+            TicketPauseService.updateChunkLevel(level, modifiedChunks, IPauseableTicket.PAUSE_REASON_REDUNDANT);
+        }
+        return modifiedChunks.size();
+    }
+
+    /**
+     * 逐个检查上次扫描暂停过的区块是否仍有活动覆盖者，没有则立即解除该区块上的 REDUNDANT。
+     * 覆盖者的 ticket 被移除或被 IDLE/BUDGET 暂停后，不必等到下一次周期扫描。
+     * 只遍历被暂停的区块，每 tick 调用的开销与冗余区块数成正比。
+     *
+     * @param level 目标维度
+     * @param scan  最近一次已应用的扫描结果，会移除已解除的区块
+     * @return level 发生变化的区块数
+     */
+    public static int releaseUncovered(ServerLevel level, DedupeScan scan) {
+        if (scan.coveredLevels().isEmpty()) {
+            return 0;
+        }
+        Long2ObjectOpenHashMap<SortedArraySet<Ticket<?>>> ticketMap =
+                TicketUtils.getTickets(TicketUtils.getDistanceManager(level));
+        LongOpenHashSet modifiedChunks = new LongOpenHashSet();
+        var iterator = scan.coveredLevels().long2IntEntrySet().iterator();
+        while (iterator.hasNext()) {
+            Long2IntMap.Entry entry = iterator.next();
+            long chunkPos = entry.getLongKey();
+            SortedArraySet<Ticket<?>> tickets = ticketMap.get(chunkPos);
+            if (tickets == null || tickets.isEmpty()) {
+                iterator.remove();
+                continue;
+            }
+            if (hasActiveCoverer(tickets, entry.getIntValue(), scan.redundantTickets())) {
+                continue;
+            }
+            iterator.remove();
+            for (Ticket<?> ticket : tickets) {
+                if (scan.redundantTickets().contains(ticket)
+                        && TicketPauseService.updateTicketPauseReason(ticket, false, IPauseableTicket.PAUSE_REASON_REDUNDANT)) {
+                    modifiedChunks.add(chunkPos);
+                }
+            }
+        }
+        if (!modifiedChunks.isEmpty()) {
+            TicketPauseService.updateChunkLevel(level, modifiedChunks, IPauseableTicket.PAUSE_REASON_REDUNDANT);
+        }
+        return modifiedChunks.size();
+    }
+
+    private static boolean hasActiveCoverer(SortedArraySet<Ticket<?>> tickets,
+                                            int ticketLevel,
+                                            ReferenceOpenHashSet<Ticket<?>> redundantTickets) {
+        for (Ticket<?> ticket : tickets) {
+            if (redundantTickets.contains(ticket)
+                    || TicketUtils.getOriginLevel(ticket) > ticketLevel
+                    || (((IPauseableTicket) (Object) ticket).serverWarashi$getPauseMask() & ~TRANSIENT_PAUSE_MASK) != 0) {
+                continue;
+            }
+            if (!TicketUtils.isSystemTicket(ticket) || isPersistentSystemTicket(ticket)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 只有强制加载与出生点 ticket 会长期存在，可作为系统覆盖者。
+     */
+    private static boolean isPersistentSystemTicket(Ticket<?> ticket) {
+        return ticket.getType() == TicketType.FORCED || ticket.getType() == TicketType.START;
+    }
+
+    /**
+     * 解除当前维度全部 REDUNDANT 暂停原因。
+     *
+     * @param level 目标维度
+     * @return level 发生变化的区块数
+     */
+    public static int clear(ServerLevel level) {
+        return TicketPauseService.clearPauseReason(level, IPauseableTicket.PAUSE_REASON_REDUNDANT);
+    }
+
+    /**
+     * 判断候选分组的每个区块是否都存在其他未被判冗余的覆盖者。
+     * 覆盖者本身被判冗余时，其依赖的覆盖者仍保持活动，因此贪心顺序下结果始终安全。
+     */
+    private static boolean isFullyCovered(OwnerFootprint candidate, Long2ObjectOpenHashMap<ChunkCover> covers) {
+        for (Long2IntMap.Entry entry : candidate.levels.long2IntEntrySet()) {
+            ChunkCover cover = covers.get(entry.getLongKey());
+            if (cover == null || !cover.isCoveredWithout(candidate, entry.getLongKey(), entry.getIntValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 单次扫描结果。
+     *
+     * @param ownerCount       参与分析的非系统分组数
+     * @param ticketCount      参与分析的非系统 ticket 数
+     * @param redundantGroups  被判冗余的分组
+     * @param redundantTickets 需要暂停的 ticket（按引用比较）
+     * @param coveredLevels    被暂停区块 -> 需要覆盖者达到的 level
+     */
+    public record DedupeScan(int ownerCount,
+                             int ticketCount,
+                             List<RedundantGroup> redundantGroups,
+                             ReferenceOpenHashSet<Ticket<?>> redundantTickets,
+                             Long2IntOpenHashMap coveredLevels) {
+    }
+
+    /**
+     * 被判冗余的分组摘要。
+     */
+    public record RedundantGroup(TicketOwner<?> owner, int chunkCount, int ticketCount) {
+    }
+
+    /**
+     * 单个 owner 在各区块上的最小 ticket level 与对应 ticket。
+     */
+    private static final class OwnerFootprint {
+        final TicketOwner<?> owner;
+        final Long2IntOpenHashMap levels = new Long2IntOpenHashMap();
+        final List<Ticket<?>> tickets = new ArrayList<>();
+        boolean redundant;
+
+        OwnerFootprint(TicketOwner<?> owner) {
+            this.owner = owner;
+            levels.defaultReturnValue(Integer.MAX_VALUE);
+        }
+
+        /**
+         * @return 若该区块首次出现在此 owner 中则返回 {@code true}
+         */
+        boolean add(long chunkPos, int ticketLevel, Ticket<?> ticket) {
+            tickets.add(ticket);
+            int previous = levels.get(chunkPos);
+            if (ticketLevel < previous) {
+                levels.put(chunkPos, ticketLevel);
+            }
+            return previous == Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 单个区块上的覆盖者：常驻系统 ticket 最小 level 与全部非系统 owner。
+     */
+    private static final class ChunkCover {
+        int systemLevel = Integer.MAX_VALUE;
+        final List<OwnerFootprint> owners = new ArrayList<>(2);
+
+        boolean isCoveredWithout(OwnerFootprint candidate, long chunkPos, int ticketLevel) {
+            if (systemLevel <= ticketLevel) {
+                return true;
+            }
+            for (OwnerFootprint other : owners) {
+                if (other != candidate && !other.redundant && other.levels.get(chunkPos) <= ticketLevel) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.moepus.serverwarashi.common.ticket.TicketPauseService;
 import com.moepus.serverwarashi.config.IdleFreezeConfig;
 import com.moepus.serverwarashi.common.group.ChunkGroupService;
 import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import net.minecraft.server.level.ServerLevel;
 
 import java.time.LocalDate;
@@ -24,6 +25,7 @@ public final class IdleFreezeService {
 
     /**
      * 重新应用当前维度中已经保存的空闲冻结暂停标记。
+     * 全部冻结分组的区块合并后一次性应用，只触发一轮 level 更新。
      *
      * @param level 目标维度
      */
@@ -32,14 +34,16 @@ public final class IdleFreezeService {
         if (pauseData.isEmpty()) {
             return;
         }
+        LongOpenHashSet chunks = new LongOpenHashSet();
         for (IdlePauseData.FrozenGroup group : pauseData.groups()) {
-            TicketPauseService.applyPauseReasonToChunks(
-                    level,
-                    group.chunks(),
-                    true,
-                    IPauseableTicket.PAUSE_REASON_IDLE
-            );
+            chunks.addAll(group.chunks());
         }
+        TicketPauseService.applyPauseReasonToChunks(
+                level,
+                chunks,
+                true,
+                IPauseableTicket.PAUSE_REASON_IDLE
+        );
     }
 
     /**
@@ -0,0 +1,109 @@
+package com.moepus.serverwarashi.modules.metrics;
+
+import com.moepus.serverwarashi.Serverwarashi;
+import com.moepus.serverwarashi.config.MetricsConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地指标端点运行时入口。
+ * 层级：入口层。
+ * 上游：ServerWarashiEvents。下游：MetricsService。
+ * 服务器线程每秒采集一次并整体发布不可变快照，HTTP 线程只读取已发布的快照，抓取永远不会等待服务器线程。
+ */
+public final class MetricsRuntime {
+    private static final int COLLECT_INTERVAL_TICKS = 20;
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static volatile MetricsService.MetricsSnapshot latest;
+    private static final AtomicLong SCRAPES = new AtomicLong();
+    private static HttpServer httpServer;
+    private static ExecutorService executor;
+
+    private MetricsRuntime() {
+    }
+
+    /**
+     * 启用时在 {@code 127.0.0.1:<metrics_port>/metrics} 上启动端点。
+     *
+     * @param server 当前服务器
+     */
+    public static void onServerStarted(MinecraftServer server) {
+        if (!MetricsConfig.enabled() || httpServer != null) {
+            return;
+        }
+        int port = MetricsConfig.port();
+        try {
+            HttpServer http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            http.createContext("/metrics", MetricsRuntime::handle);
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Serverwarashi-Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+            http.setExecutor(executor);
+            http.start();
+            httpServer = http;
+            latest = MetricsService.collect(server);
+        } catch (IOException e) {
+            Serverwarashi.LOGGER.warn("Failed to start metrics endpoint on port {}", port, e);
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
+    /**
+     * 按固定周期在服务器线程上采集并发布指标。
+     *
+     * @param server 当前服务器
+     */
+    public static void onServerTickPost(MinecraftServer server) {
+        if (httpServer == null || server.getTickCount() % COLLECT_INTERVAL_TICKS != 0) {
+            return;
+        }
+        latest = MetricsService.collect(server);
+    }
+
+    /**
+     * 关闭端点并清空状态，服务器停止时调用。
+     */
+    public static void clearRuntimeState() {
+        if (httpServer != null) {
+            httpServer.stop(0);
+            httpServer = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        latest = null;
+        SCRAPES.set(0L);
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = MetricsService.render(latest, SCRAPES.incrementAndGet()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
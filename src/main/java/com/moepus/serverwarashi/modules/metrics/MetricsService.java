@@ -0,0 +1,230 @@
+package com.moepus.serverwarashi.modules.metrics;
+
+import com.moepus.serverwarashi.common.ticket.IPauseableTicket;
+import com.moepus.serverwarashi.common.ticket.TicketUtils;
+import com.moepus.serverwarashi.config.IdleFreezeConfig;
+import com.moepus.serverwarashi.config.MetricsConfig;
+import com.moepus.serverwarashi.modules.bucket.TicketBucketRuntime;
+import com.moepus.serverwarashi.modules.bucket.TicketBucketService;
+import com.moepus.serverwarashi.modules.idlefreeze.IdlePauseData;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.Ticket;
+import net.minecraft.util.SortedArraySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 指标采集与渲染。
+ * 采集只在服务器线程进行，结果为不可变快照；渲染只读快照，可在任意线程调用。
+ */
+final class MetricsService {
+    // 按暂停原因导出的标签，与 REASON_MASKS 一一对应
+    private static final String[] REASON_NAMES = {"auto", "idle", "redundant", "budget"};
+    private static final int[] REASON_MASKS = {
+            IPauseableTicket.PAUSE_REASON_AUTO,
+            IPauseableTicket.PAUSE_REASON_IDLE,
+            IPauseableTicket.PAUSE_REASON_REDUNDANT,
+            IPauseableTicket.PAUSE_REASON_BUDGET
+    };
+
+    private MetricsService() {
+    }
+
+    /**
+     * 采集全部维度的指标。
+     *
+     * @param server 当前服务器
+     * @return 不可变快照
+     */
+    static MetricsSnapshot collect(MinecraftServer server) {
+        List<DimensionMetrics> dimensions = new ArrayList<>();
+        for (ServerLevel level : server.getAllLevels()) {
+            dimensions.add(collect(server, level));
+        }
+        return new MetricsSnapshot(
+                System.currentTimeMillis(),
+                server.getAverageTickTimeNanos() / 1_000_000.0,
+                List.copyOf(dimensions)
+        );
+    }
+
+    private static DimensionMetrics collect(MinecraftServer server, ServerLevel level) {
+        long[] tickTimes = server.getTickTime(level.dimension());
+        double mspt = Double.NaN;
+        if (tickTimes != null && tickTimes.length > 0) {
+            long total = 0L;
+            for (long tickTime : tickTimes) {
+                total += tickTime;
+            }
+            mspt = total / (double) tickTimes.length / 1_000_000.0;
+        }
+
+        int tickets = 0;
+        int paused = 0;
+        int[] pausedByReason = new int[REASON_MASKS.length];
+        for (SortedArraySet<Ticket<?>> ticketSet : TicketUtils.getTickets(TicketUtils.getDistanceManager(level)).values()) {
+            for (Ticket<?> ticket : ticketSet) {
+                if (TicketUtils.isSystemTicket(ticket)) {
+                    continue;
+                }
+                tickets++;
+                int mask = ((IPauseableTicket) (Object) ticket).serverWarashi$getPauseMask();
+                if (mask == 0) {
+                    continue;
+                }
+                paused++;
+                for (int i = 0; i < REASON_MASKS.length; i++) {
+                    if ((mask & REASON_MASKS[i]) != 0) {
+                        pausedByReason[i]++;
+                    }
+                }
+            }
+        }
+
+        TicketBucketService.BucketStats bucket = TicketBucketRuntime.lastStats(level);
+        int frozenGroups = IdleFreezeConfig.enabled() ? IdlePauseData.get(level).groups().size() : 0;
+
+        TicketPerfSampler.SamplerReport report = TicketPerfSampler.report(level.dimension(), MetricsConfig.topGroups());
+        List<TicketPerfSampler.GroupCost> costs = report.enabled() ? report.groups() : List.of();
+        String[] groupLabels = new String[costs.size()];
+        double[] groupMspt = new double[costs.size()];
+        for (int i = 0; i < costs.size(); i++) {
+            groupLabels[i] = costs.get(i).owner().toString();
+            groupMspt[i] = costs.get(i).totalNanosPerTick() / 1_000_000.0;
+        }
+
+        return new DimensionMetrics(
+                level.dimension().location().toString(),
+                mspt,
+                tickets,
+                paused,
+                pausedByReason,
+                bucket,
+                frozenGroups,
+                groupLabels,
+                groupMspt
+        );
+    }
+
+    /**
+     * 按 Prometheus 文本格式渲染快照。
+     *
+     * @param snapshot 快照，尚未采集时为 null
+     * @param scrapes  累计抓取次数
+     * @return 指标文本
+     */
+    static String render(MetricsSnapshot snapshot, long scrapes) {
+        StringBuilder out = new StringBuilder(4096);
+        header(out, "serverwarashi_scrapes_total", "counter", "Number of scrapes served.");
+        out.append("serverwarashi_scrapes_total ").append(scrapes).append('\n');
+        if (snapshot == null) {
+            return out.toString();
+        }
+        header(out, "serverwarashi_snapshot_age_seconds", "gauge", "Seconds since the metrics were collected on the server thread.");
+        out.append("serverwarashi_snapshot_age_seconds ")
+                .append(format((System.currentTimeMillis() - snapshot.collectedAtMillis()) / 1000.0)).append('\n');
+        header(out, "serverwarashi_server_mspt", "gauge", "Average server tick time in milliseconds.");
+        out.append("serverwarashi_server_mspt ").append(format(snapshot.serverMspt())).append('\n');
+
+        header(out, "serverwarashi_dimension_mspt", "gauge", "Average dimension tick time in milliseconds.");
+        for (DimensionMetrics dimension : snapshot.dimensions()) {
+            if (!Double.isNaN(dimension.mspt())) {
+                sample(out, "serverwarashi_dimension_mspt", dimension, null, null, format(dimension.mspt()));
+            }
+        }
+        header(out, "serverwarashi_tickets", "gauge", "Non-system chunk tickets.");
+        for (DimensionMetrics dimension : snapshot.dimensions()) {
+            sample(out, "serverwarashi_tickets", dimension, null, null, Integer.toString(dimension.tickets()));
+        }
+        header(out, "serverwarashi_paused_tickets", "gauge", "Paused tickets, total and by pause reason; a ticket may carry several reasons.");
+        for (DimensionMetrics dimension : snapshot.dimensions()) {
+            sample(out, "serverwarashi_paused_tickets", dimension, "reason", "any", Integer.toString(dimension.pausedTickets()));
+            for (int i = 0; i < REASON_NAMES.length; i++) {
+                sample(out, "serverwarashi_paused_tickets", dimension, "reason", REASON_NAMES[i],
+                        Integer.toString(dimension.pausedByReason()[i]));
+            }
+        }
+        header(out, "serverwarashi_bucket_tickets", "gauge", "Tickets taking part in auto bucketing at the last pass.");
+        header(out, "serverwarashi_buckets", "gauge", "Auto bucket count at the last pass; 0 when all tickets are paused.");
+        header(out, "serverwarashi_bucket_duty_cycle", "gauge", "Fraction of bucketed tickets in the active bucket.");
+        for (DimensionMetrics dimension : snapshot.dimensions()) {
+            TicketBucketService.BucketStats bucket = dimension.bucket();
+            if (bucket == null) {
+                continue;
+            }
+            sample(out, "serverwarashi_bucket_tickets", dimension, null, null, Integer.toString(bucket.ticketCount()));
+            sample(out, "serverwarashi_buckets", dimension, null, null, Integer.toString(bucket.bucketCount()));
+            sample(out, "serverwarashi_bucket_duty_cycle", dimension, null, null, format(bucket.dutyCycle()));
+        }
+        header(out, "serverwarashi_idle_frozen_groups", "gauge", "Ticket groups frozen by idle freeze.");
+        for (DimensionMetrics dimension : snapshot.dimensions()) {
+            sample(out, "serverwarashi_idle_frozen_groups", dimension, null, null, Integer.toString(dimension.frozenGroups()));
+        }
+        header(out, "serverwarashi_group_cost_mspt", "gauge", "Sampler estimate of the most expensive ticket groups, in milliseconds per tick.");
+        for (DimensionMetrics dimension : snapshot.dimensions()) {
+            for (int i = 0; i < dimension.groupLabels().length; i++) {
+                sample(out, "serverwarashi_group_cost_mspt", dimension, "group", dimension.groupLabels()[i],
+                        format(dimension.groupMspt()[i]));
+            }
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out,
+                               String name,
+                               DimensionMetrics dimension,
+                               String label,
+                               String value,
+                               String metric) {
+        out.append(name).append("{dimension=\"").append(escape(dimension.dimension())).append('"');
+        if (label != null) {
+            out.append(',').append(label).append("=\"").append(escape(value)).append('"');
+        }
+        out.append("} ").append(metric).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    /**
+     * 一次采集的结果。
+     *
+     * @param collectedAtMillis 采集时刻（Unix 毫秒）
+     * @param serverMspt        服务器平均 tick 耗时
+     * @param dimensions        各维度指标
+     */
+    record MetricsSnapshot(long collectedAtMillis, double serverMspt, List<DimensionMetrics> dimensions) {
+    }
+
+    /**
+     * 单个维度的指标。数组在发布后不再修改。
+     *
+     * @param mspt           维度平均 tick 耗时，未知为 NaN
+     * @param pausedByReason 按 {@link #REASON_NAMES} 顺序的暂停 ticket 数
+     * @param bucket         最近一次自动分桶统计，可为 null
+     */
+    record DimensionMetrics(String dimension,
+                            double mspt,
+                            int tickets,
+                            int pausedTickets,
+                            int[] pausedByReason,
+                            TicketBucketService.BucketStats bucket,
+                            int frozenGroups,
+                            String[] groupLabels,
+                            double[] groupMspt) {
+    }
+}
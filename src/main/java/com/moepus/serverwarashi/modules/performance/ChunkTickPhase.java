@@ -0,0 +1,44 @@
+package com.moepus.serverwarashi.modules.performance;
+
+/**
+ * 区块耗时的子阶段。
+ * tickChunk 内部的阶段边界取自原版 profiler 分段名，未落入任何分段的时间记为 {@link #OTHER}；
+ * {@link #SPAWNING} 在 {@code ServerChunkCache.tickChunks} 的自然生成调用点单独计时。
+ */
+public enum ChunkTickPhase {
+    LIGHTNING("lightning", "thunder"),
+    PRECIPITATION("precipitation", "iceandsnow"),
+    RANDOM_TICK("random ticks", "tickBlocks"),
+    SPAWNING("spawning", null),
+    OTHER("other", null);
+
+    public static final int COUNT = values().length;
+    private static final ChunkTickPhase[] VALUES = values();
+
+    public final String label;
+    private final String profilerSection;
+
+    ChunkTickPhase(String label, String profilerSection) {
+        this.label = label;
+        this.profilerSection = profilerSection;
+    }
+
+    public static ChunkTickPhase byIndex(int index) {
+        return VALUES[index];
+    }
+
+    /**
+     * 按 profiler 分段名查找阶段。
+     *
+     * @param section 分段名
+     * @return 阶段下标，未知分段返回 {@link #OTHER}
+     */
+    public static int indexOfSection(String section) {
+        for (ChunkTickPhase phase : VALUES) {
+            if (section.equals(phase.profilerSection)) {
+                return phase.ordinal();
+            }
+        }
+        return OTHER.ordinal();
+    }
+}
@@ -0,0 +1,465 @@
+package com.moepus.serverwarashi.modules.performance;
+
+import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.analyze.TicketPerfSessionController;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfFileWriter;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 主线程卡顿栈采样：单个 tick 超过阈值后，监视线程按固定间隔抓取服务器线程的调用栈，
+ * 并按热路径钩子写入的“当前来源”（方块实体、实体、区块或计划刻）归因。
+ * 卡顿结束后在服务器线程把来源解析到分组，输出聊天摘要与折叠栈文件（可直接喂给火焰图工具）；
+ * 若一直卡到看门狗触发，未结束的采样随看门狗快照一起写入崩溃报告。
+ * 抓栈需要服务器线程进入安全点，只在已经超过阈值的 tick 内进行。
+ */
+final class TicketHangSampler {
+    private static final int KIND_NONE = 0;
+    private static final int KIND_BLOCK_ENTITY = 1;
+    private static final int KIND_ENTITY = 2;
+    private static final int KIND_CHUNK = 3;
+    private static final int KIND_SCHEDULED = 4;
+    private static final String[] KIND_PREFIX = {"", "be:", "e:", "c:", "s:"};
+    // 折叠栈保留的最大帧数（从栈顶数）
+    private static final int MAX_STACK_DEPTH = 64;
+    // 看门狗转储中列出的来源与折叠栈条数
+    private static final int WATCHDOG_LIMIT = 20;
+    private static final String SERVER_LABEL = "<server>";
+
+    // 热路径写入的当前来源：只有服务器线程写，监视线程读。
+    // 不加 volatile，读到的值可能略旧或字段间短暂不一致，只用于近似归因。
+    private static boolean armed;
+    private static int sourceKind;
+    private static Level sourceLevel;
+    private static Object sourceSubject;
+    private static BlockPos sourcePos;
+
+    private static volatile long tickStartNanos;
+    private static volatile long thresholdNanos;
+    private static volatile int intervalMillis;
+    private static volatile Thread monitor;
+    // 服务器线程，只在服务器线程读写；为 null 表示服务器未运行
+    private static Thread serverThread;
+    private static volatile HangRecord inProgress;
+    private static final ConcurrentLinkedQueue<HangRecord> FINISHED = new ConcurrentLinkedQueue<>();
+
+    private TicketHangSampler() {
+    }
+
+    // --- 热路径 ---
+
+    static void enterBlockEntity(Level level, TickingBlockEntity ticker) {
+        if (armed) {
+            enter(KIND_BLOCK_ENTITY, level, ticker, null);
+        }
+    }
+
+    static void enterEntity(Level level, Entity entity) {
+        if (armed) {
+            enter(KIND_ENTITY, level, entity, null);
+        }
+    }
+
+    static void enterChunk(Level level, LevelChunk chunk) {
+        if (armed) {
+            enter(KIND_CHUNK, level, chunk, null);
+        }
+    }
+
+    static void enterScheduled(Level level, Object type, BlockPos pos) {
+        if (armed) {
+            enter(KIND_SCHEDULED, level, type, pos);
+        }
+    }
+
+    static void exit() {
+        if (armed) {
+            sourceKind = KIND_NONE;
+        }
+    }
+
+    private static void enter(int kind, Level level, Object subject, BlockPos pos) {
+        sourceLevel = level;
+        sourceSubject = subject;
+        sourcePos = pos;
+        sourceKind = kind;
+    }
+
+    // --- 生命周期 ---
+
+    /**
+     * 记录服务器线程，配置开启时启动监视线程，服务器启动后调用。
+     * 之后每个 tick 按配置启停监视线程，关闭期间不保留线程。
+     *
+     * @param server 当前服务器
+     */
+    static void start(MinecraftServer server) {
+        stop();
+        serverThread = server.getRunningThread();
+        if (TicketPerfConfig.hangSamplerEnabled()) {
+            startMonitor();
+        }
+    }
+
+    static void onServerTickPre() {
+        boolean enabled = TicketPerfConfig.hangSamplerEnabled();
+        if (serverThread != null && enabled != (monitor != null)) {
+            if (enabled) {
+                startMonitor();
+            } else {
+                stop();
+            }
+        }
+        armed = enabled && monitor != null;
+        if (!armed) {
+            sourceKind = KIND_NONE;
+            tickStartNanos = 0L;
+            return;
+        }
+        thresholdNanos = TicketPerfConfig.hangThresholdNanos();
+        intervalMillis = TicketPerfConfig.hangSampleIntervalMillis();
+        sourceKind = KIND_NONE;
+        tickStartNanos = System.nanoTime();
+    }
+
+    static void onServerTickPost(MinecraftServer server) {
+        tickStartNanos = 0L;
+        HangRecord record;
+        while ((record = FINISHED.poll()) != null) {
+            report(server, record);
+        }
+    }
+
+    /**
+     * 停止监视线程并清空状态，服务器停止时调用。
+     */
+    static void clearRuntimeState() {
+        stop();
+        serverThread = null;
+        armed = false;
+        sourceKind = KIND_NONE;
+        sourceLevel = null;
+        sourceSubject = null;
+        sourcePos = null;
+        tickStartNanos = 0L;
+        inProgress = null;
+        FINISHED.clear();
+    }
+
+    private static void startMonitor() {
+        Thread target = serverThread;
+        // 首个 tick 之前就可能开始轮询，先按配置初始化
+        thresholdNanos = TicketPerfConfig.hangThresholdNanos();
+        intervalMillis = TicketPerfConfig.hangSampleIntervalMillis();
+        Thread thread = new Thread(() -> run(target), "Serverwarashi-HangSampler");
+        thread.setDaemon(true);
+        monitor = thread;
+        thread.start();
+    }
+
+    private static void stop() {
+        Thread thread = monitor;
+        monitor = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // --- 监视线程 ---
+
+    private static void run(Thread target) {
+        Thread self = Thread.currentThread();
+        HangRecord current = null;
+        while (monitor == self) {
+            try {
+                Thread.sleep(Math.max(1, intervalMillis));
+            } catch (InterruptedException e) {
+                break;
+            }
+            long start = tickStartNanos;
+            long now = System.nanoTime();
+            if (start != 0L && now - start >= thresholdNanos) {
+                if (current == null || current.tickStartNanos != start) {
+                    finish(current);
+                    current = new HangRecord(start);
+                    inProgress = current;
+                }
+                sample(current, target.getStackTrace(), now - start);
+            } else if (current != null) {
+                finish(current);
+                current = null;
+            }
+        }
+        inProgress = null;
+    }
+
+    private static void finish(HangRecord record) {
+        if (record == null) {
+            return;
+        }
+        inProgress = null;
+        FINISHED.add(record);
+    }
+
+    private static void sample(HangRecord record, StackTraceElement[] stack, long stallNanos) {
+        SourceKey source;
+        try {
+            source = resolveSource();
+        } catch (RuntimeException e) {
+            // 来源对象在另一线程上可能处于中间状态
+            source = SourceKey.SERVER;
+        }
+        StringBuilder folded = new StringBuilder();
+        for (int i = Math.min(stack.length, MAX_STACK_DEPTH) - 1; i >= 0; i--) {
+            if (!folded.isEmpty()) {
+                folded.append(';');
+            }
+            folded.append(stack[i].getClassName()).append('.').append(stack[i].getMethodName());
+        }
+        String top = stack.length == 0 ? "?" : stack[0].getClassName() + "." + stack[0].getMethodName();
+        record.add(source, folded.toString(), top, stallNanos);
+    }
+
+    private static SourceKey resolveSource() {
+        int kind = sourceKind;
+        Level level = sourceLevel;
+        Object subject = sourceSubject;
+        if (kind == KIND_NONE || level == null || subject == null) {
+            return SourceKey.SERVER;
+        }
+        return switch (kind) {
+            case KIND_BLOCK_ENTITY -> {
+                TickingBlockEntity ticker = (TickingBlockEntity) subject;
+                yield new SourceKey(level.dimension(), ChunkPos.asLong(ticker.getPos()), kind, ticker.getType());
+            }
+            case KIND_ENTITY -> {
+                Entity entity = (Entity) subject;
+                yield new SourceKey(level.dimension(), entity.chunkPosition().toLong(), kind,
+                        BuiltInRegistries.ENTITY_TYPE.getKey(entity.getType()).toString());
+            }
+            case KIND_CHUNK -> new SourceKey(level.dimension(), ((LevelChunk) subject).getPos().toLong(), kind, "chunk");
+            default -> {
+                BlockPos pos = sourcePos;
+                yield pos == null
+                        ? SourceKey.SERVER
+                        : new SourceKey(level.dimension(), ChunkPos.asLong(pos), kind,
+                        TicketPerfMessages.scheduledTypeName(subject));
+            }
+        };
+    }
+
+    // --- 报告 ---
+
+    /**
+     * 在服务器线程上把来源解析到分组，发送摘要并写出折叠栈。
+     */
+    private static void report(MinecraftServer server, HangRecord record) {
+        Map<String, GroupTally> groups = new HashMap<>();
+        Object2IntOpenHashMap<String> folded = new Object2IntOpenHashMap<>();
+        int samples;
+        long stallNanos;
+        synchronized (record) {
+            samples = record.samples;
+            stallNanos = record.stallNanos;
+            for (Map.Entry<SourceKey, SourceTally> entry : record.sources.entrySet()) {
+                SourceKey source = entry.getKey();
+                String label = groupLabel(server, source);
+                GroupTally group = groups.computeIfAbsent(label, GroupTally::new);
+                group.samples += entry.getValue().samples;
+                group.sources.add(Map.entry(source, entry.getValue()));
+                String prefix = sanitize(label) + ";" + sanitize(source.describe()) + ";";
+                for (Object2IntMap.Entry<String> stack : entry.getValue().stacks.object2IntEntrySet()) {
+                    folded.addTo(prefix + stack.getKey(), stack.getIntValue());
+                }
+            }
+        }
+        List<TicketPerfMessages.HangGroup> summary = new ArrayList<>(groups.size());
+        for (GroupTally group : groups.values()) {
+            group.sources.sort(Comparator.comparingInt(
+                    (Map.Entry<SourceKey, SourceTally> entry) -> entry.getValue().samples).reversed());
+            List<String> details = new ArrayList<>(group.sources.size());
+            for (Map.Entry<SourceKey, SourceTally> entry : group.sources) {
+                details.add("- " + entry.getKey().describe() + " " + entry.getValue().samples
+                        + " samples, top frame " + entry.getValue().topFrame());
+            }
+            summary.add(new TicketPerfMessages.HangGroup(group.label, group.samples, details));
+        }
+        summary.sort(Comparator.comparingInt(TicketPerfMessages.HangGroup::samples).reversed());
+
+        String timestamp = LocalDateTime.now().toString().replace(":", "-").replace(".", "-");
+        Path foldedPath = Paths.get("chunk_load").resolve("hang_" + timestamp + ".folded");
+        boolean gzip = TicketPerfConfig.dumpGzip();
+        TicketPerfFileWriter.writeText(foldedPath, gzip, writer -> {
+            for (Object2IntMap.Entry<String> entry : folded.object2IntEntrySet()) {
+                writer.write(entry.getKey());
+                writer.write(' ');
+                writer.write(Integer.toString(entry.getIntValue()));
+                writer.write('\n');
+            }
+        });
+        Component message = TicketPerfMessages.buildHangReport(stallNanos / 1_000_000L, samples, summary,
+                (gzip ? foldedPath + ".gz" : foldedPath.toString()));
+        server.sendSystemMessage(message);
+        TicketPerfSessionController.notifyAdmins(server, message);
+    }
+
+    private static String groupLabel(MinecraftServer server, SourceKey source) {
+        if (source.dimension() == null) {
+            return SERVER_LABEL;
+        }
+        ServerLevel level = server.getLevel(source.dimension());
+        if (level == null) {
+            return SERVER_LABEL;
+        }
+        ChunkGroupService.GroupChunkLookup lookup =
+                ChunkGroupService.resolveAtChunk(level, source.chunkPos(), ChunkGroupSnapshot.PauseMode.ALL);
+        return lookup.entry() == null ? "ungrouped" : lookup.entry().label();
+    }
+
+    private static String sanitize(String frame) {
+        return frame.replace(';', ',').replace(' ', '_');
+    }
+
+    /**
+     * 把仍在进行的卡顿采样写入崩溃报告。看门狗线程调用，不触碰世界状态，来源只给出区块坐标。
+     *
+     * @param out 崩溃报告输出流
+     */
+    static void writeInProgress(Writer out) throws IOException {
+        HangRecord record = inProgress;
+        if (record == null) {
+            return;
+        }
+        List<Map.Entry<SourceKey, SourceTally>> sources;
+        List<Map.Entry<String, Integer>> stacks = new ArrayList<>();
+        int samples;
+        long stallNanos;
+        synchronized (record) {
+            samples = record.samples;
+            stallNanos = record.stallNanos;
+            sources = new ArrayList<>(record.sources.size());
+            for (Map.Entry<SourceKey, SourceTally> entry : record.sources.entrySet()) {
+                sources.add(Map.entry(entry.getKey(), entry.getValue().copy()));
+                for (Object2IntMap.Entry<String> stack : entry.getValue().stacks.object2IntEntrySet()) {
+                    stacks.add(Map.entry(entry.getKey().describe() + ";" + stack.getKey(), stack.getIntValue()));
+                }
+            }
+        }
+        sources.sort(Comparator.comparingInt(
+                (Map.Entry<SourceKey, SourceTally> entry) -> entry.getValue().samples).reversed());
+        stacks.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+
+        out.write("\n==== Serverwarashi Hang Sampler ====\n");
+        out.write("Stalled " + stallNanos / 1_000_000L + "ms, " + samples + " stack samples\n");
+        for (int i = 0; i < Math.min(sources.size(), WATCHDOG_LIMIT); i++) {
+            Map.Entry<SourceKey, SourceTally> entry = sources.get(i);
+            out.write(entry.getKey().describe() + " " + entry.getValue().samples
+                    + " samples, top frame " + entry.getValue().topFrame() + "\n");
+        }
+        out.write("-- Folded stacks --\n");
+        for (int i = 0; i < Math.min(stacks.size(), WATCHDOG_LIMIT); i++) {
+            out.write(stacks.get(i).getKey() + " " + stacks.get(i).getValue() + "\n");
+        }
+    }
+
+    // --- 数据 ---
+
+    /**
+     * 一次卡顿的采样累计，监视线程写入，服务器线程或看门狗线程在同步块内读取。
+     */
+    private static final class HangRecord {
+        final long tickStartNanos;
+        final Map<SourceKey, SourceTally> sources = new HashMap<>();
+        int samples;
+        long stallNanos;
+
+        HangRecord(long tickStartNanos) {
+            this.tickStartNanos = tickStartNanos;
+        }
+
+        synchronized void add(SourceKey source, String folded, String topFrame, long stallNanos) {
+            SourceTally tally = sources.computeIfAbsent(source, ignored -> new SourceTally());
+            tally.samples++;
+            tally.stacks.addTo(folded, 1);
+            tally.topFrames.addTo(topFrame, 1);
+            samples++;
+            this.stallNanos = stallNanos;
+        }
+    }
+
+    private static final class SourceTally {
+        int samples;
+        final Object2IntOpenHashMap<String> stacks = new Object2IntOpenHashMap<>();
+        final Object2IntOpenHashMap<String> topFrames = new Object2IntOpenHashMap<>();
+
+        String topFrame() {
+            String best = "?";
+            int bestCount = 0;
+            for (Object2IntMap.Entry<String> entry : topFrames.object2IntEntrySet()) {
+                if (entry.getIntValue() > bestCount) {
+                    best = entry.getKey();
+                    bestCount = entry.getIntValue();
+                }
+            }
+            return best;
+        }
+
+        SourceTally copy() {
+            SourceTally copy = new SourceTally();
+            copy.samples = samples;
+            copy.topFrames.putAll(topFrames);
+            return copy;
+        }
+    }
+
+    private static final class GroupTally {
+        final String label;
+        final List<Map.Entry<SourceKey, SourceTally>> sources = new ArrayList<>();
+        int samples;
+
+        GroupTally(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * 采样归因的来源；{@code dimension} 为 null 表示主线程不在任何被计时的来源内。
+     */
+    private record SourceKey(ResourceKey<Level> dimension, long chunkPos, int kind, String type) {
+        static final SourceKey SERVER = new SourceKey(null, 0L, KIND_NONE, "other");
+
+        String describe() {
+            if (dimension == null) {
+                return SERVER_LABEL;
+            }
+            return KIND_PREFIX[kind] + type + " @ " + dimension.location()
+                    + " [" + ChunkPos.getX(chunkPos) + ", " + ChunkPos.getZ(chunkPos) + "]";
+        }
+    }
+}
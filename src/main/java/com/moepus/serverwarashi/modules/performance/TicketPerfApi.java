@@ -1,45 +1,69 @@
 package com.moepus.serverwarashi.modules.performance;
 
 import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.modules.performance.history.TicketPerfHistory;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfFileWriter;
 import com.moepus.serverwarashi.modules.performance.report.TicketPerfGroupOutput;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfWatchdogSnapshot;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.ChunkPos;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * ChunkPerf 模块对外门面。
  * 层级：入口层。
- * 上游：Commands。下游：TicketPerfRuntime / TicketPerfGroupOutput。
+ * 上游：Commands。下游：TicketPerfRuntime / TicketPerfGroupOutput / TicketPerfSampler / TicketPerfHistory。
  */
 public final class TicketPerfApi {
+    private static final int SAMPLER_REPORT_LIMIT = 10;
+    // 历史报告回看天数：近 7 天与再往前 7 天对比
+    private static final int HISTORY_DAYS = 14;
+
     private TicketPerfApi() {
     }
 
     /**
      * 列出分组并写入缓存快照（指定排序）。
+     *
+     * @param feedback CSV 写完后的结果提示，可为 null
      */
     public static Component dumpTickets(ServerLevel level,
                                         ChunkGroupSnapshot.PauseMode pauseMode,
-                                        boolean saveCsv) {
+                                        boolean saveCsv,
+                                        Consumer<Component> feedback) {
         return TicketPerfGroupOutput.listGroups(
                 level,
                 pauseMode,
                 "Dumped tickets:",
                 ChunkGroupSnapshot.SortMode.BLOCK_ENTITY,
                 false,
-                saveCsv
+                saveCsv,
+                feedback
         );
     }
 
+    /**
+     * 把最近的看门狗快照与未结束的卡顿采样追加到崩溃报告，供看门狗线程调用。
+     */
+    public static void appendWatchdogSnapshot(Path path) throws IOException {
+        TicketPerfWatchdogSnapshot.appendTo(path, TicketHangSampler::writeInProgress);
+    }
+
     public static Component listGroups(ServerLevel level,
                                        ChunkGroupSnapshot.PauseMode pauseMode,
                                        String header,
                                        ChunkGroupSnapshot.SortMode sortMode,
                                        boolean showActions,
                                        boolean saveCsv) {
-        return TicketPerfGroupOutput.listGroups(level, pauseMode, header, sortMode, showActions, saveCsv);
+        return TicketPerfGroupOutput.listGroups(level, pauseMode, header, sortMode, showActions, saveCsv, null);
     }
 
     public static Component start(ServerLevel sourceLevel,
@@ -49,6 +73,35 @@ public final class TicketPerfApi {
         return TicketPerfRuntime.start(sourceLevel, pos, durationSec, playerId);
     }
 
+    /**
+     * 分析两个方块坐标所在区块围成的矩形区域（含两端）。
+     */
+    public static Component startRegion(ServerLevel level,
+                                        BlockPos from,
+                                        BlockPos to,
+                                        int durationSec,
+                                        UUID playerId) {
+        return TicketPerfRuntime.startRegion(level, new ChunkPos(from), new ChunkPos(to), durationSec, playerId);
+    }
+
+    /**
+     * 分析以指定坐标所在区块为中心、切比雪夫半径为 {@code radius} 个区块的正方形区域。
+     */
+    public static Component startRadius(ServerLevel level,
+                                        BlockPos center,
+                                        int radius,
+                                        int durationSec,
+                                        UUID playerId) {
+        ChunkPos centerChunk = new ChunkPos(center);
+        return TicketPerfRuntime.startRegion(
+                level,
+                new ChunkPos(centerChunk.x - radius, centerChunk.z - radius),
+                new ChunkPos(centerChunk.x + radius, centerChunk.z + radius),
+                durationSec,
+                playerId
+        );
+    }
+
     public static Component startAll(ServerLevel level, int durationSec, UUID playerId) {
         return TicketPerfRuntime.startAll(level, durationSec, playerId);
     }
@@ -56,4 +109,27 @@ public final class TicketPerfApi {
     public static Component stop(ServerLevel level) {
         return TicketPerfRuntime.stop(level);
     }
+
+    /**
+     * 输出常驻采样器当前的分组与类型耗时排名。
+     */
+    public static Component samplerReport(ServerLevel level) {
+        return TicketPerfMessages.buildSamplerReport(
+                TicketPerfSampler.report(level.dimension(), SAMPLER_REPORT_LIMIT)
+        );
+    }
+
+    /**
+     * 在后台读取当前维度中匹配分组的耗时历史趋势，读完后回到服务器线程交给 {@code feedback}。
+     *
+     * @param query    分组名或标签的一部分
+     * @param feedback 报告接收方
+     */
+    public static void history(ServerLevel level, String query, Consumer<Component> feedback) {
+        TicketPerfFileWriter.deliver(
+                TicketPerfHistory.query(level.dimension(), query, HISTORY_DAYS),
+                level.getServer(),
+                feedback
+        );
+    }
 }
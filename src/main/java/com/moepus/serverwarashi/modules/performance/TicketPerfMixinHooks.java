@@ -1,160 +1,340 @@
 package com.moepus.serverwarashi.modules.performance;
 
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
+import com.moepus.serverwarashi.modules.spawnpolicy.SpawnPolicyRuntime;
 import net.minecraft.core.BlockPos;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.util.RandomSource;
 import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.NaturalSpawner;
 import net.minecraft.world.level.block.entity.TickingBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.world.level.chunk.LevelChunk;
-import org.jetbrains.annotations.NotNull;
+import net.minecraft.world.level.material.FluidState;
 
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
  * ChunkPerf 热路径钩子：在非分析状态下尽量直接回落到原始调用。
+ * 未被会话计时的 tick 交给常驻采样器按 1/N 抽样。
+ * 每个入口同时登记卡顿采样用的当前来源（见 {@link TicketHangSampler}）。
  */
 public final class TicketPerfMixinHooks {
+    // 当前被计时区块的子阶段耗时；只在服务器线程、仅在被跟踪区块的 tickChunk 期间写入
+    private static final long[] CHUNK_PHASE_NANOS = new long[ChunkTickPhase.COUNT];
+    private static boolean chunkPhasesArmed;
+    private static int chunkPhase = -1;
+    private static long chunkPhaseMark;
+
     private TicketPerfMixinHooks() {
     }
 
-    public static <T extends Entity> Consumer<T> wrapEntityTickConsumer(ServerLevel level, Consumer<T> original, T entity) {
+    /**
+     * 实体 tick 计时入口：直接包住 {@code guardEntityTick} 调用，不分配任何包装对象。
+     * 类型与来源以对象引用/实体 id 记录，标签仅在生成报告时为 top-N spike 构建。
+     */
+    public static void guardEntityTick(ServerLevel level, Consumer<Entity> consumer, Entity entity) {
+        TicketHangSampler.enterEntity(level, entity);
+        try {
+            guardEntityTickTimed(level, consumer, entity);
+        } finally {
+            TicketHangSampler.exit();
+        }
+    }
+
+    private static void guardEntityTickTimed(ServerLevel level, Consumer<Entity> consumer, Entity entity) {
         if (!TicketPerfRuntime.hasActiveSession()) {
-            return original;
+            guardEntityTickUntracked(level, consumer, entity);
+            return;
         }
 
-        BlockPos entityPos = entity.blockPosition();
-        long sessionId = TicketPerfRuntime.resolveTrackSessionId(level, entityPos);
+        long chunkPos = entity.chunkPosition().toLong();
+        long sessionId = TicketPerfRuntime.resolveTrackSessionId(level, chunkPos);
         if (sessionId < 0L) {
-            return original;
+            guardEntityTickUntracked(level, consumer, entity);
+            return;
         }
 
-        return new ProfilingEntityConsumer<>(level, original, entity, entityPos, sessionId);
+        long start = System.nanoTime();
+        level.guardEntityTick(consumer, entity);
+        long end = System.nanoTime();
+        long duration = end - start;
+        TicketPerfRuntime.onEntityTick(level, entity, chunkPos, duration, sessionId);
+        if (TicketPerfSampler.shouldSample()) {
+            TicketPerfSampler.recordEntityTick(level, entity, chunkPos, duration, end);
+        }
     }
 
-    public static Iterator<TickingBlockEntity> wrapBlockEntityIterator(Level level, Iterator<TickingBlockEntity> original) {
-        if (level.isClientSide || !TicketPerfRuntime.hasActiveSession()) {
-            return original;
+    private static void guardEntityTickUntracked(ServerLevel level, Consumer<Entity> consumer, Entity entity) {
+        if (!TicketPerfSampler.shouldSample()) {
+            level.guardEntityTick(consumer, entity);
+            return;
         }
-        return new ProfilingBlockEntityIterator(level, original);
+        long start = System.nanoTime();
+        level.guardEntityTick(consumer, entity);
+        long end = System.nanoTime();
+        TicketPerfSampler.recordEntityTick(level, entity, entity.chunkPosition().toLong(), end - start, end);
     }
 
-    public static void profileChunkTick(ServerLevel level, LevelChunk chunk, int randomTickSpeed) {
-        if (!TicketPerfRuntime.hasActiveSession()) {
-            level.tickChunk(chunk, randomTickSpeed);
+    /**
+     * 方块实体 tick 计时入口。
+     * 每个 ticker 在一次会话内只判定一次是否被跟踪，结果按 ticker 引用缓存为槽位，
+     * 之后每 tick 只做一次查表与计时，耗时直接累加到槽位的原始类型数组中。
+     */
+    public static void tickBlockEntity(Level level, TickingBlockEntity ticker) {
+        if (level.isClientSide) {
+            ticker.tick();
             return;
         }
+        TicketHangSampler.enterBlockEntity(level, ticker);
+        try {
+            tickBlockEntityTimed(level, ticker);
+        } finally {
+            TicketHangSampler.exit();
+        }
+    }
 
-        ChunkPos pos = chunk.getPos();
-        long sessionId = TicketPerfRuntime.resolveTrackSessionId(level, pos.getWorldPosition());
+    private static void tickBlockEntityTimed(Level level, TickingBlockEntity ticker) {
+        if (!TicketPerfRuntime.hasActiveSession()) {
+            tickBlockEntityUntracked(level, ticker);
+            return;
+        }
+        long sessionId = TicketPerfRuntime.activeSessionId(level);
         if (sessionId < 0L) {
-            level.tickChunk(chunk, randomTickSpeed);
+            tickBlockEntityUntracked(level, ticker);
+            return;
+        }
+
+        int slot = TicketPerfRuntime.resolveBlockEntitySlot(level, ticker, sessionId);
+        if (slot < 0) {
+            tickBlockEntityUntracked(level, ticker);
             return;
         }
 
         long start = System.nanoTime();
-        level.tickChunk(chunk, randomTickSpeed);
-        long duration = System.nanoTime() - start;
-        TicketPerfRuntime.onChunkTick(level, pos, duration, sessionId);
-    }
-
-    private static String formatEntityLabel(String entityType, String entityId, BlockPos pos) {
-        String shortUuid = entityId.length() > 8 ? entityId.substring(0, 8) : entityId;
-        return entityType + "#" + shortUuid + "@(" + pos.getX() + "," + pos.getY() + "," + pos.getZ() + ")";
-    }
-
-    private static String formatBlockEntityLabel(String blockEntityType, BlockPos pos) {
-        return blockEntityType + "@(" + pos.getX() + "," + pos.getY() + "," + pos.getZ() + ")";
-    }
-
-    private record ProfilingEntityConsumer<T extends Entity>(ServerLevel level, Consumer<T> delegate, T entity,
-                                                             BlockPos entityPos,
-                                                             long sessionId) implements Consumer<T> {
-        @Override
-            public void accept(T value) {
-                long start = System.nanoTime();
-                delegate.accept(value);
-                long duration = System.nanoTime() - start;
-                String entityType = entity.getType().toString();
-                String entityId = entity.getUUID().toString();
-                String entityLabel = formatEntityLabel(entityType, entityId, entityPos);
-                TicketPerfRuntime.onEntityTick(
-                        level,
-                        entityPos,
-                        entityType,
-                        entityId,
-                        entityLabel,
-                        duration,
-                        false,
-                        sessionId
-                );
-            }
+        ticker.tick();
+        long end = System.nanoTime();
+        long duration = end - start;
+        TicketPerfRuntime.onBlockEntityTick(level, slot, duration, sessionId);
+        if (TicketPerfSampler.shouldSample()) {
+            TicketPerfSampler.recordBlockEntityTick(level, ticker, duration, end);
         }
+    }
 
-    private record ProfilingBlockEntityIterator(Level level,
-                                                Iterator<TickingBlockEntity> delegate) implements Iterator<TickingBlockEntity> {
+    private static void tickBlockEntityUntracked(Level level, TickingBlockEntity ticker) {
+        if (!TicketPerfSampler.shouldSample()) {
+            ticker.tick();
+            return;
+        }
+        long start = System.nanoTime();
+        ticker.tick();
+        long end = System.nanoTime();
+        TicketPerfSampler.recordBlockEntityTick(level, ticker, end - start, end);
+    }
 
-        @Override
-            public boolean hasNext() {
-                return delegate.hasNext();
+    /**
+     * 方块计划刻计时入口，按所在区块归因到第四类耗时（计划刻）。
+     */
+    public static void tickScheduledBlock(ServerLevel level, BlockState state, BlockPos pos, RandomSource random) {
+        TicketHangSampler.enterScheduled(level, state.getBlock(), pos);
+        long sessionId;
+        long start;
+        long end;
+        try {
+            sessionId = resolveScheduledSessionId(level, pos);
+            if (sessionId < 0L && !TicketPerfSampler.shouldSample()) {
+                state.tick(level, pos, random);
+                return;
             }
+            start = System.nanoTime();
+            state.tick(level, pos, random);
+            end = System.nanoTime();
+        } finally {
+            TicketHangSampler.exit();
+        }
+        recordScheduledTick(level, state.getBlock(), pos, end - start, end, sessionId);
+    }
 
-            @Override
-            public TickingBlockEntity next() {
-                TickingBlockEntity next = delegate.next();
-                BlockPos pos = next.getPos();
+    /**
+     * 流体计划刻计时入口，按所在区块归因到第四类耗时（计划刻）。
+     */
+    public static void tickScheduledFluid(ServerLevel level, FluidState state, BlockPos pos) {
+        TicketHangSampler.enterScheduled(level, state.getType(), pos);
+        long sessionId;
+        long start;
+        long end;
+        try {
+            sessionId = resolveScheduledSessionId(level, pos);
+            if (sessionId < 0L && !TicketPerfSampler.shouldSample()) {
+                state.tick(level, pos);
+                return;
+            }
+            start = System.nanoTime();
+            state.tick(level, pos);
+            end = System.nanoTime();
+        } finally {
+            TicketHangSampler.exit();
+        }
+        recordScheduledTick(level, state.getType(), pos, end - start, end, sessionId);
+    }
 
-                long sessionId = TicketPerfRuntime.resolveTrackSessionId(level, pos);
-                if (sessionId < 0L) {
-                    return next;
-                }
+    private static long resolveScheduledSessionId(ServerLevel level, BlockPos pos) {
+        if (!TicketPerfRuntime.hasActiveSession()) {
+            return -1L;
+        }
+        return TicketPerfRuntime.resolveTrackSessionId(level, pos);
+    }
 
-                return new ProfilingBlockEntity(level, next, pos, sessionId);
+    /**
+     * 会话计时的计划刻同时参与采样；未被会话跟踪时调用方已消耗过一次采样判定。
+     */
+    private static void recordScheduledTick(ServerLevel level,
+                                            Object type,
+                                            BlockPos pos,
+                                            long duration,
+                                            long end,
+                                            long sessionId) {
+        long chunkPos = ChunkPos.asLong(pos);
+        if (sessionId >= 0L) {
+            TicketPerfRuntime.onScheduledTick(level, type, chunkPos, duration, sessionId);
+            if (!TicketPerfSampler.shouldSample()) {
+                return;
             }
+        }
+        TicketPerfSampler.recordScheduledTick(level, type, chunkPos, duration, end);
+    }
 
-            @Override
-            public void remove() {
-                delegate.remove();
-            }
+    public static void profileChunkTick(ServerLevel level, LevelChunk chunk, int randomTickSpeed) {
+        TicketHangSampler.enterChunk(level, chunk);
+        try {
+            profileChunkTickTimed(level, chunk, randomTickSpeed);
+        } finally {
+            TicketHangSampler.exit();
         }
+    }
 
-    private record ProfilingBlockEntity(Level level, TickingBlockEntity delegate, BlockPos pos,
-                                        long sessionId) implements TickingBlockEntity {
-
-        @Override
-            public void tick() {
-                long start = System.nanoTime();
-                delegate.tick();
-                long duration = System.nanoTime() - start;
-                String blockEntityType = delegate.getType();
-                String sourceId = Long.toString(pos.asLong());
-                String sourceLabel = formatBlockEntityLabel(blockEntityType, pos);
-                TicketPerfRuntime.onEntityTick(
-                        level,
-                        pos,
-                        blockEntityType,
-                        sourceId,
-                        sourceLabel,
-                        duration,
-                        true,
-                        sessionId
-                );
-            }
+    private static void profileChunkTickTimed(ServerLevel level, LevelChunk chunk, int randomTickSpeed) {
+        if (!TicketPerfRuntime.hasActiveSession()) {
+            tickChunkUntracked(level, chunk, randomTickSpeed);
+            return;
+        }
 
-            @Override
-            public boolean isRemoved() {
-                return delegate.isRemoved();
-            }
+        ChunkPos pos = chunk.getPos();
+        long sessionId = TicketPerfRuntime.resolveTrackSessionId(level, pos.getWorldPosition());
+        if (sessionId < 0L) {
+            tickChunkUntracked(level, chunk, randomTickSpeed);
+            return;
+        }
+
+        armChunkPhases();
+        long start = System.nanoTime();
+        level.tickChunk(chunk, randomTickSpeed);
+        long end = System.nanoTime();
+        long duration = end - start;
+        finishChunkPhases(duration);
+        TicketPerfRuntime.onChunkTick(level, pos, duration, CHUNK_PHASE_NANOS, sessionId);
+        if (TicketPerfSampler.shouldSample()) {
+            TicketPerfSampler.recordChunkTick(level, pos.toLong(), duration, end);
+        }
+    }
 
-            @Override
-            public @NotNull BlockPos getPos() {
-                return delegate.getPos();
+    /**
+     * 自然生成入口：先按生成抑制策略跳过，再对被跟踪区块计时并计入该区块的 {@link ChunkTickPhase#SPAWNING} 阶段。
+     */
+    public static void spawnForChunk(ServerLevel level,
+                                     LevelChunk chunk,
+                                     NaturalSpawner.SpawnState spawnState,
+                                     boolean spawnFriendlies,
+                                     boolean spawnMonsters,
+                                     boolean spawnPersistent) {
+        TicketHangSampler.enterChunk(level, chunk);
+        try {
+            spawnForChunkTimed(level, chunk, spawnState, spawnFriendlies, spawnMonsters, spawnPersistent);
+        } finally {
+            TicketHangSampler.exit();
+        }
+    }
+
+    private static void spawnForChunkTimed(ServerLevel level,
+                                           LevelChunk chunk,
+                                           NaturalSpawner.SpawnState spawnState,
+                                           boolean spawnFriendlies,
+                                           boolean spawnMonsters,
+                                           boolean spawnPersistent) {
+        long chunkPos = chunk.getPos().toLong();
+        if (SpawnPolicyRuntime.isSpawnSuppressed(level, chunkPos)) {
+            return;
+        }
+        long sessionId = TicketPerfRuntime.hasActiveSession()
+                ? TicketPerfRuntime.resolveTrackSessionId(level, chunkPos)
+                : -1L;
+        if (sessionId < 0L && !TicketPerfSampler.shouldSample()) {
+            NaturalSpawner.spawnForChunk(level, chunk, spawnState, spawnFriendlies, spawnMonsters, spawnPersistent);
+            return;
+        }
+        long start = System.nanoTime();
+        NaturalSpawner.spawnForChunk(level, chunk, spawnState, spawnFriendlies, spawnMonsters, spawnPersistent);
+        long end = System.nanoTime();
+        long duration = end - start;
+        if (sessionId >= 0L) {
+            TicketPerfRuntime.onChunkSpawn(level, chunkPos, duration, sessionId);
+            if (!TicketPerfSampler.shouldSample()) {
+                return;
             }
+        }
+        TicketPerfSampler.recordChunkTick(level, chunkPos, duration, end);
+    }
 
-            @Override
-            public @NotNull String getType() {
-                return delegate.getType();
+    private static void tickChunkUntracked(ServerLevel level, LevelChunk chunk, int randomTickSpeed) {
+        if (!TicketPerfSampler.shouldSample()) {
+            level.tickChunk(chunk, randomTickSpeed);
+            return;
+        }
+        long start = System.nanoTime();
+        level.tickChunk(chunk, randomTickSpeed);
+        long end = System.nanoTime();
+        TicketPerfSampler.recordChunkTick(level, chunk.getPos().toLong(), end - start, end);
+    }
+
+    /**
+     * tickChunk 内 profiler 分段切换时回调：结算上一阶段并开始下一阶段。
+     * 未计时的区块只读一个静态字段。
+     *
+     * @param section 新分段名，{@code null} 表示离开所有分段
+     */
+    public static void markChunkPhase(String section) {
+        if (!chunkPhasesArmed) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (chunkPhase >= 0) {
+            CHUNK_PHASE_NANOS[chunkPhase] += now - chunkPhaseMark;
+        }
+        chunkPhase = section == null ? -1 : ChunkTickPhase.indexOfSection(section);
+        chunkPhaseMark = now;
+    }
+
+    private static void armChunkPhases() {
+        Arrays.fill(CHUNK_PHASE_NANOS, 0L);
+        chunkPhase = -1;
+        chunkPhasesArmed = true;
+    }
+
+    /**
+     * 停止打点，并把分段之外的时间（以及未知分段）归入 {@link ChunkTickPhase#OTHER}。
+     */
+    private static void finishChunkPhases(long durationNanos) {
+        chunkPhasesArmed = false;
+        chunkPhase = -1;
+        long measured = 0L;
+        for (int i = 0; i < ChunkTickPhase.COUNT; i++) {
+            if (i != ChunkTickPhase.OTHER.ordinal()) {
+                measured += CHUNK_PHASE_NANOS[i];
             }
         }
+        CHUNK_PHASE_NANOS[ChunkTickPhase.OTHER.ordinal()] = Math.max(0L, durationNanos - measured);
+    }
 }
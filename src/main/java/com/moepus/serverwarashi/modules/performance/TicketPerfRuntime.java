@@ -1,13 +1,20 @@
 package com.moepus.serverwarashi.modules.performance;
 
+import com.moepus.serverwarashi.Serverwarashi;
 import com.moepus.serverwarashi.common.group.ChunkGroupService;
 import com.moepus.serverwarashi.modules.performance.analyze.TicketPerfSessionController;
+import com.moepus.serverwarashi.modules.performance.history.TicketPerfHistory;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfFileWriter;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfWatchdogSnapshot;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
 
 import java.util.UUID;
 
@@ -19,6 +26,8 @@ import java.util.UUID;
 public final class TicketPerfRuntime {
     static final TicketPerfSessionController SESSION_MANAGER =
             new TicketPerfSessionController();
+    // 服务器停止时等待写线程排空的上限
+    private static final long WRITER_FLUSH_TIMEOUT_MILLIS = 10_000L;
 
     private TicketPerfRuntime() {
     }
@@ -30,15 +39,42 @@ public final class TicketPerfRuntime {
         ChunkGroupService.refreshAll(server);
     }
 
+    public static void openHistory(MinecraftServer server) {
+        TicketPerfHistory.open(server);
+    }
+
+    public static void startHangSampler(MinecraftServer server) {
+        TicketHangSampler.start(server);
+    }
+
     public static void clearSnapshots() {
         ChunkGroupService.snapshotCache().clear();
         SESSION_MANAGER.clearRuntimeState();
+        TicketPerfSampler.clearRuntimeState();
+        TicketPerfSpikeTrigger.clearRuntimeState();
+        TicketPerfHistory.close();
+        TicketPerfWatchdogSnapshot.clearRuntimeState();
+        TicketHangSampler.clearRuntimeState();
+        if (!TicketPerfFileWriter.flush(WRITER_FLUSH_TIMEOUT_MILLIS)) {
+            Serverwarashi.LOGGER.warn("ChunkPerf file writer did not drain within {} ms, pending writes may be lost",
+                    WRITER_FLUSH_TIMEOUT_MILLIS);
+        }
     }
 
     // --- 事件入口 ---
 
+    public static void onServerTickPre() {
+        TicketPerfSpikeTrigger.onServerTickPre();
+        TicketHangSampler.onServerTickPre();
+    }
+
     public static void tickSessions(MinecraftServer server) {
+        TicketHangSampler.onServerTickPost(server);
+        TicketPerfSpikeTrigger.onServerTickPost(server);
         SESSION_MANAGER.tickSessions(server);
+        TicketPerfSampler.onServerTickPost(server);
+        TicketPerfHistory.onServerTickPost(server);
+        TicketPerfWatchdogSnapshot.onServerTickPost(server);
     }
 
     // --- Mixin hook 查询 ---
@@ -47,6 +83,10 @@ public final class TicketPerfRuntime {
         return SESSION_MANAGER.hasActiveSession();
     }
 
+    public static long activeSessionId(Level level) {
+        return SESSION_MANAGER.activeSessionId(level);
+    }
+
     public static boolean hasActiveSession(ServerLevel level) {
         return SESSION_MANAGER.hasActiveSession(level.dimension());
     }
@@ -55,28 +95,43 @@ public final class TicketPerfRuntime {
         return SESSION_MANAGER.resolveTrackSessionId(level, pos);
     }
 
+    public static long resolveTrackSessionId(Level level, long chunkPos) {
+        return SESSION_MANAGER.resolveTrackSessionId(level, chunkPos);
+    }
+
     public static void onEntityTick(Level level,
-                                    BlockPos pos,
-                                    String type,
-                                    String sourceId,
-                                    String sourceLabel,
+                                    Entity entity,
+                                    long chunkPos,
                                     long durationNanos,
-                                    boolean isBlockEntity,
                                     long sessionId) {
-        SESSION_MANAGER.onEntityTick(
-                level,
-                pos,
-                type,
-                sourceId,
-                sourceLabel,
-                durationNanos,
-                isBlockEntity,
-                sessionId
-        );
+        SESSION_MANAGER.onEntityTick(level, entity, chunkPos, durationNanos, sessionId);
     }
 
-    public static void onChunkTick(Level level, ChunkPos pos, long durationNanos, long sessionId) {
-        SESSION_MANAGER.onChunkTick(level, pos, durationNanos, sessionId);
+    public static int resolveBlockEntitySlot(Level level, TickingBlockEntity ticker, long sessionId) {
+        return SESSION_MANAGER.resolveBlockEntitySlot(level, ticker, sessionId);
+    }
+
+    public static void onBlockEntityTick(Level level, int slot, long durationNanos, long sessionId) {
+        SESSION_MANAGER.onBlockEntityTick(level, slot, durationNanos, sessionId);
+    }
+
+    public static void onScheduledTick(Level level,
+                                       Object type,
+                                       long chunkPos,
+                                       long durationNanos,
+                                       long sessionId) {
+        SESSION_MANAGER.onScheduledTick(level, type, chunkPos, durationNanos, sessionId);
+    }
+
+    public static void onChunkSpawn(Level level, long chunkPos, long durationNanos, long sessionId) {
+        SESSION_MANAGER.onChunkSpawn(level, chunkPos, durationNanos, sessionId);
+    }
+
+    /**
+     * @param phaseNanos 按 {@link ChunkTickPhase} 下标的子阶段耗时，调用方复用该数组
+     */
+    public static void onChunkTick(Level level, ChunkPos pos, long durationNanos, long[] phaseNanos, long sessionId) {
+        SESSION_MANAGER.onChunkTick(level, pos, durationNanos, phaseNanos, sessionId);
     }
 
     // --- 会话控制（Api 委托） ---
@@ -85,6 +140,10 @@ public final class TicketPerfRuntime {
         return SESSION_MANAGER.start(sourceLevel, pos, durationSec, playerId);
     }
 
+    static Component startRegion(ServerLevel level, ChunkPos from, ChunkPos to, int durationSec, UUID playerId) {
+        return SESSION_MANAGER.startRegion(level, from, to, durationSec, playerId);
+    }
+
     static Component startAll(ServerLevel level, int durationSec, UUID playerId) {
         return SESSION_MANAGER.startAll(level, durationSec, playerId);
     }
@@ -0,0 +1,86 @@
+package com.moepus.serverwarashi.modules.performance;
+
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.analyze.TicketPerfSessionController;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 卡顿自动捕获：连续 N 个 tick 耗时超过阈值时，对所有空闲维度各开一个短时全分组会话。
+ * 会话结束后报告写盘并通知管理员（见 {@code TicketPerfSessionController.tickAutoAnalysis}）。
+ * 两次捕获之间有冷却，捕获本身的开销因此有上界。只在服务器线程访问。
+ */
+final class TicketPerfSpikeTrigger {
+    private static long tickStartNanos;
+    private static int overThresholdTicks;
+    private static long overThresholdNanos;
+    private static long cooldownUntilTick = Long.MIN_VALUE;
+
+    private TicketPerfSpikeTrigger() {
+    }
+
+    static void onServerTickPre() {
+        tickStartNanos = TicketPerfConfig.spikeCaptureEnabled() ? System.nanoTime() : 0L;
+    }
+
+    static void onServerTickPost(MinecraftServer server) {
+        if (tickStartNanos == 0L) {
+            overThresholdTicks = 0;
+            overThresholdNanos = 0L;
+            return;
+        }
+        long tickNanos = System.nanoTime() - tickStartNanos;
+        tickStartNanos = 0L;
+        if (tickNanos < TicketPerfConfig.spikeThresholdNanos()) {
+            overThresholdTicks = 0;
+            overThresholdNanos = 0L;
+            return;
+        }
+        overThresholdTicks++;
+        overThresholdNanos += tickNanos;
+        int requiredTicks = TicketPerfConfig.spikeTicks();
+        if (overThresholdTicks < requiredTicks) {
+            return;
+        }
+        double averageMspt = overThresholdNanos / 1_000_000.0 / overThresholdTicks;
+        overThresholdTicks = 0;
+        overThresholdNanos = 0L;
+
+        long tick = server.getTickCount();
+        if (tick < cooldownUntilTick) {
+            return;
+        }
+        int captureSeconds = TicketPerfConfig.spikeCaptureSeconds();
+        cooldownUntilTick = tick + captureSeconds * 20L + TicketPerfConfig.spikeCooldownTicks();
+        capture(server, requiredTicks, averageMspt, captureSeconds);
+    }
+
+    static void clearRuntimeState() {
+        tickStartNanos = 0L;
+        overThresholdTicks = 0;
+        overThresholdNanos = 0L;
+        cooldownUntilTick = Long.MIN_VALUE;
+    }
+
+    private static void capture(MinecraftServer server, int ticks, double averageMspt, int captureSeconds) {
+        List<ResourceKey<Level>> captured = new ArrayList<>();
+        for (ServerLevel level : server.getAllLevels()) {
+            if (TicketPerfRuntime.SESSION_MANAGER.startSpikeCapture(level, captureSeconds)) {
+                captured.add(level.dimension());
+            }
+        }
+        if (captured.isEmpty()) {
+            return;
+        }
+        Component message = TicketPerfMessages.spikeCaptureStarted(ticks, averageMspt, captureSeconds, captured);
+        server.sendSystemMessage(message);
+        TicketPerfSessionController.notifyAdmins(server, message);
+    }
+}
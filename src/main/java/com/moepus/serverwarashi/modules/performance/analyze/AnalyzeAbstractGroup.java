@@ -1,13 +1,20 @@
 package com.moepus.serverwarashi.modules.performance.analyze;
 
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
 
+import java.util.ArrayList;
 import java.util.UUID;
 
 abstract class AnalyzeAbstractGroup<S extends GroupSession> {
@@ -19,8 +26,10 @@ abstract class AnalyzeAbstractGroup<S extends GroupSession> {
     protected record StartResult<S extends GroupSession>(S session, Component response, Component error) {
     }
 
-    private S activeSession;
-    private TicketPerfSessionController.AutoAnalysis autoAnalysis;
+    private final Reference2ObjectOpenHashMap<ResourceKey<Level>, S> sessions = new Reference2ObjectOpenHashMap<>();
+    // 热路径缓存：同一维度的 tick 连续到达，命中时只需一次引用比较
+    private ResourceKey<Level> cachedDimension;
+    private S cachedSession;
 
     protected AnalyzeAbstractGroup() {
     }
@@ -37,8 +46,8 @@ abstract class AnalyzeAbstractGroup<S extends GroupSession> {
                                            int durationSec,
                                            UUID playerId,
                                            SessionStarter<S> starter) {
-        if (activeSession != null) {
-            throw new IllegalStateException("Only one active chunkperf session is supported");
+        if (sessions.containsKey(level.dimension())) {
+            throw new IllegalStateException("Only one chunkperf session per dimension is supported");
         }
         int effectiveDuration = Math.max(durationSec, 1);
         StartResult<S> result = starter.prepare(effectiveDuration);
@@ -49,145 +58,294 @@ abstract class AnalyzeAbstractGroup<S extends GroupSession> {
             throw new IllegalStateException("Session starter must return a session and response when no error is present");
         }
 
-        activeSession = result.session();
-        autoAnalysis = new TicketPerfSessionController.AutoAnalysis(
+        S session = result.session();
+        session.autoAnalysis = new TicketPerfSessionController.AutoAnalysis(
                 System.nanoTime() + effectiveDuration * 1_000_000_000L,
                 playerId
         );
+        sessions.put(session.dimension, session);
+        invalidateCache();
         return result.response();
     }
 
     protected final Component stopSession(ServerLevel level) {
-        S session = activeSession;
-        if (session == null || !session.dimension.equals(level.dimension())) {
+        S session = sessions.remove(level.dimension());
+        if (session == null) {
             return noActiveSessionMessage();
         }
-
-        activeSession = null;
-        autoAnalysis = null;
+        invalidateCache();
+        boolean spikeCapture = session.autoAnalysis != null && session.autoAnalysis.spikeCapture();
+        session.autoAnalysis = null;
         flushPending(session);
-        return buildReport(session);
+        if (session.serverTickCount > 0) {
+            recordHistory(session, spikeCapture);
+        }
+        // 卡顿捕获可能频繁触发，只有手动会话且开启配置时才写出文件
+        return buildReport(session, !spikeCapture && TicketPerfConfig.exportSessionFiles());
+    }
+
+    /**
+     * 将指定维度的会话标记为卡顿自动捕获。
+     */
+    final void markSpikeCapture(ResourceKey<Level> dimension) {
+        S session = sessions.get(dimension);
+        if (session != null && session.autoAnalysis != null) {
+            session.autoAnalysis = session.autoAnalysis.asSpikeCapture();
+        }
     }
 
     public final boolean hasAnyActiveSession() {
-        return activeSession != null;
+        return !sessions.isEmpty();
     }
 
     final boolean hasActiveSession(ResourceKey<Level> dimension) {
-        S session = activeSession;
-        return session != null && session.dimension.equals(dimension);
+        return sessions.containsKey(dimension);
     }
 
     final void clearRuntimeState() {
-        activeSession = null;
-        autoAnalysis = null;
+        sessions.clear();
+        invalidateCache();
     }
 
-    public final Component stopById(MinecraftServer server, long sessionId) {
-        S session = activeSession;
+    public final Component stopById(MinecraftServer server, ResourceKey<Level> dimension, long sessionId) {
+        S session = sessions.get(dimension);
         if (session == null || session.id != sessionId) {
             return noActiveSessionMessage();
         }
-        ServerLevel level = server.getLevel(session.dimension);
+        ServerLevel level = server.getLevel(dimension);
         if (level == null) {
-            activeSession = null;
-            autoAnalysis = null;
+            sessions.remove(dimension);
+            invalidateCache();
             return noActiveSessionMessage();
         }
         return stopSession(level);
     }
 
     public final void tickSessions(MinecraftServer server) {
-        S session = activeSession;
-        if (session == null) {
+        if (sessions.isEmpty()) {
             return;
         }
-        session.serverTickCount++;
-        autoAnalysis = TicketPerfSessionController.tickAutoAnalysis(
-                autoAnalysis,
-                session.dimension,
-                server,
-                this::stopSession
-        );
+        // 自动结束会修改会话表，先复制
+        for (S session : new ArrayList<>(sessions.values())) {
+            onServerTickEnd(session);
+            session.serverTickCount++;
+            session.autoAnalysis = TicketPerfSessionController.tickAutoAnalysis(
+                    session.autoAnalysis,
+                    session.dimension,
+                    server,
+                    this::stopSession
+            );
+        }
     }
 
     public final long resolveTrackSessionId(Level level, BlockPos pos) {
-        if (!(level instanceof ServerLevel serverLevel) || pos == null) {
+        if (pos == null) {
             return -1L;
         }
-        S session = activeSession;
-        if (session == null || !session.dimension.equals(serverLevel.dimension())) {
+        return resolveTrackSessionId(level, ChunkPos.asLong(pos));
+    }
+
+    public final long resolveTrackSessionId(Level level, long chunkPos) {
+        if (!(level instanceof ServerLevel)) {
+            return -1L;
+        }
+        S session = sessionFor(level.dimension());
+        if (session == null) {
             return -1L;
         }
-        return isTrackedChunk(session, ChunkPos.asLong(pos)) ? session.id : -1L;
+        return isTrackedChunk(session, chunkPos) ? session.id : -1L;
     }
 
     public final void onEntityTickById(Level level,
-                                       BlockPos pos,
-                                       String type,
-                                       String sourceId,
-                                       String sourceLabel,
+                                       Entity entity,
+                                       long chunkPos,
                                        long durationNanos,
-                                       boolean isBlockEntity,
                                        long sessionId) {
-        if (pos == null) {
+        S session = resolveSessionById(level, sessionId);
+        if (session == null) {
             return;
         }
+        recordEntityTick(session, chunkPos, entity, session.compensate(durationNanos));
+    }
+
+    /**
+     * 解析方块实体 ticker 在会话中的槽位。每个 ticker 只在首次出现时判定是否被跟踪，
+     * 结果（槽位或 -1）按 ticker 引用缓存到会话结束。
+     *
+     * @return 槽位下标；未被跟踪时返回 -1
+     */
+    public final int resolveBlockEntitySlot(Level level, TickingBlockEntity ticker, long sessionId) {
+        S session = resolveSessionById(level, sessionId);
+        if (session == null) {
+            return -1;
+        }
+        int slot = session.blockEntitySlots.getInt(ticker);
+        if (slot != GroupSession.UNRESOLVED_SLOT) {
+            return slot;
+        }
+        BlockPos pos = ticker.getPos();
+        long chunkPos = ChunkPos.asLong(pos);
+        slot = isTrackedChunk(session, chunkPos) ? createBlockEntitySlot(session, ticker, pos, chunkPos) : -1;
+        session.blockEntitySlots.put(ticker, slot);
+        return slot;
+    }
+
+    public final void onBlockEntityTickById(Level level, int slot, long durationNanos, long sessionId) {
         S session = resolveSessionById(level, sessionId);
         if (session == null) {
             return;
         }
-        recordEntityTick(session, ChunkPos.asLong(pos), type, sourceId, sourceLabel, durationNanos, isBlockEntity);
+        recordBlockEntityTick(session, slot, session.compensate(durationNanos));
     }
 
-    public final void onChunkTickById(Level level, ChunkPos pos, long durationNanos, long sessionId) {
+    /**
+     * @param type 计划刻的方块或流体
+     */
+    public final void onScheduledTickById(Level level,
+                                          Object type,
+                                          long chunkPos,
+                                          long durationNanos,
+                                          long sessionId) {
         S session = resolveSessionById(level, sessionId);
         if (session == null) {
             return;
         }
-        recordChunkTick(session, pos, durationNanos);
+        recordScheduledTick(session, chunkPos, type, session.compensate(durationNanos));
+    }
+
+    public final void onChunkSpawnById(Level level, long chunkPos, long durationNanos, long sessionId) {
+        S session = resolveSessionById(level, sessionId);
+        if (session == null) {
+            return;
+        }
+        recordChunkSpawn(session, chunkPos, session.compensate(durationNanos));
+    }
+
+    public final void onChunkTickById(Level level,
+                                      ChunkPos pos,
+                                      long durationNanos,
+                                      long[] phaseNanos,
+                                      long sessionId) {
+        S session = resolveSessionById(level, sessionId);
+        if (session == null) {
+            return;
+        }
+        recordChunkTick(session, pos, session.compensate(durationNanos), phaseNanos);
     }
 
     private S resolveSessionById(Level level, long sessionId) {
-        if (!(level instanceof ServerLevel serverLevel)) {
+        if (!(level instanceof ServerLevel)) {
             return null;
         }
-        S session = activeSession;
-        if (session == null || !session.dimension.equals(serverLevel.dimension()) || session.id != sessionId) {
+        S session = sessionFor(level.dimension());
+        if (session == null || session.id != sessionId) {
             return null;
         }
         return session;
     }
 
+    private S sessionFor(ResourceKey<Level> dimension) {
+        if (dimension != cachedDimension) {
+            cachedDimension = dimension;
+            cachedSession = sessions.get(dimension);
+        }
+        return cachedSession;
+    }
+
+    private void invalidateCache() {
+        cachedDimension = null;
+        cachedSession = null;
+    }
+
     protected abstract boolean isTrackedChunk(S session, long chunkPos);
 
     protected abstract void recordEntityTick(S session,
                                              long chunkPos,
-                                             String type,
-                                             String sourceId,
-                                             String sourceLabel,
-                                             long durationNanos,
-                                             boolean isBlockEntity);
+                                             Entity entity,
+                                             long durationNanos);
+
+    /**
+     * 为首次出现的被跟踪 ticker 分配槽位，类型等信息只在此处读取一次。
+     */
+    protected abstract int createBlockEntitySlot(S session, TickingBlockEntity ticker, BlockPos pos, long chunkPos);
+
+    protected abstract void recordBlockEntityTick(S session, int slot, long durationNanos);
+
+    protected abstract void recordScheduledTick(S session, long chunkPos, Object type, long durationNanos);
 
-    protected abstract void recordChunkTick(S session, ChunkPos pos, long durationNanos);
+    /**
+     * @param phaseNanos 按 {@link com.moepus.serverwarashi.modules.performance.ChunkTickPhase} 下标的子阶段耗时，
+     *                   只在本次调用内有效
+     */
+    protected abstract void recordChunkTick(S session, ChunkPos pos, long durationNanos, long[] phaseNanos);
+
+    /**
+     * 记录一次自然生成（发生在 tickChunk 之外），计入区块耗时的生成阶段。
+     */
+    protected abstract void recordChunkSpawn(S session, long chunkPos, long durationNanos);
 
     protected abstract void flushPending(S session);
 
-    protected abstract Component buildReport(S session);
+    /**
+     * 服务器 tick 结束时回调，在 tick 计数递增之前执行。
+     */
+    protected void onServerTickEnd(S session) {
+    }
+
+    /**
+     * 把会话的分组耗时摘要写入耗时历史。
+     *
+     * @param spikeCapture 是否为卡顿自动捕获
+     */
+    protected abstract void recordHistory(S session, boolean spikeCapture);
+
+    /**
+     * @param exportFiles 是否导出延迟 CSV 与热力图
+     */
+    protected abstract Component buildReport(S session, boolean exportFiles);
 
     protected abstract Component noActiveSessionMessage();
 }
 
 abstract class GroupSession {
+    static final int UNRESOLVED_SLOT = Integer.MIN_VALUE;
+
     public final long id;
     public final ResourceKey<Level> dimension;
     public final long startedAtNanos;
     public long serverTickCount;
+    public TicketPerfSessionController.AutoAnalysis autoAnalysis;
+    // 方块实体 ticker -> 槽位（-1 表示不跟踪），按引用缓存
+    public final Reference2IntOpenHashMap<TickingBlockEntity> blockEntitySlots = new Reference2IntOpenHashMap<>();
+    // 按来源类型的延迟直方图
+    public final TypeLatencyTable latency = new TypeLatencyTable();
+    // 会话开始时测得的计时开销；样本在进入各 record* 之前扣除计时器读数
+    public final TimerCalibration calibration;
+    public long timedCalls;
+    public long compensatedNanos;
 
     protected GroupSession(long id, ResourceKey<Level> dimension) {
         this.id = id;
         this.dimension = dimension;
         this.startedAtNanos = System.nanoTime();
         this.serverTickCount = 0L;
+        this.blockEntitySlots.defaultReturnValue(UNRESOLVED_SLOT);
+        this.calibration = TimerCalibration.measure();
+    }
+
+    final long compensate(long durationNanos) {
+        long corrected = calibration.compensate(durationNanos);
+        timedCalls++;
+        compensatedNanos += durationNanos - corrected;
+        return corrected;
+    }
+
+    final TicketPerfMessages.AnalysisOverhead overhead() {
+        return new TicketPerfMessages.AnalysisOverhead(
+                calibration.timerNanos(),
+                calibration.perCallNanos(),
+                timedCalls,
+                compensatedNanos
+        );
     }
 }
@@ -2,16 +2,27 @@ package com.moepus.serverwarashi.modules.performance.analyze;
 
 import com.moepus.serverwarashi.common.group.ChunkGroupService;
 import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.modules.performance.ChunkTickPhase;
+import com.moepus.serverwarashi.modules.performance.history.TicketPerfHistory;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfGroupOutput;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfHeatmap;
 import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
@@ -20,6 +31,9 @@ import java.util.UUID;
  * 全分组性能会话跟踪器。
  */
 public final class AnalyzeAllGroup extends AnalyzeAbstractGroup<AllGroupSession> {
+    // 报告中展示的最差 tick 数
+    private static final int WORST_TICK_LIMIT = 10;
+
     public AnalyzeAllGroup() {
         super();
     }
@@ -69,47 +83,122 @@ public final class AnalyzeAllGroup extends AnalyzeAbstractGroup<AllGroupSession>
     @Override
     protected void recordEntityTick(AllGroupSession session,
                                     long chunkPos,
-                                    String type,
-                                    String sourceId,
-                                    String sourceLabel,
-                                    long durationNanos,
-                                    boolean isBlockEntity) {
+                                    Entity entity,
+                                    long durationNanos) {
         int groupIndex = resolveGroupIndex(session, chunkPos);
         if (groupIndex < 0) {
             return;
         }
-        if (isBlockEntity) {
-            if (groupIndex != session.pendingBlockEntityGroupIndex) {
-                flushPendingBlockEntity(session);
-                session.pendingBlockEntityGroupIndex = groupIndex;
-            }
-            session.pendingBlockEntityNanos += durationNanos;
-        } else {
-            if (groupIndex != session.pendingEntityGroupIndex) {
-                flushPendingEntity(session);
-                session.pendingEntityGroupIndex = groupIndex;
-            }
-            session.pendingEntityNanos += durationNanos;
+        int typeId = session.latency.recordEntity(entity.getType(), durationNanos);
+        session.timeline.add(groupIndex, typeId, durationNanos);
+        addChunkCost(session, chunkPos, durationNanos);
+        if (groupIndex != session.pendingEntityGroupIndex) {
+            flushPendingEntity(session);
+            session.pendingEntityGroupIndex = groupIndex;
         }
+        session.pendingEntityNanos += durationNanos;
     }
 
     @Override
-    protected void recordChunkTick(AllGroupSession session, ChunkPos pos, long durationNanos) {
+    protected int createBlockEntitySlot(AllGroupSession session,
+                                        TickingBlockEntity ticker,
+                                        BlockPos pos,
+                                        long chunkPos) {
+        int slot = session.slotGroups.size();
+        session.slotGroups.add(resolveGroupIndex(session, chunkPos));
+        session.slotChunks.add(chunkPos);
+        session.slotTypes.add(session.latency.internBlockEntityType(ticker.getType()));
+        return slot;
+    }
+
+    @Override
+    protected void recordBlockEntityTick(AllGroupSession session, int slot, long durationNanos) {
+        int typeId = session.slotTypes.getInt(slot);
+        int groupIndex = session.slotGroups.getInt(slot);
+        session.latency.recordBlockEntity(typeId, durationNanos);
+        session.timeline.add(groupIndex, typeId, durationNanos);
+        addChunkCost(session, session.slotChunks.getLong(slot), durationNanos);
+        if (groupIndex != session.pendingBlockEntityGroupIndex) {
+            flushPendingBlockEntity(session);
+            session.pendingBlockEntityGroupIndex = groupIndex;
+        }
+        session.pendingBlockEntityNanos += durationNanos;
+    }
+
+    @Override
+    protected void recordScheduledTick(AllGroupSession session, long chunkPos, Object type, long durationNanos) {
+        int groupIndex = resolveGroupIndex(session, chunkPos);
+        if (groupIndex < 0) {
+            return;
+        }
+        session.scheduledTotalNanos[groupIndex] += durationNanos;
+        addChunkCost(session, chunkPos, durationNanos);
+        int typeId = session.latency.recordScheduled(type, durationNanos);
+        session.timeline.add(groupIndex, typeId, durationNanos);
+    }
+
+    @Override
+    protected void recordChunkTick(AllGroupSession session, ChunkPos pos, long durationNanos, long[] phaseNanos) {
         int groupIndex = resolveGroupIndex(session, pos.toLong());
         if (groupIndex < 0) {
             return;
         }
         session.chunkTotalNanos[groupIndex] += durationNanos;
+        addChunkCost(session, pos.toLong(), durationNanos);
+        int phaseBase = groupIndex * ChunkTickPhase.COUNT;
+        for (int i = 0; i < ChunkTickPhase.COUNT; i++) {
+            session.chunkPhaseNanos[phaseBase + i] += phaseNanos[i];
+        }
+        session.latency.recordChunk(durationNanos);
+        session.timeline.add(groupIndex, TypeLatencyTable.CHUNK_TYPE_ID, durationNanos);
+    }
+
+    @Override
+    protected void recordChunkSpawn(AllGroupSession session, long chunkPos, long durationNanos) {
+        int groupIndex = resolveGroupIndex(session, chunkPos);
+        if (groupIndex < 0) {
+            return;
+        }
+        session.chunkTotalNanos[groupIndex] += durationNanos;
+        session.chunkPhaseNanos[groupIndex * ChunkTickPhase.COUNT + ChunkTickPhase.SPAWNING.ordinal()] += durationNanos;
+        addChunkCost(session, chunkPos, durationNanos);
+        session.timeline.add(groupIndex, TypeLatencyTable.CHUNK_TYPE_ID, durationNanos);
+    }
+
+    @Override
+    protected void onServerTickEnd(AllGroupSession session) {
+        session.timeline.commitTick(session.serverTickCount);
     }
 
     @Override
     protected void flushPending(AllGroupSession session) {
         flushPendingEntity(session);
         flushPendingBlockEntity(session);
+        flushPendingChunkCost(session);
     }
 
     @Override
-    protected Component buildReport(AllGroupSession session) {
+    protected void recordHistory(AllGroupSession session, boolean spikeCapture) {
+        double ticks = session.serverTickCount * 1_000_000.0;
+        List<TicketPerfHistory.GroupCost> costs = new ArrayList<>(session.groups.size());
+        for (int i = 0; i < session.groups.size(); i++) {
+            costs.add(new TicketPerfHistory.GroupCost(
+                    session.groups.get(i).owner().toString(),
+                    session.beTotalNanos[i] / ticks,
+                    session.entityTotalNanos[i] / ticks,
+                    session.chunkTotalNanos[i] / ticks,
+                    session.scheduledTotalNanos[i] / ticks
+            ));
+        }
+        TicketPerfHistory.record(
+                session.dimension,
+                spikeCapture ? TicketPerfHistory.Source.SPIKE : TicketPerfHistory.Source.ALL_GROUPS,
+                costs
+        );
+    }
+
+    @Override
+    protected Component buildReport(AllGroupSession session, boolean exportFiles) {
         long elapsedNanos = System.nanoTime() - session.startedAtNanos;
         List<TicketPerfMessages.GroupMsptEntry> entries = new ArrayList<>();
         for (int i = 0; i < session.groups.size(); i++) {
@@ -117,23 +206,69 @@ public final class AnalyzeAllGroup extends AnalyzeAbstractGroup<AllGroupSession>
             ChunkGroupSnapshot.OwnerStats stats = entry.stats();
             entries.add(new TicketPerfMessages.GroupMsptEntry(
                     entry.owner(),
+                    entry.memberCount(),
                     stats.chunkCount(),
                     stats.blockEntityCount(),
                     stats.entityCount(),
                     session.beTotalNanos[i],
                     session.entityTotalNanos[i],
-                    session.chunkTotalNanos[i]
+                    session.chunkTotalNanos[i],
+                    session.scheduledTotalNanos[i],
+                    Arrays.copyOfRange(session.chunkPhaseNanos,
+                            i * ChunkTickPhase.COUNT, (i + 1) * ChunkTickPhase.COUNT)
             ));
         }
         entries.sort(Comparator.comparingLong(TicketPerfMessages.GroupMsptEntry::totalNanos).reversed());
+        List<TicketPerfMessages.TypeLatency> latencies = session.latency.summarize();
+        if (exportFiles) {
+            TicketPerfGroupOutput.dumpLatencyCsv(session.dimension, latencies);
+            TicketPerfHeatmap.exportAsync(session.dimension, "all", session.chunkCostTotals, session.serverTickCount);
+        }
         return TicketPerfMessages.buildGroupMsptReport(
                 session.dimension,
                 entries,
+                latencies,
+                worstTicks(session),
+                session.overhead(),
                 session.serverTickCount,
                 Duration.ofNanos(elapsedNanos)
         );
     }
 
+    /**
+     * 从时间线中取出归因耗时最高的若干 tick，并解析其主要分组与类型的名称。
+     */
+    private static List<TicketPerfMessages.WorstTick> worstTicks(AllGroupSession session) {
+        List<TicketPerfMessages.WorstTick> ticks = new ArrayList<>();
+        for (int slot : session.timeline.worstSlots(WORST_TICK_LIMIT)) {
+            List<TicketPerfMessages.TickContributor> groups = new ArrayList<>(TickTimeline.TOP_K);
+            List<TicketPerfMessages.TickContributor> types = new ArrayList<>(TickTimeline.TOP_K);
+            for (int rank = 0; rank < TickTimeline.TOP_K; rank++) {
+                int groupIndex = session.timeline.topGroup(slot, rank);
+                if (groupIndex >= 0) {
+                    groups.add(new TicketPerfMessages.TickContributor(
+                            session.groups.get(groupIndex).label(),
+                            session.timeline.topGroupNanos(slot, rank)
+                    ));
+                }
+                int typeId = session.timeline.topType(slot, rank);
+                if (typeId >= 0) {
+                    types.add(new TicketPerfMessages.TickContributor(
+                            "[" + session.latency.typeCategory(typeId) + "] " + session.latency.typeName(typeId),
+                            session.timeline.topTypeNanos(slot, rank)
+                    ));
+                }
+            }
+            ticks.add(new TicketPerfMessages.WorstTick(
+                    session.timeline.tickNumber(slot),
+                    session.timeline.tickTotalNanos(slot),
+                    groups,
+                    types
+            ));
+        }
+        return ticks;
+    }
+
     @Override
     protected Component noActiveSessionMessage() {
         return TicketPerfMessages.noActiveGroupAnalysis();
@@ -158,6 +293,25 @@ public final class AnalyzeAllGroup extends AnalyzeAbstractGroup<AllGroupSession>
         session.pendingEntityGroupIndex = -1;
     }
 
+    /**
+     * 按区块累计耗时。同一区块的连续样本先合并，换区块时才写入哈希表。
+     */
+    private static void addChunkCost(AllGroupSession session, long chunkPos, long durationNanos) {
+        if (chunkPos != session.pendingCostChunkPos) {
+            flushPendingChunkCost(session);
+            session.pendingCostChunkPos = chunkPos;
+        }
+        session.pendingCostNanos += durationNanos;
+    }
+
+    private static void flushPendingChunkCost(AllGroupSession session) {
+        if (session.pendingCostNanos != 0L) {
+            session.chunkCostTotals.addTo(session.pendingCostChunkPos, session.pendingCostNanos);
+        }
+        session.pendingCostNanos = 0L;
+        session.pendingCostChunkPos = Long.MIN_VALUE;
+    }
+
     private void flushPendingBlockEntity(AllGroupSession session) {
         if (session.pendingBlockEntityGroupIndex < 0 || session.pendingBlockEntityNanos == 0L) {
             return;
@@ -175,6 +329,19 @@ final class AllGroupSession extends GroupSession {
     public final long[] beTotalNanos;
     public final long[] entityTotalNanos;
     public final long[] chunkTotalNanos;
+    // 按 分组下标 * ChunkTickPhase.COUNT + 阶段 展开
+    public final long[] chunkPhaseNanos;
+    public final long[] scheduledTotalNanos;
+
+    // 方块实体槽位（并行数组）：分组下标、类型 id（见 latency）、所在区块
+    public final IntArrayList slotGroups = new IntArrayList();
+    public final IntArrayList slotTypes = new IntArrayList();
+    public final LongArrayList slotChunks = new LongArrayList();
+    // 区块 -> 会话内累计耗时（四类合计），用于热力图
+    public final Long2LongOpenHashMap chunkCostTotals = new Long2LongOpenHashMap();
+    public long pendingCostChunkPos = Long.MIN_VALUE;
+    public long pendingCostNanos;
+    public final TickTimeline timeline;
 
     public long lastChunkPos = Long.MIN_VALUE;
     public int lastGroupIndex = -1;
@@ -196,5 +363,8 @@ final class AllGroupSession extends GroupSession {
         this.beTotalNanos = new long[size];
         this.entityTotalNanos = new long[size];
         this.chunkTotalNanos = new long[size];
+        this.chunkPhaseNanos = new long[size * ChunkTickPhase.COUNT];
+        this.scheduledTotalNanos = new long[size];
+        this.timeline = new TickTimeline(size);
     }
 }
@@ -1,8 +1,18 @@
 package com.moepus.serverwarashi.modules.performance.analyze;
 
 import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.modules.performance.ChunkTickPhase;
+import com.moepus.serverwarashi.modules.performance.history.TicketPerfHistory;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfGroupOutput;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfHeatmap;
 import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
 import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
@@ -10,11 +20,16 @@ import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -22,6 +37,9 @@ import java.util.UUID;
  * 单分组性能会话跟踪器。
  */
 public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSession> {
+    // 区域分析最多覆盖的区块数（256x256）
+    public static final int MAX_REGION_CHUNKS = 256 * 256;
+
     public AnalyzeSingleGroup() {
         super();
     }
@@ -39,10 +57,82 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
         );
     }
 
+    /**
+     * 以任意矩形区域（含两端）为目标开始分析，不要求区域内存在 ticket。
+     */
+    public Component startRegion(ServerLevel level,
+                                 ChunkPos from,
+                                 ChunkPos to,
+                                 int durationSec,
+                                 UUID playerId,
+                                 long sessionId) {
+        return startSession(
+                level,
+                durationSec,
+                playerId,
+                effectiveDuration -> prepareRegionStart(level, from, to, effectiveDuration, sessionId)
+        );
+    }
+
     public Component stop(ServerLevel level) {
         return stopSession(level);
     }
 
+    private StartResult<SingleGroupSession> prepareRegionStart(ServerLevel level,
+                                                               ChunkPos from,
+                                                               ChunkPos to,
+                                                               int effectiveDuration,
+                                                               long sessionId) {
+        int minX = Math.min(from.x, to.x);
+        int maxX = Math.max(from.x, to.x);
+        int minZ = Math.min(from.z, to.z);
+        int maxZ = Math.max(from.z, to.z);
+        long chunkCount = (long) (maxX - minX + 1) * (maxZ - minZ + 1);
+        if (chunkCount > MAX_REGION_CHUNKS) {
+            return startError(TicketPerfMessages.regionTooLarge(chunkCount, MAX_REGION_CHUNKS));
+        }
+
+        LongOpenHashSet targetChunks = new LongOpenHashSet((int) chunkCount);
+        int blockEntityCount = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                targetChunks.add(ChunkPos.asLong(x, z));
+                LevelChunk chunk = level.getChunkSource().getChunkNow(x, z);
+                if (chunk != null) {
+                    blockEntityCount += chunk.getBlockEntities().size();
+                }
+            }
+        }
+        int entityCount = 0;
+        for (Entity entity : level.getAllEntities()) {
+            if (targetChunks.contains(entity.chunkPosition().toLong())) {
+                entityCount++;
+            }
+        }
+
+        String label = "region [" + minX + "," + minZ + "]..[" + maxX + "," + maxZ + "]";
+        SingleGroupSession session = new SingleGroupSession(
+                sessionId,
+                level.dimension(),
+                targetChunks,
+                label,
+                label,
+                blockEntityCount,
+                entityCount
+        );
+        return startSuccess(
+                session,
+                TicketPerfMessages.sessionStarted(
+                        level.dimension(),
+                        Component.literal(label),
+                        targetChunks.size(),
+                        blockEntityCount,
+                        entityCount,
+                        effectiveDuration
+                )
+        );
+    }
+
     private StartResult<SingleGroupSession> prepareStart(ServerLevel sourceLevel,
                                                          BlockPos pos,
                                                          int effectiveDuration,
@@ -65,6 +155,7 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
                 sourceLevel.dimension(),
                 targetChunks,
                 entry.label(),
+                entry.owner().toString(),
                 stats.blockEntityCount(),
                 stats.entityCount()
         );
@@ -72,7 +163,7 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
                 session,
                 TicketPerfMessages.sessionStarted(
                         sourceLevel.dimension(),
-                        entry.owner().asComponent(),
+                        TicketPerfMessages.groupComponent(entry.owner(), entry.memberCount()),
                         stats.chunkCount(),
                         stats.blockEntityCount(),
                         stats.entityCount(),
@@ -95,26 +186,60 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
     @Override
     protected void recordEntityTick(SingleGroupSession session,
                                     long chunkPos,
-                                    String type,
-                                    String sourceId,
-                                    String sourceLabel,
-                                    long durationNanos,
-                                    boolean isBlockEntity) {
-        if (isBlockEntity) {
-            recordBlockEntity(session, chunkPos, type, sourceId, sourceLabel, durationNanos);
-        } else {
-            recordEntity(session, chunkPos, type, sourceId, sourceLabel, durationNanos);
+                                    Entity entity,
+                                    long durationNanos) {
+        recordEntity(session, chunkPos, entity, durationNanos);
+    }
+
+    @Override
+    protected int createBlockEntitySlot(SingleGroupSession session,
+                                        TickingBlockEntity ticker,
+                                        BlockPos pos,
+                                        long chunkPos) {
+        int typeId = session.latency.internBlockEntityType(ticker.getType());
+        int slot = session.slotChunks.size();
+        session.slotChunks.add(chunkPos);
+        session.slotTypes.add(typeId);
+        session.slotMaxNanos.add(0L);
+        session.slotPositions.add(pos.immutable());
+        return slot;
+    }
+
+    @Override
+    protected void recordBlockEntityTick(SingleGroupSession session, int slot, long durationNanos) {
+        recordBlockEntity(session, slot, durationNanos);
+    }
+
+    @Override
+    protected void recordScheduledTick(SingleGroupSession session, long chunkPos, Object type, long durationNanos) {
+        session.scheduledTotalNanos += durationNanos;
+        session.chunkTickTotals.addTo(chunkPos, durationNanos);
+        session.latency.recordScheduled(type, durationNanos);
+        if (durationNanos > session.scheduledMaxNanos) {
+            session.scheduledMaxNanos = durationNanos;
         }
     }
 
     @Override
-    protected void recordChunkTick(SingleGroupSession session, ChunkPos pos, long durationNanos) {
+    protected void recordChunkTick(SingleGroupSession session, ChunkPos pos, long durationNanos, long[] phaseNanos) {
         session.chunkTotalNanos += durationNanos;
+        for (int i = 0; i < ChunkTickPhase.COUNT; i++) {
+            session.chunkPhaseNanos[i] += phaseNanos[i];
+        }
+        session.chunkTickTotals.addTo(pos.toLong(), durationNanos);
+        session.latency.recordChunk(durationNanos);
         if (durationNanos > session.chunkMaxNanos) {
             session.chunkMaxNanos = durationNanos;
         }
     }
 
+    @Override
+    protected void recordChunkSpawn(SingleGroupSession session, long chunkPos, long durationNanos) {
+        session.chunkTotalNanos += durationNanos;
+        session.chunkPhaseNanos[ChunkTickPhase.SPAWNING.ordinal()] += durationNanos;
+        session.chunkTickTotals.addTo(chunkPos, durationNanos);
+    }
+
     @Override
     protected void flushPending(SingleGroupSession session) {
         flushPendingEntity(session);
@@ -122,40 +247,130 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
     }
 
     @Override
-    protected Component buildReport(SingleGroupSession session) {
+    protected void recordHistory(SingleGroupSession session, boolean spikeCapture) {
+        double ticks = session.serverTickCount * 1_000_000.0;
+        TicketPerfHistory.record(session.dimension, TicketPerfHistory.Source.SESSION, List.of(
+                new TicketPerfHistory.GroupCost(
+                        session.historyKey,
+                        session.beTotalNanos / ticks,
+                        session.entityTotalNanos / ticks,
+                        session.chunkTotalNanos / ticks,
+                        session.scheduledTotalNanos / ticks
+                )
+        ));
+    }
+
+    @Override
+    protected Component buildReport(SingleGroupSession session, boolean exportFiles) {
         long elapsedNanos = System.nanoTime() - session.startedAtNanos;
+        SpikeView blockEntitySpikes = topBlockEntitySpikes(session);
+        SpikeView entitySpikes = topEntitySpikes(session);
+        List<TicketPerfMessages.TypeLatency> latencies = session.latency.summarize();
+        if (exportFiles) {
+            TicketPerfGroupOutput.dumpLatencyCsv(session.dimension, latencies);
+            Long2LongOpenHashMap chunkCost = new Long2LongOpenHashMap(session.chunkLoadTotals);
+            for (Long2LongMap.Entry entry : session.chunkTickTotals.long2LongEntrySet()) {
+                chunkCost.addTo(entry.getLongKey(), entry.getLongValue());
+            }
+            TicketPerfHeatmap.exportAsync(session.dimension, "group", chunkCost, session.serverTickCount);
+        }
         return TicketPerfMessages.buildReport(new TicketPerfMessages.SingleGroupReport(
                 session.dimension, session.ownerLabel,
                 session.targetChunks.size(), session.blockEntityCount, session.entityCount,
                 session.serverTickCount,
                 session.beTotalNanos, session.beMaxNanos,
                 session.entityTotalNanos, session.entityMaxNanos,
-                session.chunkTotalNanos, session.chunkMaxNanos,
+                session.chunkTotalNanos, session.chunkMaxNanos, session.chunkPhaseNanos,
+                session.scheduledTotalNanos, session.scheduledMaxNanos,
                 session.chunkLoadTotals,
-                session.blockEntitySpikeNanos, session.blockEntitySpikeLabels,
-                session.typeTotals,
-                session.entitySpikeNanos, session.entitySpikeLabels,
-                session.entityTotals,
+                blockEntitySpikes.nanos(), blockEntitySpikes.labels(),
+                session.latency.blockEntityTotalsByName(),
+                entitySpikes.nanos(), entitySpikes.labels(),
+                session.latency.entityTotalsByName(),
+                latencies,
+                session.overhead(),
                 Duration.ofNanos(elapsedNanos)
         ));
     }
 
+    /**
+     * 只为单次耗时最高的 top-N 方块实体槽位构建来源 id 与标签。
+     */
+    private static SpikeView topBlockEntitySpikes(SingleGroupSession session) {
+        Object2LongOpenHashMap<String> nanos = new Object2LongOpenHashMap<>();
+        Map<String, String> labels = new HashMap<>();
+        IntArrayList slots = new IntArrayList();
+        for (int slot = 0; slot < session.slotMaxNanos.size(); slot++) {
+            if (session.slotMaxNanos.getLong(slot) >= TicketPerfMessages.SPIKE_MIN_NANOS) {
+                slots.add(slot);
+            }
+        }
+        int[] ordered = slots.toIntArray();
+        IntArrays.quickSort(ordered, (a, b) -> Long.compare(
+                session.slotMaxNanos.getLong(b),
+                session.slotMaxNanos.getLong(a)
+        ));
+        int limit = Math.min(ordered.length, TicketPerfMessages.SPIKE_REPORT_LIMIT);
+        for (int i = 0; i < limit; i++) {
+            int slot = ordered[i];
+            BlockPos pos = session.slotPositions.get(slot);
+            String sourceId = Long.toString(pos.asLong());
+            nanos.put(sourceId, session.slotMaxNanos.getLong(slot));
+            labels.put(sourceId, formatBlockEntityLabel(
+                    session.latency.typeName(session.slotTypes.getInt(slot)),
+                    pos
+            ));
+        }
+        return new SpikeView(nanos, labels);
+    }
+
+    private static String formatBlockEntityLabel(String blockEntityType, BlockPos pos) {
+        return blockEntityType + "@(" + pos.getX() + "," + pos.getY() + "," + pos.getZ() + ")";
+    }
+
+    /**
+     * 只为耗时最高的 top-N 实体构建来源 id 与标签。
+     */
+    private static SpikeView topEntitySpikes(SingleGroupSession session) {
+        Object2LongOpenHashMap<String> nanos = new Object2LongOpenHashMap<>();
+        Map<String, String> labels = new HashMap<>();
+        int[] ids = session.entitySpikeNanos.keySet().toIntArray();
+        IntArrays.quickSort(ids, (a, b) -> Long.compare(
+                session.entitySpikeNanos.get(b),
+                session.entitySpikeNanos.get(a)
+        ));
+        int limit = Math.min(ids.length, TicketPerfMessages.SPIKE_REPORT_LIMIT);
+        for (int i = 0; i < limit; i++) {
+            Entity entity = session.entitySpikeSources.get(ids[i]);
+            String sourceId = entity.getUUID().toString();
+            nanos.put(sourceId, session.entitySpikeNanos.get(ids[i]));
+            labels.put(sourceId, formatEntityLabel(entity.getType().toString(), sourceId, entity.blockPosition()));
+        }
+        return new SpikeView(nanos, labels);
+    }
+
+    private static String formatEntityLabel(String entityType, String entityId, BlockPos pos) {
+        String shortUuid = entityId.length() > 8 ? entityId.substring(0, 8) : entityId;
+        return entityType + "#" + shortUuid + "@(" + pos.getX() + "," + pos.getY() + "," + pos.getZ() + ")";
+    }
+
+    private record SpikeView(Object2LongOpenHashMap<String> nanos, Map<String, String> labels) {
+    }
+
     @Override
     protected Component noActiveSessionMessage() {
         return TicketPerfMessages.noActiveSession();
     }
 
-    private void recordBlockEntity(SingleGroupSession session,
-                                   long chunkPos,
-                                   String type,
-                                   String sourceId,
-                                   String sourceLabel,
-                                   long durationNanos) {
+    private void recordBlockEntity(SingleGroupSession session, int slot, long durationNanos) {
         if (durationNanos > session.beMaxNanos) {
             session.beMaxNanos = durationNanos;
         }
-        session.typeTotals.addTo(type, durationNanos);
-        updateSpike(session.blockEntitySpikeNanos, session.blockEntitySpikeLabels, sourceId, sourceLabel, durationNanos);
+        session.latency.recordBlockEntity(session.slotTypes.getInt(slot), durationNanos);
+        if (durationNanos > session.slotMaxNanos.getLong(slot)) {
+            session.slotMaxNanos.set(slot, durationNanos);
+        }
+        long chunkPos = session.slotChunks.getLong(slot);
         if (session.pendingBlockEntityChunkPos != chunkPos) {
             flushPendingBlockEntity(session);
             session.pendingBlockEntityChunkPos = chunkPos;
@@ -165,15 +380,19 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
 
     private void recordEntity(SingleGroupSession session,
                               long chunkPos,
-                              String type,
-                              String sourceId,
-                              String sourceLabel,
+                              Entity entity,
                               long durationNanos) {
         if (durationNanos > session.entityMaxNanos) {
             session.entityMaxNanos = durationNanos;
         }
-        session.entityTotals.addTo(type, durationNanos);
-        updateSpike(session.entitySpikeNanos, session.entitySpikeLabels, sourceId, sourceLabel, durationNanos);
+        session.latency.recordEntity(entity.getType(), durationNanos);
+        if (durationNanos >= TicketPerfMessages.SPIKE_MIN_NANOS) {
+            int entityId = entity.getId();
+            if (durationNanos > session.entitySpikeNanos.get(entityId)) {
+                session.entitySpikeNanos.put(entityId, durationNanos);
+                session.entitySpikeSources.put(entityId, entity);
+            }
+        }
         if (session.pendingEntityChunkPos != chunkPos) {
             flushPendingEntity(session);
             session.pendingEntityChunkPos = chunkPos;
@@ -204,30 +423,16 @@ public final class AnalyzeSingleGroup extends AnalyzeAbstractGroup<SingleGroupSe
         session.pendingBlockEntityNanos = 0L;
         session.pendingBlockEntityChunkPos = Long.MIN_VALUE;
     }
-
-    private void updateSpike(it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap<String> spikeNanos,
-                             java.util.Map<String, String> spikeLabels,
-                             String sourceId,
-                             String sourceLabel,
-                             long durationNanos) {
-        long current = spikeNanos.getLong(sourceId);
-        if (durationNanos <= current) {
-            return;
-        }
-        spikeNanos.put(sourceId, durationNanos);
-        spikeLabels.put(sourceId, sourceLabel);
-    }
-
 }
 
 final class SingleGroupSession extends GroupSession {
     public final String ownerLabel;
+    // 耗时历史中的键：分组 owner 标签（不含聚类成员数）或区域描述
+    public final String historyKey;
     public final LongOpenHashSet targetChunks;
     public final int blockEntityCount;
     public final int entityCount;
 
-    public final Object2LongOpenHashMap<String> typeTotals = new Object2LongOpenHashMap<>();
-    public final Object2LongOpenHashMap<String> entityTotals = new Object2LongOpenHashMap<>();
 
     public long lastChunkPos = Long.MIN_VALUE;
     public boolean lastChunkTracked;
@@ -245,21 +450,33 @@ final class SingleGroupSession extends GroupSession {
 
     public long chunkTotalNanos;
     public long chunkMaxNanos;
+    public final long[] chunkPhaseNanos = new long[ChunkTickPhase.COUNT];
+
+    public long scheduledTotalNanos;
+    public long scheduledMaxNanos;
     public final Long2LongOpenHashMap chunkLoadTotals = new Long2LongOpenHashMap();
-    public final Object2LongOpenHashMap<String> blockEntitySpikeNanos = new Object2LongOpenHashMap<>();
-    public final Map<String, String> blockEntitySpikeLabels = new HashMap<>();
-    public final Object2LongOpenHashMap<String> entitySpikeNanos = new Object2LongOpenHashMap<>();
-    public final Map<String, String> entitySpikeLabels = new HashMap<>();
+    // 区块 tick（含自然生成）与计划刻按区块累计，与 chunkLoadTotals 相加即热力图的区块总耗时
+    public final Long2LongOpenHashMap chunkTickTotals = new Long2LongOpenHashMap();
+    // 方块实体槽位（并行数组）：所在区块、类型 id（见 latency）、单次最大耗时、坐标（仅报告时使用）
+    public final LongArrayList slotChunks = new LongArrayList();
+    public final IntArrayList slotTypes = new IntArrayList();
+    public final LongArrayList slotMaxNanos = new LongArrayList();
+    public final List<BlockPos> slotPositions = new ArrayList<>();
+    // 实体 spike 以实体 id 为键，仅记录超过阈值的来源；标签在报告时构建
+    public final Int2LongOpenHashMap entitySpikeNanos = new Int2LongOpenHashMap();
+    public final Int2ObjectOpenHashMap<Entity> entitySpikeSources = new Int2ObjectOpenHashMap<>();
 
     public SingleGroupSession(long id,
                               ResourceKey<Level> dimension,
                               LongOpenHashSet targetChunks,
                               String ownerLabel,
+                              String historyKey,
                               int blockEntityCount,
                               int entityCount) {
         super(id, dimension);
         this.targetChunks = targetChunks;
         this.ownerLabel = ownerLabel;
+        this.historyKey = historyKey;
         this.blockEntityCount = blockEntityCount;
         this.entityCount = entityCount;
     }
@@ -0,0 +1,167 @@
+package com.moepus.serverwarashi.modules.performance.analyze;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+
+import java.util.Arrays;
+
+/**
+ * 全分组会话的逐 tick 时间线环形缓冲。
+ * 每个服务器 tick 结束时保存该 tick 的归因总耗时，以及耗时最高的若干分组与类型；
+ * 缓冲数组在会话开始时预分配，记录过程不分配对象（仅首次出现新类型时扩容）。
+ */
+final class TickTimeline {
+    // 保留最近 5 分钟（20 TPS）
+    static final int CAPACITY = 6000;
+    static final int TOP_K = 3;
+
+    private final long[] tickNumbers = new long[CAPACITY];
+    private final long[] tickTotals = new long[CAPACITY];
+    private final int[] topGroups = new int[CAPACITY * TOP_K];
+    private final long[] topGroupNanos = new long[CAPACITY * TOP_K];
+    private final int[] topTypes = new int[CAPACITY * TOP_K];
+    private final long[] topTypeNanos = new long[CAPACITY * TOP_K];
+    private int head;
+    private int size;
+
+    // 当前 tick 的累计：按下标累加，touched 记录本 tick 出现过的下标以便只清理这些位置
+    private final long[] currentGroupNanos;
+    private final int[] touchedGroups;
+    private int touchedGroupCount;
+    private long[] currentTypeNanos = new long[32];
+    private int[] touchedTypes = new int[32];
+    private int touchedTypeCount;
+    private long currentTotal;
+
+    TickTimeline(int groupCount) {
+        this.currentGroupNanos = new long[groupCount];
+        this.touchedGroups = new int[groupCount];
+    }
+
+    void add(int groupIndex, int typeId, long durationNanos) {
+        if (durationNanos <= 0L) {
+            return;
+        }
+        if (currentGroupNanos[groupIndex] == 0L) {
+            touchedGroups[touchedGroupCount++] = groupIndex;
+        }
+        currentGroupNanos[groupIndex] += durationNanos;
+        if (typeId >= currentTypeNanos.length) {
+            int length = Math.max(typeId + 1, currentTypeNanos.length * 2);
+            currentTypeNanos = Arrays.copyOf(currentTypeNanos, length);
+            touchedTypes = Arrays.copyOf(touchedTypes, length);
+        }
+        if (currentTypeNanos[typeId] == 0L) {
+            touchedTypes[touchedTypeCount++] = typeId;
+        }
+        currentTypeNanos[typeId] += durationNanos;
+        currentTotal += durationNanos;
+    }
+
+    /**
+     * 结束当前 tick：写入环形缓冲并重置累计。
+     *
+     * @param tickNumber 会话内的 tick 序号
+     */
+    void commitTick(long tickNumber) {
+        int slot = head;
+        tickNumbers[slot] = tickNumber;
+        tickTotals[slot] = currentTotal;
+        selectTop(currentGroupNanos, touchedGroups, touchedGroupCount, topGroups, topGroupNanos, slot * TOP_K);
+        selectTop(currentTypeNanos, touchedTypes, touchedTypeCount, topTypes, topTypeNanos, slot * TOP_K);
+
+        for (int i = 0; i < touchedGroupCount; i++) {
+            currentGroupNanos[touchedGroups[i]] = 0L;
+        }
+        for (int i = 0; i < touchedTypeCount; i++) {
+            currentTypeNanos[touchedTypes[i]] = 0L;
+        }
+        touchedGroupCount = 0;
+        touchedTypeCount = 0;
+        currentTotal = 0L;
+
+        head = (head + 1) % CAPACITY;
+        if (size < CAPACITY) {
+            size++;
+        }
+    }
+
+    /**
+     * @return 缓冲内已记录的 tick 数
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 按归因总耗时降序返回最差的若干 tick 的缓冲槽位，仅在生成报告时调用。
+     */
+    int[] worstSlots(int limit) {
+        int[] slots = new int[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = i;
+        }
+        IntArrays.quickSort(slots, (a, b) -> Long.compare(tickTotals[b], tickTotals[a]));
+        int count = 0;
+        while (count < Math.min(limit, size) && tickTotals[slots[count]] > 0L) {
+            count++;
+        }
+        return Arrays.copyOf(slots, count);
+    }
+
+    long tickNumber(int slot) {
+        return tickNumbers[slot];
+    }
+
+    long tickTotalNanos(int slot) {
+        return tickTotals[slot];
+    }
+
+    /**
+     * @return 第 rank 名分组下标，无则为 -1
+     */
+    int topGroup(int slot, int rank) {
+        return topGroups[slot * TOP_K + rank];
+    }
+
+    long topGroupNanos(int slot, int rank) {
+        return topGroupNanos[slot * TOP_K + rank];
+    }
+
+    /**
+     * @return 第 rank 名类型 id，无则为 -1
+     */
+    int topType(int slot, int rank) {
+        return topTypes[slot * TOP_K + rank];
+    }
+
+    long topTypeNanos(int slot, int rank) {
+        return topTypeNanos[slot * TOP_K + rank];
+    }
+
+    private static void selectTop(long[] values,
+                                  int[] touched,
+                                  int touchedCount,
+                                  int[] outIds,
+                                  long[] outNanos,
+                                  int offset) {
+        for (int k = 0; k < TOP_K; k++) {
+            outIds[offset + k] = -1;
+            outNanos[offset + k] = 0L;
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            int id = touched[i];
+            long value = values[id];
+            if (value <= outNanos[offset + TOP_K - 1]) {
+                continue;
+            }
+            int k = TOP_K - 1;
+            while (k > 0 && value > outNanos[offset + k - 1]) {
+                outIds[offset + k] = outIds[offset + k - 1];
+                outNanos[offset + k] = outNanos[offset + k - 1];
+                k--;
+            }
+            outIds[offset + k] = id;
+            outNanos[offset + k] = value;
+        }
+    }
+}
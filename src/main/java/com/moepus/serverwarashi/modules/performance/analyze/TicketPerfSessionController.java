@@ -1,26 +1,37 @@
 package com.moepus.serverwarashi.modules.performance.analyze;
 
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfGroupOutput;
 import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
 import net.minecraft.core.BlockPos;
 import net.minecraft.network.chat.Component;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
 
 import java.util.UUID;
 import java.util.function.Function;
 
 /**
  * 性能会话入口：负责调度单分组会话与全分组会话。
+ * 每个维度至多一个会话，不同维度的会话互不影响；热路径按维度查会话表，无会话时只需一次判空。
  */
 public final class TicketPerfSessionController {
-    private AnalyzeAbstractGroup<?> activeTracker;
+    private static final int ADMIN_PERMISSION_LEVEL = 2;
+
+    private final Reference2ObjectOpenHashMap<ResourceKey<Level>, ActiveSession> activeSessions =
+            new Reference2ObjectOpenHashMap<>();
+    // 热路径缓存：同一维度的 tick 连续到达，命中时只需一次引用比较
+    private ResourceKey<Level> cachedDimension;
+    private ActiveSession cachedSession;
     private final AnalyzeSingleGroup singleTracker;
     private final AnalyzeAllGroup allGroupTracker;
     private long nextSessionId = 1L;
-    private long activeSessionId = -1L;
 
     public TicketPerfSessionController() {
         this.singleTracker = new AnalyzeSingleGroup();
@@ -31,101 +42,206 @@ public final class TicketPerfSessionController {
                            BlockPos pos,
                            int durationSec,
                            UUID playerId) {
-        if (hasActiveSession()) {
+        if (hasActiveSession(sourceLevel.dimension())) {
             return TicketPerfMessages.analysisAlreadyRunning();
         }
         long sessionId = nextSessionId++;
         Component response = singleTracker.start(sourceLevel, pos, durationSec, playerId, sessionId);
-        activateTrackerIfStarted(singleTracker, sessionId);
+        activateTrackerIfStarted(singleTracker, sourceLevel.dimension(), sessionId);
+        return response;
+    }
+
+    public Component startRegion(ServerLevel level, ChunkPos from, ChunkPos to, int durationSec, UUID playerId) {
+        if (hasActiveSession(level.dimension())) {
+            return TicketPerfMessages.analysisAlreadyRunning();
+        }
+        long sessionId = nextSessionId++;
+        Component response = singleTracker.startRegion(level, from, to, durationSec, playerId, sessionId);
+        activateTrackerIfStarted(singleTracker, level.dimension(), sessionId);
         return response;
     }
 
     public Component startAll(ServerLevel level, int durationSec, UUID playerId) {
-        if (hasActiveSession()) {
+        if (hasActiveSession(level.dimension())) {
             return TicketPerfMessages.analysisAlreadyRunning();
         }
         long sessionId = nextSessionId++;
         Component response = allGroupTracker.startAll(level, durationSec, playerId, sessionId);
-        activateTrackerIfStarted(allGroupTracker, sessionId);
+        activateTrackerIfStarted(allGroupTracker, level.dimension(), sessionId);
         return response;
     }
 
+    /**
+     * 卡顿自动捕获：维度空闲时开始一个全分组会话，结束后报告写盘并通知管理员。
+     *
+     * @return 是否成功开始
+     */
+    public boolean startSpikeCapture(ServerLevel level, int durationSec) {
+        if (hasActiveSession(level.dimension())) {
+            return false;
+        }
+        long sessionId = nextSessionId++;
+        allGroupTracker.startAll(level, durationSec, null, sessionId);
+        activateTrackerIfStarted(allGroupTracker, level.dimension(), sessionId);
+        if (!hasActiveSession(level.dimension())) {
+            return false;
+        }
+        allGroupTracker.markSpikeCapture(level.dimension());
+        return true;
+    }
+
+    /**
+     * 结束指定维度的会话；该维度无会话且全服只有一个会话时结束那一个。
+     */
     public Component stop(ServerLevel level) {
-        if (!hasActiveSession()) {
+        ResourceKey<Level> dimension = level.dimension();
+        ActiveSession active = activeSessions.get(dimension);
+        if (active == null && activeSessions.size() == 1) {
+            dimension = activeSessions.keySet().iterator().next();
+            active = activeSessions.get(dimension);
+        }
+        if (active == null) {
             return TicketPerfMessages.noActiveAnalysis();
         }
-        Component report = activeTracker.stopById(level.getServer(), activeSessionId);
-        clearActiveSession();
+        Component report = active.tracker().stopById(level.getServer(), dimension, active.sessionId());
+        removeActiveSession(dimension);
         return report;
     }
 
     public void tickSessions(MinecraftServer server) {
-        if (activeTracker == null) {
+        if (activeSessions.isEmpty()) {
             return;
         }
-        activeTracker.tickSessions(server);
-        if (!activeTracker.hasAnyActiveSession()) {
-            clearActiveSession();
+        singleTracker.tickSessions(server);
+        allGroupTracker.tickSessions(server);
+        if (activeSessions.reference2ObjectEntrySet()
+                .removeIf(entry -> !entry.getValue().tracker().hasActiveSession(entry.getKey()))) {
+            invalidateCache();
         }
     }
 
     public long resolveTrackSessionId(Level level, BlockPos pos) {
-        if (activeTracker == null) {
+        ActiveSession active = sessionFor(level);
+        if (active == null) {
             return -1L;
         }
-        return activeTracker.resolveTrackSessionId(level, pos);
+        return active.tracker().resolveTrackSessionId(level, pos);
+    }
+
+    public long resolveTrackSessionId(Level level, long chunkPos) {
+        ActiveSession active = sessionFor(level);
+        if (active == null) {
+            return -1L;
+        }
+        return active.tracker().resolveTrackSessionId(level, chunkPos);
     }
 
     public boolean hasActiveSession() {
-        return activeTracker != null && activeSessionId >= 0L;
+        return !activeSessions.isEmpty();
+    }
+
+    /**
+     * @return 指定维度当前会话 id，无会话时为 -1
+     */
+    public long activeSessionId(Level level) {
+        ActiveSession active = sessionFor(level);
+        return active == null ? -1L : active.sessionId();
     }
 
     public boolean hasActiveSession(ResourceKey<Level> dimension) {
-        return activeTracker != null
-                && activeSessionId >= 0L
-                && activeTracker.hasActiveSession(dimension);
+        return activeSessions.containsKey(dimension);
     }
 
     public void clearRuntimeState() {
         singleTracker.clearRuntimeState();
         allGroupTracker.clearRuntimeState();
-        activeTracker = null;
-        activeSessionId = -1L;
+        activeSessions.clear();
+        invalidateCache();
         nextSessionId = 1L;
     }
 
     public void onEntityTick(Level level,
-                             BlockPos pos,
-                             String type,
-                             String sourceId,
-                             String sourceLabel,
+                             Entity entity,
+                             long chunkPos,
                              long durationNanos,
-                             boolean isBlockEntity,
                              long sessionId) {
-        if (activeTracker == null || sessionId < 0L || sessionId != activeSessionId) {
+        ActiveSession active = sessionFor(level);
+        if (active == null || sessionId < 0L || sessionId != active.sessionId()) {
+            return;
+        }
+        active.tracker().onEntityTickById(level, entity, chunkPos, durationNanos, sessionId);
+    }
+
+    public int resolveBlockEntitySlot(Level level, TickingBlockEntity ticker, long sessionId) {
+        ActiveSession active = sessionFor(level);
+        if (active == null || sessionId < 0L || sessionId != active.sessionId()) {
+            return -1;
+        }
+        return active.tracker().resolveBlockEntitySlot(level, ticker, sessionId);
+    }
+
+    public void onBlockEntityTick(Level level, int slot, long durationNanos, long sessionId) {
+        ActiveSession active = sessionFor(level);
+        if (active == null || sessionId < 0L || sessionId != active.sessionId()) {
             return;
         }
-        activeTracker.onEntityTickById(level, pos, type, sourceId, sourceLabel, durationNanos, isBlockEntity, sessionId);
+        active.tracker().onBlockEntityTickById(level, slot, durationNanos, sessionId);
     }
 
-    public void onChunkTick(Level level, ChunkPos pos, long durationNanos, long sessionId) {
-        if (activeTracker == null || sessionId < 0L || sessionId != activeSessionId) {
+    public void onScheduledTick(Level level, Object type, long chunkPos, long durationNanos, long sessionId) {
+        ActiveSession active = sessionFor(level);
+        if (active == null || sessionId < 0L || sessionId != active.sessionId()) {
             return;
         }
-        activeTracker.onChunkTickById(level, pos, durationNanos, sessionId);
+        active.tracker().onScheduledTickById(level, type, chunkPos, durationNanos, sessionId);
     }
 
-    private void activateTrackerIfStarted(AnalyzeAbstractGroup<?> tracker, long sessionId) {
-        if (!tracker.hasAnyActiveSession()) {
+    public void onChunkSpawn(Level level, long chunkPos, long durationNanos, long sessionId) {
+        ActiveSession active = sessionFor(level);
+        if (active == null || sessionId < 0L || sessionId != active.sessionId()) {
             return;
         }
-        activeTracker = tracker;
-        activeSessionId = sessionId;
+        active.tracker().onChunkSpawnById(level, chunkPos, durationNanos, sessionId);
     }
 
-    private void clearActiveSession() {
-        activeTracker = null;
-        activeSessionId = -1L;
+    public void onChunkTick(Level level, ChunkPos pos, long durationNanos, long[] phaseNanos, long sessionId) {
+        ActiveSession active = sessionFor(level);
+        if (active == null || sessionId < 0L || sessionId != active.sessionId()) {
+            return;
+        }
+        active.tracker().onChunkTickById(level, pos, durationNanos, phaseNanos, sessionId);
+    }
+
+    private ActiveSession sessionFor(Level level) {
+        ResourceKey<Level> dimension = level.dimension();
+        if (dimension != cachedDimension) {
+            cachedDimension = dimension;
+            cachedSession = activeSessions.get(dimension);
+        }
+        return cachedSession;
+    }
+
+    private void activateTrackerIfStarted(AnalyzeAbstractGroup<?> tracker,
+                                          ResourceKey<Level> dimension,
+                                          long sessionId) {
+        if (!tracker.hasActiveSession(dimension)) {
+            return;
+        }
+        activeSessions.put(dimension, new ActiveSession(tracker, sessionId));
+        invalidateCache();
+    }
+
+    private void removeActiveSession(ResourceKey<Level> dimension) {
+        activeSessions.remove(dimension);
+        invalidateCache();
+    }
+
+    private void invalidateCache() {
+        cachedDimension = null;
+        cachedSession = null;
+    }
+
+    private record ActiveSession(AnalyzeAbstractGroup<?> tracker, long sessionId) {
     }
 
     public static AutoAnalysis tickAutoAnalysis(AutoAnalysis autoAnalysis,
@@ -143,6 +259,12 @@ public final class TicketPerfSessionController {
             return null;
         }
         Component report = stopFn.apply(level);
+        if (autoAnalysis.spikeCapture()) {
+            TicketPerfGroupOutput.dumpReport(dimension, "spike", report);
+            server.sendSystemMessage(report);
+            notifyAdmins(server, report);
+            return null;
+        }
         var player = autoAnalysis.playerId() == null ? null : server.getPlayerList().getPlayer(autoAnalysis.playerId());
         if (player != null) {
             player.sendSystemMessage(report);
@@ -152,6 +274,27 @@ public final class TicketPerfSessionController {
         return null;
     }
 
-    public record AutoAnalysis(long endAtNanos, UUID playerId) {
+    /**
+     * 发送给在线且有管理权限的玩家。
+     */
+    public static void notifyAdmins(MinecraftServer server, Component message) {
+        for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+            if (player.hasPermissions(ADMIN_PERMISSION_LEVEL)) {
+                player.sendSystemMessage(message);
+            }
+        }
+    }
+
+    /**
+     * @param spikeCapture 是否为卡顿自动捕获（报告写盘并广播给管理员）
+     */
+    public record AutoAnalysis(long endAtNanos, UUID playerId, boolean spikeCapture) {
+        public AutoAnalysis(long endAtNanos, UUID playerId) {
+            this(endAtNanos, playerId, false);
+        }
+
+        AutoAnalysis asSpikeCapture() {
+            return new AutoAnalysis(endAtNanos, playerId, true);
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.moepus.serverwarashi.modules.performance.analyze;
+
+import java.util.Arrays;
+
+/**
+ * 会话开始时测得的计时开销。
+ * {@code timerNanos} 是一对 {@code System.nanoTime()} 之间的空区间读数，每个样本都会被它抬高，报告前逐样本扣除；
+ * {@code perCallNanos} 是一次完整计时（两次读时钟 + 写入直方图）的墙钟成本，用于估算分析本身给 MSPT 增加的开销。
+ *
+ * @param timerNanos   空区间读数（中位数）
+ * @param perCallNanos 每次计时调用的总成本（中位数）
+ */
+record TimerCalibration(long timerNanos, long perCallNanos) {
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int BATCHES = 15;
+    private static final int BATCH_ITERATIONS = 1_000;
+
+    /**
+     * 在服务器线程上测量一次，耗时约 1ms 量级。取各批次均值的中位数，降低被调度打断的影响。
+     *
+     * @return 测量结果
+     */
+    static TimerCalibration measure() {
+        LatencyHistogram scratch = new LatencyHistogram();
+        long sink = 0L;
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            long end = System.nanoTime();
+            scratch.record(end - start);
+        }
+        long[] timerMeans = new long[BATCHES];
+        long[] callMeans = new long[BATCHES];
+        for (int batch = 0; batch < BATCHES; batch++) {
+            long timerTotal = 0L;
+            long batchStart = System.nanoTime();
+            for (int i = 0; i < BATCH_ITERATIONS; i++) {
+                long start = System.nanoTime();
+                long end = System.nanoTime();
+                long duration = end - start;
+                timerTotal += duration;
+                scratch.record(duration);
+            }
+            long batchEnd = System.nanoTime();
+            timerMeans[batch] = timerTotal / BATCH_ITERATIONS;
+            callMeans[batch] = (batchEnd - batchStart) / BATCH_ITERATIONS;
+            sink += scratch.count();
+        }
+        if (sink == Long.MIN_VALUE) {
+            // 防止测量循环被当作死代码消除
+            throw new IllegalStateException();
+        }
+        return new TimerCalibration(median(timerMeans), median(callMeans));
+    }
+
+    /**
+     * 扣除计时器自身读数后的样本耗时。
+     */
+    long compensate(long durationNanos) {
+        return Math.max(0L, durationNanos - timerNanos);
+    }
+
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
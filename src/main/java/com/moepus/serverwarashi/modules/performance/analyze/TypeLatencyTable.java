@@ -0,0 +1,153 @@
+package com.moepus.serverwarashi.modules.performance.analyze;
+
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.world.entity.EntityType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 会话内按来源类型划分的延迟直方图表。
+ * 所有类型共用一个整数 id 空间：0 固定为区块 tick，方块实体类型在分配槽位时注册，
+ * 实体类型与计划刻的方块 / 流体按引用在首次出现时注册。
+ */
+final class TypeLatencyTable {
+    static final int CHUNK_TYPE_ID = 0;
+
+    private static final String CATEGORY_BLOCK_ENTITY = "BE";
+    private static final String CATEGORY_ENTITY = "E";
+    private static final String CATEGORY_CHUNK = "C";
+    private static final String CATEGORY_SCHEDULED = "S";
+
+    private final Object2IntOpenHashMap<String> blockEntityTypeIds = new Object2IntOpenHashMap<>();
+    private final Reference2IntOpenHashMap<EntityType<?>> entityTypeIds = new Reference2IntOpenHashMap<>();
+    private final Reference2IntOpenHashMap<Object> scheduledTypeIds = new Reference2IntOpenHashMap<>();
+    private final List<String> categories = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<LatencyHistogram> histograms = new ArrayList<>();
+
+    TypeLatencyTable() {
+        blockEntityTypeIds.defaultReturnValue(-1);
+        entityTypeIds.defaultReturnValue(-1);
+        scheduledTypeIds.defaultReturnValue(-1);
+        register(CATEGORY_CHUNK, "chunk tick");
+    }
+
+    /**
+     * 注册方块实体类型并返回其 id，仅在首次为 ticker 分配槽位时调用。
+     */
+    int internBlockEntityType(String type) {
+        int typeId = blockEntityTypeIds.getInt(type);
+        if (typeId < 0) {
+            typeId = register(CATEGORY_BLOCK_ENTITY, type);
+            blockEntityTypeIds.put(type, typeId);
+        }
+        return typeId;
+    }
+
+    int typeCount() {
+        return names.size();
+    }
+
+    String typeName(int typeId) {
+        return names.get(typeId);
+    }
+
+    String typeCategory(int typeId) {
+        return categories.get(typeId);
+    }
+
+    void recordBlockEntity(int typeId, long durationNanos) {
+        histograms.get(typeId).record(durationNanos);
+    }
+
+    /**
+     * 记录一次实体 tick。
+     *
+     * @return 实体类型 id
+     */
+    int recordEntity(EntityType<?> type, long durationNanos) {
+        int typeId = entityTypeIds.getInt(type);
+        if (typeId < 0) {
+            typeId = register(CATEGORY_ENTITY, type.toString());
+            entityTypeIds.put(type, typeId);
+        }
+        histograms.get(typeId).record(durationNanos);
+        return typeId;
+    }
+
+    /**
+     * 记录一次计划刻。
+     *
+     * @param type 方块或流体
+     * @return 计划刻类型 id
+     */
+    int recordScheduled(Object type, long durationNanos) {
+        int typeId = scheduledTypeIds.getInt(type);
+        if (typeId < 0) {
+            typeId = register(CATEGORY_SCHEDULED, TicketPerfMessages.scheduledTypeName(type));
+            scheduledTypeIds.put(type, typeId);
+        }
+        histograms.get(typeId).record(durationNanos);
+        return typeId;
+    }
+
+    void recordChunk(long durationNanos) {
+        histograms.get(CHUNK_TYPE_ID).record(durationNanos);
+    }
+
+    Object2LongOpenHashMap<String> blockEntityTotalsByName() {
+        return totalsByName(CATEGORY_BLOCK_ENTITY);
+    }
+
+    Object2LongOpenHashMap<String> entityTotalsByName() {
+        return totalsByName(CATEGORY_ENTITY);
+    }
+
+    /**
+     * 导出所有有样本的类型的分位数，按总耗时降序。
+     */
+    List<TicketPerfMessages.TypeLatency> summarize() {
+        List<TicketPerfMessages.TypeLatency> rows = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            LatencyHistogram histogram = histograms.get(i);
+            if (histogram.count() == 0L) {
+                continue;
+            }
+            rows.add(new TicketPerfMessages.TypeLatency(
+                    categories.get(i),
+                    names.get(i),
+                    histogram.count(),
+                    histogram.totalNanos(),
+                    histogram.percentile(0.50),
+                    histogram.percentile(0.99),
+                    histogram.percentile(0.999),
+                    histogram.maxNanos()
+            ));
+        }
+        rows.sort(Comparator.comparingLong(TicketPerfMessages.TypeLatency::totalNanos).reversed());
+        return rows;
+    }
+
+    private Object2LongOpenHashMap<String> totalsByName(String category) {
+        Object2LongOpenHashMap<String> byName = new Object2LongOpenHashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            if (categories.get(i).equals(category)) {
+                byName.addTo(names.get(i), histograms.get(i).totalNanos());
+            }
+        }
+        return byName;
+    }
+
+    private int register(String category, String name) {
+        int typeId = names.size();
+        categories.add(category);
+        names.add(name);
+        histograms.add(new LatencyHistogram());
+        return typeId;
+    }
+}
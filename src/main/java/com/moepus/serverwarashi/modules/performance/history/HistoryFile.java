@@ -0,0 +1,290 @@
+package com.moepus.serverwarashi.modules.performance.history;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分组耗时历史的二进制文件格式，只追加写。
+ * 文件头为 magic + 版本号，其后是两类记录：
+ * <ul>
+ *     <li>KEY：varint id + varint 长度 + UTF-8 键名，键名首次出现时写一次，之后样本只引用 id；</li>
+ *     <li>SAMPLE：varint 键 id + 时间（Unix 分钟）+ 来源 + 合并样本数 + 四类耗时（毫秒/tick，float）。</li>
+ * </ul>
+ * 崩溃留下的半条尾记录在读取时忽略，打开时的压缩会重写整个文件把它去掉；压缩同时按年龄降采样。
+ */
+final class HistoryFile {
+    private static final int MAGIC = 0x57504831;
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 5;
+    private static final byte TAG_KEY = 1;
+    private static final byte TAG_SAMPLE = 2;
+    static final int MINUTES_PER_DAY = 24 * 60;
+    // 超过该天数的样本按小时合并
+    private static final int HOURLY_AFTER_DAYS = 2;
+    // 超过该天数的样本按天合并
+    private static final int DAILY_AFTER_DAYS = 14;
+
+    private HistoryFile() {
+    }
+
+    /**
+     * 读取整个文件。文件不存在时返回空内容；尾部不完整的记录被忽略。
+     *
+     * @param path 文件路径
+     * @return 文件内容
+     * @throws IOException 读取失败或文件头不匹配
+     */
+    static Contents read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new Contents(new ArrayList<>(), new ArrayList<>());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<String> keys = new ArrayList<>();
+        List<Sample> samples = new ArrayList<>();
+        if (buffer.remaining() < HEADER_BYTES) {
+            return new Contents(keys, samples);
+        }
+        if (buffer.getInt() != MAGIC || buffer.get() != VERSION) {
+            throw new IOException("Unrecognized history file " + path);
+        }
+        try {
+            while (buffer.hasRemaining()) {
+                byte tag = buffer.get();
+                if (tag == TAG_KEY) {
+                    int id = readVarInt(buffer);
+                    int length = readVarInt(buffer);
+                    if (length < 0 || length > buffer.remaining()) {
+                        break;
+                    }
+                    byte[] name = new byte[length];
+                    buffer.get(name);
+                    while (keys.size() <= id) {
+                        keys.add(null);
+                    }
+                    keys.set(id, new String(name, StandardCharsets.UTF_8));
+                } else if (tag == TAG_SAMPLE) {
+                    samples.add(new Sample(
+                            readVarInt(buffer),
+                            buffer.getInt(),
+                            buffer.get(),
+                            readVarInt(buffer),
+                            buffer.getFloat(),
+                            buffer.getFloat(),
+                            buffer.getFloat(),
+                            buffer.getFloat()
+                    ));
+                } else {
+                    break;
+                }
+            }
+        } catch (BufferUnderflowException ignored) {
+            // 半条尾记录
+        }
+        return new Contents(keys, samples);
+    }
+
+    /**
+     * 追加一批记录。新键名先在本批次内分配 id，并在同一批次里先于样本写出；
+     * 只有写入成功后才并入 {@code keyIds}，写入失败时下一批会重新写出这些键名。
+     */
+    static void append(Path path, Object2IntOpenHashMap<String> keyIds, List<PendingSample> batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(batch.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Object2IntOpenHashMap<String> newKeys = newKeyMap();
+        for (PendingSample pending : batch) {
+            int id = keyIds.getInt(pending.key());
+            if (id < 0) {
+                id = newKeys.getInt(pending.key());
+            }
+            if (id < 0) {
+                id = keyIds.size() + newKeys.size();
+                newKeys.put(pending.key(), id);
+                writeKey(out, id, pending.key());
+            }
+            writeSample(out, new Sample(id, pending.epochMinute(), pending.source(), 1,
+                    pending.beMspt(), pending.entityMspt(), pending.chunkMspt(), pending.scheduledMspt()));
+        }
+        out.flush();
+        Files.write(path, bytes.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        keyIds.putAll(newKeys);
+    }
+
+    /**
+     * 降采样并重写文件：超过保留期的样本丢弃，较旧的样本按小时或按天合并，只保留仍被引用的键名。
+     *
+     * @return 重写后的键名 -> id
+     */
+    static Object2IntOpenHashMap<String> compact(Path path,
+                                                 Contents contents,
+                                                 int nowMinute,
+                                                 int retentionDays) throws IOException {
+        int dropBefore = nowMinute - retentionDays * MINUTES_PER_DAY;
+        int dailyBefore = nowMinute - DAILY_AFTER_DAYS * MINUTES_PER_DAY;
+        int hourlyBefore = nowMinute - HOURLY_AFTER_DAYS * MINUTES_PER_DAY;
+        Map<BucketKey, Sample> buckets = new HashMap<>();
+        List<Sample> raw = new ArrayList<>();
+        for (Sample sample : contents.samples()) {
+            if (sample.epochMinute() < dropBefore || sample.keyId() >= contents.keys().size()
+                    || contents.keys().get(sample.keyId()) == null) {
+                continue;
+            }
+            int bucketMinutes;
+            if (sample.epochMinute() < dailyBefore) {
+                bucketMinutes = MINUTES_PER_DAY;
+            } else if (sample.epochMinute() < hourlyBefore) {
+                bucketMinutes = 60;
+            } else {
+                raw.add(sample);
+                continue;
+            }
+            int bucketStart = Math.floorDiv(sample.epochMinute(), bucketMinutes) * bucketMinutes;
+            buckets.merge(new BucketKey(sample.keyId(), bucketStart, sample.source()),
+                    sample.withMinute(bucketStart), Sample::merge);
+        }
+        List<Sample> kept = new ArrayList<>(buckets.values());
+        kept.addAll(raw);
+        kept.sort((a, b) -> Integer.compare(a.epochMinute(), b.epochMinute()));
+
+        Object2IntOpenHashMap<String> keyIds = newKeyMap();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES + kept.size() * 24);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.write(header());
+        for (Sample sample : kept) {
+            String key = contents.keys().get(sample.keyId());
+            int id = keyIds.getInt(key);
+            if (id < 0) {
+                id = keyIds.size();
+                keyIds.put(key, id);
+                writeKey(out, id, key);
+            }
+            writeSample(out, sample.withKeyId(id));
+        }
+        out.flush();
+        Files.createDirectories(path.getParent());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(temp, bytes.toByteArray());
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return keyIds;
+    }
+
+    static Object2IntOpenHashMap<String> newKeyMap() {
+        Object2IntOpenHashMap<String> keyIds = new Object2IntOpenHashMap<>();
+        keyIds.defaultReturnValue(-1);
+        return keyIds;
+    }
+
+    private static byte[] header() {
+        return ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).put(VERSION).array();
+    }
+
+    private static void writeKey(DataOutputStream out, int id, String key) throws IOException {
+        byte[] name = key.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(TAG_KEY);
+        writeVarInt(out, id);
+        writeVarInt(out, name.length);
+        out.write(name);
+    }
+
+    private static void writeSample(DataOutputStream out, Sample sample) throws IOException {
+        out.writeByte(TAG_SAMPLE);
+        writeVarInt(out, sample.keyId());
+        out.writeInt(sample.epochMinute());
+        out.writeByte(sample.source());
+        writeVarInt(out, sample.weight());
+        out.writeFloat(sample.beMspt());
+        out.writeFloat(sample.entityMspt());
+        out.writeFloat(sample.chunkMspt());
+        out.writeFloat(sample.scheduledMspt());
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+
+    /**
+     * 文件内容。
+     *
+     * @param keys    按 id 下标的键名
+     * @param samples 全部样本，按写入顺序
+     */
+    record Contents(List<String> keys, List<Sample> samples) {
+    }
+
+    /**
+     * 一条样本；{@code weight} 为合并进来的原始样本数，降采样时按它加权平均。
+     */
+    record Sample(int keyId,
+                  int epochMinute,
+                  byte source,
+                  int weight,
+                  float beMspt,
+                  float entityMspt,
+                  float chunkMspt,
+                  float scheduledMspt) {
+        float totalMspt() {
+            return beMspt + entityMspt + chunkMspt + scheduledMspt;
+        }
+
+        Sample withMinute(int minute) {
+            return new Sample(keyId, minute, source, weight, beMspt, entityMspt, chunkMspt, scheduledMspt);
+        }
+
+        Sample withKeyId(int id) {
+            return new Sample(id, epochMinute, source, weight, beMspt, entityMspt, chunkMspt, scheduledMspt);
+        }
+
+        static Sample merge(Sample a, Sample b) {
+            int weight = a.weight + b.weight;
+            return new Sample(a.keyId, a.epochMinute, a.source, weight,
+                    (a.beMspt * a.weight + b.beMspt * b.weight) / weight,
+                    (a.entityMspt * a.weight + b.entityMspt * b.weight) / weight,
+                    (a.chunkMspt * a.weight + b.chunkMspt * b.weight) / weight,
+                    (a.scheduledMspt * a.weight + b.scheduledMspt * b.weight) / weight);
+        }
+    }
+
+    /**
+     * 待写入的样本，键名尚未分配 id。
+     */
+    record PendingSample(String key,
+                         int epochMinute,
+                         byte source,
+                         float beMspt,
+                         float entityMspt,
+                         float chunkMspt,
+                         float scheduledMspt) {
+    }
+
+    private record BucketKey(int keyId, int bucketStart, byte source) {
+    }
+}
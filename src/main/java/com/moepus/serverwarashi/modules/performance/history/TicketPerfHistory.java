@@ -0,0 +1,276 @@
+package com.moepus.serverwarashi.modules.performance.history;
+
+import com.moepus.serverwarashi.common.jfr.GroupCostEvent;
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfFileWriter;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfWatchdogSnapshot;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.storage.LevelResource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 分组耗时历史：把每次会话、卡顿捕获与常驻采样的分组耗时写入存档目录下的二进制时间序列。
+ * 键为“维度|分组标签”，在文件内只写一次；旧数据在打开时及之后每天按年龄降采样。
+ * 服务器线程只组装样本，读写文件都交给 {@link TicketPerfFileWriter} 的写线程，
+ * {@code openedPath}、{@code keyIds} 与 {@code lastCompactMinute} 也只在该线程上访问。
+ */
+public final class TicketPerfHistory {
+    private static final String FILE_NAME = "serverwarashi_perf_history.bin";
+    // 低于该值（毫秒/tick）的分组不写入，避免空闲分组撑大文件
+    private static final float MIN_RECORD_MSPT = 0.01F;
+    private static final char KEY_SEPARATOR = '|';
+
+    private static volatile Path path;
+    // 写线程上打开（压缩）成功的文件；追加前核对，避免打开失败后写出没有文件头的文件
+    private static Path openedPath;
+    private static Object2IntOpenHashMap<String> keyIds = HistoryFile.newKeyMap();
+    private static int lastCompactMinute;
+
+    private TicketPerfHistory() {
+    }
+
+    /**
+     * 耗时数据的来源，按序号写入文件，只能在末尾追加。
+     */
+    public enum Source {
+        SESSION,
+        ALL_GROUPS,
+        SPIKE,
+        SAMPLER
+    }
+
+    /**
+     * 一个分组一次的耗时摘要（毫秒/tick）。
+     */
+    public record GroupCost(String label, double beMspt, double entityMspt, double chunkMspt, double scheduledMspt) {
+    }
+
+    // --- 生命周期 ---
+
+    /**
+     * 服务器启动时打开历史文件并做一次降采样，顺带去掉崩溃留下的半条记录。
+     *
+     * @param server 当前服务器
+     */
+    public static void open(MinecraftServer server) {
+        Path target = server.getWorldPath(LevelResource.ROOT).resolve("data").resolve(FILE_NAME);
+        int retentionDays = TicketPerfConfig.historyRetentionDays();
+        path = target;
+        TicketPerfFileWriter.submit(() -> {
+            keyIds = HistoryFile.newKeyMap();
+            openedPath = null;
+            try {
+                compact(target, HistoryFile.read(target), retentionDays);
+                openedPath = target;
+            } catch (IOException e) {
+                if (path == target) {
+                    path = null;
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 清空运行时状态，服务器停止时调用。
+     */
+    public static void close() {
+        path = null;
+        TicketPerfFileWriter.submit(() -> {
+            keyIds = HistoryFile.newKeyMap();
+            openedPath = null;
+            lastCompactMinute = 0;
+            return null;
+        });
+    }
+
+    /**
+     * 按配置周期把常驻采样器的分组估计写入历史。
+     *
+     * @param server 当前服务器
+     */
+    public static void onServerTickPost(MinecraftServer server) {
+        if (path == null || !TicketPerfConfig.samplerEnabled()
+                || server.getTickCount() % TicketPerfConfig.historySamplerIntervalTicks() != 0) {
+            return;
+        }
+        for (ServerLevel level : server.getAllLevels()) {
+            TicketPerfSampler.SamplerReport report = TicketPerfSampler.report(level.dimension(), Integer.MAX_VALUE);
+            List<GroupCost> groups = new ArrayList<>(report.groups().size());
+            for (TicketPerfSampler.GroupCost group : report.groups()) {
+                groups.add(new GroupCost(
+                        group.owner().toString(),
+                        group.beNanosPerTick() / 1_000_000.0,
+                        group.entityNanosPerTick() / 1_000_000.0,
+                        group.chunkNanosPerTick() / 1_000_000.0,
+                        group.scheduledNanosPerTick() / 1_000_000.0
+                ));
+            }
+            record(level.dimension(), Source.SAMPLER, groups);
+        }
+    }
+
+    // --- 写入 ---
+
+    /**
+     * 追加一批分组耗时，实际写入在写线程上进行。历史未启用或文件不可用时直接返回。
+     * 分析得到的耗时同时交给看门狗快照作为最近已知耗时，并在 JFR 录制时提交耗时事件。
+     *
+     * @param dimension 维度
+     * @param source    来源
+     * @param groups    分组耗时
+     */
+    public static void record(ResourceKey<Level> dimension, Source source, List<GroupCost> groups) {
+        if (source != Source.SAMPLER) {
+            for (GroupCost group : groups) {
+                TicketPerfWatchdogSnapshot.rememberCost(dimension, group.label(),
+                        group.beMspt() + group.entityMspt() + group.chunkMspt() + group.scheduledMspt());
+                commitCostEvent(dimension, source, group);
+            }
+        }
+        Path target = path;
+        if (target == null || !TicketPerfConfig.historyEnabled() || groups.isEmpty()) {
+            return;
+        }
+        int nowMinute = nowMinute();
+        List<HistoryFile.PendingSample> batch = new ArrayList<>(groups.size());
+        for (GroupCost group : groups) {
+            float total = (float) (group.beMspt() + group.entityMspt() + group.chunkMspt() + group.scheduledMspt());
+            if (total < MIN_RECORD_MSPT) {
+                continue;
+            }
+            batch.add(new HistoryFile.PendingSample(
+                    key(dimension, group.label()),
+                    nowMinute,
+                    (byte) source.ordinal(),
+                    (float) group.beMspt(),
+                    (float) group.entityMspt(),
+                    (float) group.chunkMspt(),
+                    (float) group.scheduledMspt()
+            ));
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        int retentionDays = TicketPerfConfig.historyRetentionDays();
+        TicketPerfFileWriter.submit(() -> {
+            if (target != openedPath) {
+                return null;
+            }
+            if (nowMinute - lastCompactMinute >= HistoryFile.MINUTES_PER_DAY) {
+                compact(target, HistoryFile.read(target), retentionDays);
+            }
+            HistoryFile.append(target, keyIds, batch);
+            return null;
+        });
+    }
+
+    // --- 查询 ---
+
+    /**
+     * 查询当前维度中标签包含指定文本的分组的历史，按天汇总。
+     * 文件在写线程上读取，排在之前提交的追加之后。
+     *
+     * @param dimension 维度
+     * @param query     分组名或标签的一部分，忽略大小写
+     * @param days      回看天数
+     * @return 报告
+     */
+    public static CompletableFuture<Component> query(ResourceKey<Level> dimension, String query, int days) {
+        Path target = path;
+        if (target == null) {
+            return CompletableFuture.completedFuture(TicketPerfMessages.historyUnavailable());
+        }
+        return TicketPerfFileWriter.submit(() -> {
+            try {
+                return summarize(HistoryFile.read(target), dimension, query, days);
+            } catch (IOException e) {
+                return TicketPerfMessages.historyUnavailable();
+            }
+        });
+    }
+
+    private static Component summarize(HistoryFile.Contents contents,
+                                       ResourceKey<Level> dimension,
+                                       String query,
+                                       int days) {
+        String prefix = dimension.location().toString() + KEY_SEPARATOR;
+        String needle = query.toLowerCase(Locale.ROOT);
+        int nowMinute = nowMinute();
+        int todayIndex = Math.floorDiv(nowMinute, HistoryFile.MINUTES_PER_DAY);
+        int firstDay = todayIndex - days + 1;
+        Map<Integer, double[][]> perKey = new HashMap<>();
+        for (HistoryFile.Sample sample : contents.samples()) {
+            int day = Math.floorDiv(sample.epochMinute(), HistoryFile.MINUTES_PER_DAY);
+            if (day < firstDay || day > todayIndex || sample.keyId() >= contents.keys().size()) {
+                continue;
+            }
+            String key = contents.keys().get(sample.keyId());
+            if (key == null || !key.startsWith(prefix)
+                    || !key.substring(prefix.length()).toLowerCase(Locale.ROOT).contains(needle)) {
+                continue;
+            }
+            // [天][0] 为加权耗时和，[天][1] 为权重和
+            double[][] buckets = perKey.computeIfAbsent(sample.keyId(), ignored -> new double[days][2]);
+            buckets[day - firstDay][0] += (double) sample.totalMspt() * sample.weight();
+            buckets[day - firstDay][1] += sample.weight();
+        }
+        List<TicketPerfMessages.HistorySeries> series = new ArrayList<>(perKey.size());
+        for (Map.Entry<Integer, double[][]> entry : perKey.entrySet()) {
+            double[][] buckets = entry.getValue();
+            double[] dailyMspt = new double[days];
+            int[] dailySamples = new int[days];
+            for (int i = 0; i < days; i++) {
+                dailySamples[i] = (int) buckets[i][1];
+                dailyMspt[i] = buckets[i][1] == 0.0 ? Double.NaN : buckets[i][0] / buckets[i][1];
+            }
+            String label = contents.keys().get(entry.getKey()).substring(prefix.length());
+            series.add(new TicketPerfMessages.HistorySeries(label, firstDay, dailyMspt, dailySamples));
+        }
+        return TicketPerfMessages.buildHistoryReport(dimension, query, series);
+    }
+
+    private static void commitCostEvent(ResourceKey<Level> dimension, Source source, GroupCost group) {
+        GroupCostEvent event = new GroupCostEvent();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.dimension = dimension.location().toString();
+        event.group = group.label();
+        event.source = source.name().toLowerCase(Locale.ROOT);
+        event.blockEntityNanos = (long) (group.beMspt() * 1_000_000.0);
+        event.entityNanos = (long) (group.entityMspt() * 1_000_000.0);
+        event.chunkNanos = (long) (group.chunkMspt() * 1_000_000.0);
+        event.scheduledNanos = (long) (group.scheduledMspt() * 1_000_000.0);
+        event.commit();
+    }
+
+    private static void compact(Path target, HistoryFile.Contents contents, int retentionDays) throws IOException {
+        int nowMinute = nowMinute();
+        keyIds = HistoryFile.compact(target, contents, nowMinute, retentionDays);
+        lastCompactMinute = nowMinute;
+    }
+
+    private static String key(ResourceKey<Level> dimension, String label) {
+        return dimension.location().toString() + KEY_SEPARATOR + label;
+    }
+
+    private static int nowMinute() {
+        return (int) (System.currentTimeMillis() / 60_000L);
+    }
+}
@@ -0,0 +1,150 @@
+package com.moepus.serverwarashi.modules.performance.report;
+
+import net.minecraft.network.chat.Component;
+import net.minecraft.server.MinecraftServer;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ChunkPerf 文件导出的后台写线程。
+ * 调用方在服务器线程上只做一次不可变（尽量是原始数组）的快照，格式化与写盘都在这里完成；
+ * 单线程执行，同一文件的追加与重写天然有序。完成后可回到服务器线程在聊天栏报告结果。
+ */
+public final class TicketPerfFileWriter {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Serverwarashi-FileWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TicketPerfFileWriter() {
+    }
+
+    /**
+     * 流式写入文本内容。
+     */
+    @FunctionalInterface
+    public interface TextBody {
+        void write(Writer out) throws IOException;
+    }
+
+    /**
+     * 在写线程上执行的 IO 任务。
+     */
+    @FunctionalInterface
+    public interface IoTask<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * 提交任务到写线程。
+     *
+     * @param task 任务
+     * @return 任务结果
+     */
+    public static <T> CompletableFuture<T> submit(IoTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        EXECUTOR.execute(() -> {
+            try {
+                future.complete(task.run());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 等待此前提交的任务全部执行完。写线程是守护线程，服务器停止时需先排空，
+     * 否则排队中的写入会随 JVM 退出丢失。
+     *
+     * @param timeoutMillis 最长等待时间
+     * @return 是否在超时前排空
+     */
+    public static boolean flush(long timeoutMillis) {
+        try {
+            submit(() -> null).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 在写线程上流式写出一个文本文件。
+     *
+     * @param path 目标路径，压缩时追加 {@code .gz}
+     * @param gzip 是否 gzip 压缩，由调用方在服务器线程读取配置
+     * @param body 写入内容
+     * @return 实际写出的路径
+     */
+    public static CompletableFuture<Path> writeText(Path path, boolean gzip, TextBody body) {
+        return submit(() -> {
+            Path target = textPath(path, gzip);
+            try (Writer out = openText(target, gzip)) {
+                body.write(out);
+            }
+            return target;
+        });
+    }
+
+    /**
+     * 写完后回到服务器线程，把结果或失败原因交给 {@code feedback}。
+     *
+     * @param future   写入任务
+     * @param server   当前服务器
+     * @param feedback 结果接收方，为 null 时不报告
+     */
+    public static void reportTo(CompletableFuture<Path> future, MinecraftServer server, Consumer<Component> feedback) {
+        if (feedback == null) {
+            return;
+        }
+        deliver(future.handle((path, error) -> error == null
+                ? TicketPerfMessages.fileWritten(path)
+                : TicketPerfMessages.fileWriteFailed(error)), server, feedback);
+    }
+
+    /**
+     * 在服务器线程上交付后台生成的消息。
+     *
+     * @param future   后台任务
+     * @param server   当前服务器
+     * @param feedback 消息接收方
+     */
+    public static void deliver(CompletableFuture<Component> future, MinecraftServer server, Consumer<Component> feedback) {
+        future.whenComplete((message, error) -> server.execute(() ->
+                feedback.accept(error == null ? message : TicketPerfMessages.fileWriteFailed(error))));
+    }
+
+    static Path textPath(Path path, boolean gzip) {
+        return gzip ? path.resolveSibling(path.getFileName() + ".gz") : path;
+    }
+
+    static Writer openText(Path target, boolean gzip) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        OutputStream stream = Files.newOutputStream(target);
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, BUFFER_BYTES);
+        }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_BYTES);
+    }
+}
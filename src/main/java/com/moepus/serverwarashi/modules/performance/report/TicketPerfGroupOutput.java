@@ -2,21 +2,23 @@ package com.moepus.serverwarashi.modules.performance.report;
 
 import com.moepus.serverwarashi.common.group.ChunkGroupService;
 import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
-import net.minecraft.core.BlockPos;
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import net.minecraft.core.SectionPos;
 import net.minecraft.network.chat.Component;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.BufferedWriter;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * ChunkPerf 分组展示视图。
@@ -25,41 +27,101 @@ public final class TicketPerfGroupOutput {
     private TicketPerfGroupOutput() {
     }
 
-    private static void dumpToCsv(@NotNull HashMap<Long, ChunkGroupSnapshot.ChunkLoadInfo> chunkLoadInfoMap) {
-        Path logDir = Paths.get("chunk_load");
-        String timestamp = LocalDateTime.now().toString().replace(":", "-").replace(".", "-");
-        Path csvPath = logDir.resolve("chunk_load_info_" + timestamp + ".csv");
-        try {
-            Files.createDirectories(logDir);
-            try (BufferedWriter writer = Files.newBufferedWriter(csvPath)) {
-                writer.write("chunk_x,chunk_z,block_x,block_y,block_z,blockEntityCount,entityCount");
-                writer.newLine();
-                for (Map.Entry<Long, ChunkGroupSnapshot.ChunkLoadInfo> entry : chunkLoadInfoMap.entrySet()) {
-                    ChunkPos chunkPos = new ChunkPos(entry.getKey());
-                    BlockPos blockPos = chunkPos.getWorldPosition();
-                    ChunkGroupSnapshot.ChunkLoadInfo info = entry.getValue();
-                    writer.write(chunkPos.x + "," + chunkPos.z + "," + blockPos.getX() + ",0," + blockPos.getZ() + ","
-                            + info.blockEntityCount() + "," + info.entityCount());
-                    writer.newLine();
-                }
+    private static void dumpToCsv(@NotNull HashMap<Long, ChunkGroupSnapshot.ChunkLoadInfo> chunkLoadInfoMap,
+                                  MinecraftServer server,
+                                  Consumer<Component> feedback) {
+        // 服务器线程上只拷成原始数组，格式化与写盘交给写线程
+        int size = chunkLoadInfoMap.size();
+        long[] chunks = new long[size];
+        int[] blockEntityCounts = new int[size];
+        int[] entityCounts = new int[size];
+        int i = 0;
+        for (Map.Entry<Long, ChunkGroupSnapshot.ChunkLoadInfo> entry : chunkLoadInfoMap.entrySet()) {
+            chunks[i] = entry.getKey();
+            blockEntityCounts[i] = entry.getValue().blockEntityCount();
+            entityCounts[i] = entry.getValue().entityCount();
+            i++;
+        }
+        Path csvPath = Paths.get("chunk_load").resolve("chunk_load_info_" + timestamp() + ".csv");
+        TicketPerfFileWriter.reportTo(TicketPerfFileWriter.writeText(csvPath, TicketPerfConfig.dumpGzip(), writer -> {
+            writer.write("chunk_x,chunk_z,block_x,block_y,block_z,blockEntityCount,entityCount\n");
+            for (int row = 0; row < chunks.length; row++) {
+                int x = ChunkPos.getX(chunks[row]);
+                int z = ChunkPos.getZ(chunks[row]);
+                writer.write(Integer.toString(x));
+                writer.write(',');
+                writer.write(Integer.toString(z));
+                writer.write(',');
+                writer.write(Integer.toString(SectionPos.sectionToBlockCoord(x)));
+                writer.write(",0,");
+                writer.write(Integer.toString(SectionPos.sectionToBlockCoord(z)));
+                writer.write(',');
+                writer.write(Integer.toString(blockEntityCounts[row]));
+                writer.write(',');
+                writer.write(Integer.toString(entityCounts[row]));
+                writer.write('\n');
             }
-        } catch (IOException ignored) {
+        }), server, feedback);
+    }
+
+    /**
+     * 将会话的类型延迟分位数导出为 CSV（毫秒），在写线程上完成。
+     */
+    public static void dumpLatencyCsv(ResourceKey<Level> dimension, List<TicketPerfMessages.TypeLatency> latencies) {
+        if (latencies.isEmpty()) {
+            return;
         }
+        List<TicketPerfMessages.TypeLatency> rows = List.copyOf(latencies);
+        String dimensionName = dimension.location().toString();
+        Path csvPath = Paths.get("chunk_load").resolve("latency_" + timestamp() + ".csv");
+        TicketPerfFileWriter.writeText(csvPath, TicketPerfConfig.dumpGzip(), writer -> {
+            writer.write("dimension,category,type,count,total_ms,p50_ms,p99_ms,p999_ms,max_ms\n");
+            for (TicketPerfMessages.TypeLatency latency : rows) {
+                writer.write(dimensionName + "," + latency.category() + "," + latency.type() + ","
+                        + latency.count() + ","
+                        + latency.totalNanos() / 1_000_000.0 + ","
+                        + latency.p50Nanos() / 1_000_000.0 + ","
+                        + latency.p99Nanos() / 1_000_000.0 + ","
+                        + latency.p999Nanos() / 1_000_000.0 + ","
+                        + latency.maxNanos() / 1_000_000.0);
+                writer.write('\n');
+            }
+        });
+    }
+
+    /**
+     * 将报告纯文本写入 {@code chunk_load/<prefix>_<维度>_<时间>.txt}。
+     * 纯文本在服务器线程上取出，写盘在写线程上完成。
+     */
+    public static void dumpReport(ResourceKey<Level> dimension, String prefix, Component report) {
+        String text = report.getString();
+        String dimensionName = dimension.location().toString().replace(":", "_").replace("/", "_");
+        Path reportPath = Paths.get("chunk_load").resolve(prefix + "_" + dimensionName + "_" + timestamp() + ".txt");
+        TicketPerfFileWriter.writeText(reportPath, TicketPerfConfig.dumpGzip(), writer -> writer.write(text));
+    }
+
+    private static String timestamp() {
+        return LocalDateTime.now().toString().replace(":", "-").replace(".", "-");
     }
 
     /**
-     * 列出分组并写入缓存快照（指定排序）。
+     * 列出分组（指定排序）；导出 CSV 时强制刷新快照，否则复用未过期的缓存快照。
+     *
+     * @param feedback CSV 写完后的结果提示，可为 null
      */
     public static Component listGroups(ServerLevel level,
                                        ChunkGroupSnapshot.PauseMode pauseMode,
                                        String header,
                                        ChunkGroupSnapshot.SortMode sortMode,
                                        boolean showActions,
-                                       boolean saveCsv) {
-        ChunkGroupSnapshot.SnapshotData snapshot = ChunkGroupService.refreshSnapshot(level, pauseMode);
+                                       boolean saveCsv,
+                                       Consumer<Component> feedback) {
+        ChunkGroupSnapshot.SnapshotData snapshot = saveCsv
+                ? ChunkGroupService.refreshSnapshot(level, pauseMode)
+                : ChunkGroupService.snapshot(level, pauseMode);
         List<ChunkGroupSnapshot.ChunkGroupEntry> groups = snapshot.groups();
         if (saveCsv && !snapshot.chunkLoadInfoMap().isEmpty()) {
-            dumpToCsv(snapshot.chunkLoadInfoMap());
+            dumpToCsv(snapshot.chunkLoadInfoMap(), level.getServer(), feedback);
         }
         return TicketPerfMessages.formatOwnerStatsToComponent(
                 header,
@@ -0,0 +1,185 @@
+package com.moepus.serverwarashi.modules.performance.report;
+
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 区块耗时热力图导出：CSV 矩阵 + PNG。
+ * 服务器线程只把耗时表拷成两个数组，栅格化、着色与写盘都在 {@link TicketPerfFileWriter} 的写线程上完成。
+ * CSV 按 {@code chunkperf_dump_gzip} 压缩，PNG 本身已压缩，不再处理。
+ * 范围超过 {@link #MAX_GRID_CELLS} 时按整数倍合并相邻区块，单元格内耗时相加。
+ */
+public final class TicketPerfHeatmap {
+    // 单边最多的栅格数
+    private static final int MAX_GRID_CELLS = 512;
+    // PNG 单边目标像素数，小范围时放大每个单元格
+    private static final int TARGET_IMAGE_PIXELS = 512;
+
+    private TicketPerfHeatmap() {
+    }
+
+    /**
+     * 在后台导出 {@code chunk_load/heatmap_<prefix>_<维度>_<时间>.csv/.png}。
+     *
+     * @param dimension       维度
+     * @param prefix          文件名前缀
+     * @param chunkNanos      区块 -> 会话内累计耗时（纳秒），调用后可继续修改
+     * @param serverTickCount 会话经过的服务器 tick 数
+     */
+    public static void exportAsync(ResourceKey<Level> dimension,
+                                   String prefix,
+                                   Long2LongOpenHashMap chunkNanos,
+                                   long serverTickCount) {
+        if (chunkNanos.isEmpty() || serverTickCount <= 0L) {
+            return;
+        }
+        long[] chunks = new long[chunkNanos.size()];
+        long[] nanos = new long[chunks.length];
+        int i = 0;
+        for (Long2LongMap.Entry entry : chunkNanos.long2LongEntrySet()) {
+            chunks[i] = entry.getLongKey();
+            nanos[i] = entry.getLongValue();
+            i++;
+        }
+        String timestamp = LocalDateTime.now().toString().replace(":", "-").replace(".", "-");
+        String dimensionName = dimension.location().toString().replace(":", "_").replace("/", "_");
+        String baseName = "heatmap_" + prefix + "_" + dimensionName + "_" + timestamp;
+        boolean gzip = TicketPerfConfig.dumpGzip();
+        TicketPerfFileWriter.submit(() -> {
+            export(baseName, chunks, nanos, serverTickCount, gzip);
+            return null;
+        });
+    }
+
+    private static void export(String baseName,
+                               long[] chunks,
+                               long[] nanos,
+                               long serverTickCount,
+                               boolean gzip) throws IOException {
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (long chunk : chunks) {
+            int x = ChunkPos.getX(chunk);
+            int z = ChunkPos.getZ(chunk);
+            minX = Math.min(minX, x);
+            minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x);
+            maxZ = Math.max(maxZ, z);
+        }
+        long extent = Math.max((long) maxX - minX + 1, (long) maxZ - minZ + 1);
+        int cellChunks = (int) ((extent + MAX_GRID_CELLS - 1) / MAX_GRID_CELLS);
+        int width = (int) (((long) maxX - minX) / cellChunks + 1);
+        int height = (int) (((long) maxZ - minZ) / cellChunks + 1);
+
+        // 每个单元格的 ms/tick，NaN 表示没有被计时的区块
+        double[] grid = new double[width * height];
+        Arrays.fill(grid, Double.NaN);
+        double maxMspt = 0.0;
+        for (int i = 0; i < chunks.length; i++) {
+            int cx = (int) (((long) ChunkPos.getX(chunks[i]) - minX) / cellChunks);
+            int cz = (int) (((long) ChunkPos.getZ(chunks[i]) - minZ) / cellChunks);
+            int index = cz * width + cx;
+            double mspt = nanos[i] / 1_000_000.0 / serverTickCount;
+            grid[index] = Double.isNaN(grid[index]) ? mspt : grid[index] + mspt;
+            maxMspt = Math.max(maxMspt, grid[index]);
+        }
+
+        Path logDir = Paths.get("chunk_load");
+        Path csvPath = TicketPerfFileWriter.textPath(logDir.resolve(baseName + ".csv"), gzip);
+        try (Writer writer = TicketPerfFileWriter.openText(csvPath, gzip)) {
+            writeCsv(writer, grid, width, height, minX, minZ, cellChunks);
+        }
+        writePng(logDir.resolve(baseName + ".png"), grid, width, height, maxMspt);
+    }
+
+    /**
+     * 首行为各列单元格起点的区块 x，首列为各行起点的区块 z，其余为 ms/tick，空单元格留空。
+     */
+    private static void writeCsv(Writer writer,
+                                 double[] grid,
+                                 int width,
+                                 int height,
+                                 int minX,
+                                 int minZ,
+                                 int cellChunks) throws IOException {
+        StringBuilder line = new StringBuilder("chunk_z\\chunk_x");
+        for (int x = 0; x < width; x++) {
+            line.append(',').append((long) minX + (long) x * cellChunks);
+        }
+        writer.write(line.toString());
+        writer.write('\n');
+        for (int z = 0; z < height; z++) {
+            line.setLength(0);
+            line.append((long) minZ + (long) z * cellChunks);
+            for (int x = 0; x < width; x++) {
+                line.append(',');
+                double value = grid[z * width + x];
+                if (!Double.isNaN(value)) {
+                    line.append(String.format(Locale.ROOT, "%.4f", value));
+                }
+            }
+            writer.write(line.toString());
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * 按对数刻度着色：最低为深蓝，经红到最高的亮黄；没有数据的单元格为黑色。北（-z）在上。
+     */
+    private static void writePng(Path path, double[] grid, int width, int height, double maxMspt) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        int scale = Math.max(1, TARGET_IMAGE_PIXELS / Math.max(width, height));
+        BufferedImage image = new BufferedImage(width * scale, height * scale, BufferedImage.TYPE_INT_RGB);
+        double logMax = Math.log1p(maxMspt * 1000.0);
+        for (int z = 0; z < height; z++) {
+            for (int x = 0; x < width; x++) {
+                double value = grid[z * width + x];
+                int rgb = Double.isNaN(value)
+                        ? 0x000000
+                        : heatColor(logMax <= 0.0 ? 0.0 : Math.log1p(value * 1000.0) / logMax);
+                for (int py = 0; py < scale; py++) {
+                    for (int px = 0; px < scale; px++) {
+                        image.setRGB(x * scale + px, z * scale + py, rgb);
+                    }
+                }
+            }
+        }
+        ImageIO.write(image, "png", path.toFile());
+    }
+
+    private static int heatColor(double t) {
+        t = Math.max(0.0, Math.min(1.0, t));
+        int r;
+        int g;
+        int b;
+        if (t < 0.5) {
+            double k = t / 0.5;
+            r = (int) (40 + 215 * k);
+            g = 0;
+            b = (int) (140 * (1.0 - k));
+        } else {
+            double k = (t - 0.5) / 0.5;
+            r = 255;
+            g = (int) (230 * k);
+            b = 0;
+        }
+        return (r << 16) | (g << 8) | b;
+    }
+}
@@ -2,10 +2,13 @@ package com.moepus.serverwarashi.modules.performance.report;
 
 import com.moepus.serverwarashi.common.ticket.TicketOwner;
 import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.modules.performance.ChunkTickPhase;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
 import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
 import net.minecraft.ChatFormatting;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.registries.BuiltInRegistries;
 import net.minecraft.network.chat.ClickEvent;
 import net.minecraft.network.chat.Component;
 import net.minecraft.network.chat.HoverEvent;
@@ -14,8 +17,12 @@ import net.minecraft.network.chat.Style;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.material.Fluid;
 
+import java.nio.file.Path;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
@@ -26,7 +33,17 @@ import java.util.Map;
  */
 public final class TicketPerfMessages {
     //spike 报告过滤阈值(即异常实体过滤阈值,0.05 ms)
-    private static final long SPIKE_MIN_NANOS = 50_000L;
+    public static final long SPIKE_MIN_NANOS = 50_000L;
+    //spike 报告最多展示的来源数
+    public static final int SPIKE_REPORT_LIMIT = 5;
+    //延迟分位数报告最多展示的类型数（按总耗时排序）
+    private static final int LATENCY_REPORT_LIMIT = 10;
+    //区块 tick 子阶段报告最多展示的分组数
+    private static final int CHUNK_PHASE_REPORT_LIMIT = 10;
+    //历史报告最多展示的分组数
+    private static final int HISTORY_REPORT_LIMIT = 5;
+    //卡顿采样报告最多展示的分组数
+    private static final int HANG_REPORT_LIMIT = 5;
 
     private TicketPerfMessages() {
     }
@@ -64,7 +81,7 @@ public final class TicketPerfMessages {
      * 已有分析在运行时的提示。
      */
     public static Component analysisAlreadyRunning() {
-        return Component.literal("Another perf analysis is already running.");
+        return Component.literal("Another perf analysis is already running in this dimension.");
     }
 
     /**
@@ -82,6 +99,54 @@ public final class TicketPerfMessages {
         return Component.literal("No ticket group at (" + x + ", " + y + ", " + z + ").");
     }
 
+    /**
+     * 卡顿自动捕获开始时发给管理员的提示。
+     */
+    public static Component spikeCaptureStarted(int ticks,
+                                                double averageMspt,
+                                                int captureSeconds,
+                                                List<ResourceKey<Level>> dimensions) {
+        StringBuilder names = new StringBuilder();
+        for (ResourceKey<Level> dimension : dimensions) {
+            if (!names.isEmpty()) {
+                names.append(", ");
+            }
+            names.append(dimension.location());
+        }
+        return Component.literal(String.format("Lag spike: %d ticks averaging %.1fms, capturing %ds in %s.",
+                        ticks, averageMspt, captureSeconds, names))
+                .withStyle(ChatFormatting.GOLD);
+    }
+
+    /**
+     * 区域分析范围超过上限时的提示。
+     */
+    public static Component regionTooLarge(long chunkCount, int maxChunks) {
+        return Component.literal("Region too large: " + chunkCount + " chunks (max " + maxChunks + ").");
+    }
+
+    /**
+     * 历史文件不可用时的提示。
+     */
+    public static Component historyUnavailable() {
+        return Component.literal("Cost history is unavailable.");
+    }
+
+    /**
+     * 后台导出完成时的提示。
+     */
+    public static Component fileWritten(Path path) {
+        return Component.literal("Written " + path).withStyle(ChatFormatting.GRAY);
+    }
+
+    /**
+     * 后台导出失败时的提示。
+     */
+    public static Component fileWriteFailed(Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        return Component.literal("File export failed: " + cause).withStyle(ChatFormatting.RED);
+    }
+
     /**
      * 会话开始时的提示。
      */
@@ -159,7 +224,7 @@ public final class TicketPerfMessages {
             TicketOwner<?> owner = entry.owner();
             ChunkGroupSnapshot.OwnerStats stats = entry.stats();
             MutableComponent line = Component.empty()
-                    .append(owner.asComponent())
+                    .append(groupComponent(owner, entry.memberCount()))
                     .append(Component.literal(" ").withStyle(ChatFormatting.DARK_GRAY))
                     .append(Component.literal("G" + i + ": ").withStyle(ChatFormatting.GRAY))
                     .append(Component.literal("C=" + stats.chunkCount() + " ").withStyle(ChatFormatting.GRAY))
@@ -190,6 +255,18 @@ public final class TicketPerfMessages {
         return root;
     }
 
+    /**
+     * 分组显示组件：owner 组件，聚类合并的基地额外附加成员数。
+     */
+    public static MutableComponent groupComponent(TicketOwner<?> owner, int memberCount) {
+        MutableComponent component = Component.empty().append(owner.asComponent());
+        if (memberCount > 1) {
+            component = component.append(Component.literal(" (+" + (memberCount - 1) + ")")
+                    .withStyle(ChatFormatting.DARK_AQUA));
+        }
+        return component;
+    }
+
     private static BlockPos firstChunkAnchor(ChunkGroupSnapshot.ChunkGroupEntry entry) {
         var iterator = entry.chunks().iterator();
         if (!iterator.hasNext()) {
@@ -203,6 +280,9 @@ public final class TicketPerfMessages {
      */
     public static MutableComponent buildGroupMsptReport(ResourceKey<Level> dimension,
                                                         List<GroupMsptEntry> entries,
+                                                        List<TypeLatency> latencies,
+                                                        List<WorstTick> worstTicks,
+                                                        AnalysisOverhead overhead,
                                                         long serverTickCount,
                                                         Duration elapsed) {
         double totalReportedMspt = 0.0;
@@ -227,7 +307,7 @@ public final class TicketPerfMessages {
             }
             totalReportedMspt += entryMspt;
             MutableComponent line = Component.empty()
-                    .append(entry.owner().asComponent())
+                    .append(groupComponent(entry.owner(), entry.memberCount()))
                     .append(Component.literal(" ").withStyle(ChatFormatting.DARK_GRAY))
                     .append(Component.literal("G" + displayIndex++ + ": ").withStyle(ChatFormatting.GRAY))
                     .append(Component.literal(String.format("C=%d, BE=%d, E=%d",
@@ -243,6 +323,165 @@ public final class TicketPerfMessages {
         }
         root = root.append(Component.literal(String.format("Reported total mspt=%.2f\n", totalReportedMspt))
                 .withStyle(ChatFormatting.GOLD));
+        root = root.append(overheadLine(overhead, serverTickCount));
+        root = appendCollapsedDetailSection(
+                root,
+                "chunk tick phases",
+                buildGroupChunkPhaseLines(entries, serverTickCount),
+                ChatFormatting.BLUE
+        );
+        root = appendCollapsedDetailSection(
+                root,
+                "worst ticks",
+                buildWorstTickLines(worstTicks),
+                ChatFormatting.RED
+        );
+        return appendCollapsedDetailSection(
+                root,
+                "latency percentiles",
+                buildLatencyLines(latencies),
+                ChatFormatting.LIGHT_PURPLE
+        );
+    }
+
+    /**
+     * 构建常驻采样器的耗时排名表。估计值为指数衰减的每 tick 平均耗时。
+     */
+    public static MutableComponent buildSamplerReport(TicketPerfSampler.SamplerReport r) {
+        MutableComponent root = Component.literal("Sampled Cost Ranking\n")
+                .withStyle(ChatFormatting.AQUA)
+                .append(Component.literal("====================================\n").withStyle(ChatFormatting.DARK_GRAY));
+        if (!r.enabled()) {
+            return root.append(Component.literal("Sampler is disabled.\n").withStyle(ChatFormatting.GRAY));
+        }
+        root = root.append(Component.literal(String.format("Target: %s | Rate=1/%d | Samples=%.1f/tick"
+                                + " | Overhead=%.4fms/tick (budget %.4fms)\n",
+                        r.dimension().location(),
+                        r.rate(),
+                        r.samplesPerTick(),
+                        r.overheadNanosPerTick() / 1_000_000.0,
+                        r.budgetNanosPerTick() / 1_000_000.0))
+                .withStyle(ChatFormatting.GRAY));
+        root = root.append(Component.literal("---- groups ----\n").withStyle(ChatFormatting.DARK_AQUA));
+        if (r.groups().isEmpty()) {
+            root = root.append(noTicketsFoundLine());
+        }
+        for (int i = 0; i < r.groups().size(); i++) {
+            TicketPerfSampler.GroupCost group = r.groups().get(i);
+            root = root.append(Component.empty()
+                    .append(groupComponent(group.owner(), group.memberCount()))
+                    .append(Component.literal(" ").withStyle(ChatFormatting.DARK_GRAY))
+                    .append(Component.literal("G" + i + ": ").withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal(String.format("C=%d, BE=%.2f, E=%.2f, CT=%.2f, ST=%.2f ",
+                                    group.chunkCount(),
+                                    group.beNanosPerTick() / 1_000_000.0,
+                                    group.entityNanosPerTick() / 1_000_000.0,
+                                    group.chunkNanosPerTick() / 1_000_000.0,
+                                    group.scheduledNanosPerTick() / 1_000_000.0))
+                            .withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal(String.format("mspt=%.2f", group.totalNanosPerTick() / 1_000_000.0))
+                            .withStyle(ChatFormatting.GOLD))
+                    .append(Component.literal("\n").withStyle(ChatFormatting.DARK_GRAY)));
+        }
+        root = root.append(Component.literal("---- types ----\n").withStyle(ChatFormatting.DARK_AQUA));
+        for (TicketPerfSampler.TypeCost type : r.types()) {
+            root = root.append(Component.literal("[" + type.category().shortName + "] " + type.name() + " ")
+                            .withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal(String.format("mspt=%.2f", type.nanosPerTick() / 1_000_000.0))
+                            .withStyle(ChatFormatting.GOLD))
+                    .append(Component.literal("\n").withStyle(ChatFormatting.DARK_GRAY));
+        }
+        return root;
+    }
+
+    /**
+     * 构建分组耗时历史报告：每个匹配分组一行近 7 天与再往前 7 天的均值对比，逐日明细折叠显示。
+     */
+    public static MutableComponent buildHistoryReport(ResourceKey<Level> dimension,
+                                                      String query,
+                                                      List<HistorySeries> series) {
+        MutableComponent root = Component.literal("Cost History\n")
+                .withStyle(ChatFormatting.AQUA)
+                .append(Component.literal("====================================\n").withStyle(ChatFormatting.DARK_GRAY))
+                .append(Component.literal("Target: " + dimension.location() + " | Query: " + query + "\n")
+                        .withStyle(ChatFormatting.GRAY));
+        if (series.isEmpty()) {
+            return root.append(Component.literal("No history for this group\n").withStyle(ChatFormatting.GRAY));
+        }
+        List<HistorySeries> sorted = new ArrayList<>(series);
+        // 按整个查询区间的均值排序，只在近期出现的分组也能排进来
+        sorted.sort(Comparator.comparingDouble((HistorySeries s) -> s.average(s.dailyMspt().length, 0)).reversed());
+        int limit = Math.min(sorted.size(), HISTORY_REPORT_LIMIT);
+        for (int i = 0; i < limit; i++) {
+            HistorySeries entry = sorted.get(i);
+            double recent = entry.average(7, 0);
+            double previous = entry.average(7, 7);
+            String change = Double.isNaN(recent) || Double.isNaN(previous) || previous == 0.0
+                    ? "n/a"
+                    : String.format("%+.0f%%", (recent - previous) / previous * 100.0);
+            root = root.append(Component.literal(entry.label() + " ").withStyle(ChatFormatting.WHITE))
+                    .append(Component.literal(String.format("7d=%s, prev 7d=%s, change=%s\n",
+                                    formatHistoryMspt(recent), formatHistoryMspt(previous), change))
+                            .withStyle(ChatFormatting.GOLD));
+            List<String> lines = new ArrayList<>();
+            for (int day = entry.dailyMspt().length - 1; day >= 0; day--) {
+                if (entry.dailySamples()[day] == 0) {
+                    continue;
+                }
+                lines.add(String.format("- %s mspt=%.2f (n=%d)",
+                        LocalDate.ofEpochDay(entry.firstEpochDay() + day),
+                        entry.dailyMspt()[day],
+                        entry.dailySamples()[day]));
+            }
+            root = appendCollapsedDetailSection(root, "daily", lines, ChatFormatting.DARK_AQUA);
+        }
+        if (sorted.size() > limit) {
+            root = root.append(Component.literal("... " + (sorted.size() - limit) + " more groups match\n")
+                    .withStyle(ChatFormatting.DARK_GRAY));
+        }
+        return root;
+    }
+
+    private static String formatHistoryMspt(double mspt) {
+        return Double.isNaN(mspt) ? "-" : String.format("%.2fms", mspt);
+    }
+
+    /**
+     * 构建主线程卡顿的栈采样报告：按分组汇总样本数，展开可见各来源与最常见的栈顶帧。
+     *
+     * @param stallMillis 卡顿时长（毫秒）
+     * @param samples     采样总数
+     * @param groups      分组汇总，按样本数降序
+     * @param foldedPath  折叠栈文件路径，可为 null
+     */
+    public static MutableComponent buildHangReport(long stallMillis,
+                                                   int samples,
+                                                   List<HangGroup> groups,
+                                                   String foldedPath) {
+        MutableComponent root = Component.literal("Server Thread Stall\n")
+                .withStyle(ChatFormatting.AQUA)
+                .append(Component.literal("====================================\n").withStyle(ChatFormatting.DARK_GRAY))
+                .append(Component.literal(String.format("Stalled %dms, %d stack samples\n", stallMillis, samples))
+                        .withStyle(ChatFormatting.GRAY));
+        if (groups.isEmpty() || samples == 0) {
+            return root.append(Component.literal("No samples\n").withStyle(ChatFormatting.GRAY));
+        }
+        int limit = Math.min(groups.size(), HANG_REPORT_LIMIT);
+        for (int i = 0; i < limit; i++) {
+            HangGroup group = groups.get(i);
+            root = root.append(Component.literal(group.label() + " ").withStyle(ChatFormatting.WHITE))
+                    .append(Component.literal(String.format("%.0f%% (%d samples)\n",
+                                    group.samples() * 100.0 / samples, group.samples()))
+                            .withStyle(ChatFormatting.GOLD));
+            root = appendCollapsedDetailSection(root, "sources", group.details(), ChatFormatting.DARK_AQUA);
+        }
+        if (groups.size() > limit) {
+            root = root.append(Component.literal("... " + (groups.size() - limit) + " more groups sampled\n")
+                    .withStyle(ChatFormatting.DARK_GRAY));
+        }
+        if (foldedPath != null) {
+            root = root.append(Component.literal("Folded stacks: " + foldedPath + "\n").withStyle(ChatFormatting.DARK_GRAY));
+        }
         return root;
     }
 
@@ -255,12 +494,15 @@ public final class TicketPerfMessages {
             long serverTickCount,
             long beTotalNanos, long beMaxNanos,
             long entityTotalNanos, long entityMaxNanos,
-            long chunkTotalNanos, long chunkMaxNanos,
+            long chunkTotalNanos, long chunkMaxNanos, long[] chunkPhaseNanos,
+            long scheduledTotalNanos, long scheduledMaxNanos,
             Long2LongOpenHashMap chunkLoadTotals,
             Object2LongOpenHashMap<String> blockEntitySpikeNanos, Map<String, String> blockEntitySpikeLabels,
             Object2LongOpenHashMap<String> typeTotals,
             Object2LongOpenHashMap<String> entitySpikeNanos, Map<String, String> entitySpikeLabels,
             Object2LongOpenHashMap<String> entityTotals,
+            List<TypeLatency> latencies,
+            AnalysisOverhead overhead,
             Duration elapsed
     ) {}
 
@@ -271,11 +513,13 @@ public final class TicketPerfMessages {
         double beMaxMs = nanosToMs(r.beMaxNanos);
         double entityMaxMs = nanosToMs(r.entityMaxNanos);
         double chunkMaxMs = nanosToMs(r.chunkMaxNanos);
-        long combinedNanos = r.beTotalNanos + r.entityTotalNanos + r.chunkTotalNanos;
+        double scheduledMaxMs = nanosToMs(r.scheduledMaxNanos);
+        long combinedNanos = r.beTotalNanos + r.entityTotalNanos + r.chunkTotalNanos + r.scheduledTotalNanos;
         double totalPerTickMs = mspt(combinedNanos, r.serverTickCount);
         double beMspt = mspt(r.beTotalNanos, r.serverTickCount);
         double entityMspt = mspt(r.entityTotalNanos, r.serverTickCount);
         double chunkMspt = mspt(r.chunkTotalNanos, r.serverTickCount);
+        double scheduledMspt = mspt(r.scheduledTotalNanos, r.serverTickCount);
 
         MutableComponent root = Component.literal("Serverwarashi Profiler Report\n")
                 .withStyle(ChatFormatting.AQUA)
@@ -305,6 +549,19 @@ public final class TicketPerfMessages {
             root = root.append(Component.literal(String.format("chunks (mspt=%.2fms/tick)>max=%.3fms\n",
                     chunkMspt, chunkMaxMs)).withStyle(ChatFormatting.BLUE));
         }
+        if (scheduledMspt >= 0.01) {
+            root = root.append(Component.literal(String.format("scheduled ticks (mspt=%.2fms/tick)>max=%.3fms\n",
+                    scheduledMspt, scheduledMaxMs)).withStyle(ChatFormatting.RED));
+        }
+
+        root = root.append(overheadLine(r.overhead, r.serverTickCount));
+
+        root = appendCollapsedDetailSection(
+                root,
+                "chunk tick phases",
+                buildChunkPhaseLines(r.chunkPhaseNanos, r.serverTickCount),
+                ChatFormatting.BLUE
+        );
 
         root = appendCollapsedDetailSection(
                 root,
@@ -341,6 +598,13 @@ public final class TicketPerfMessages {
                 ChatFormatting.YELLOW
         );
 
+        root = appendCollapsedDetailSection(
+                root,
+                "latency percentiles",
+                buildLatencyLines(r.latencies),
+                ChatFormatting.LIGHT_PURPLE
+        );
+
         return root;
     }
 
@@ -394,7 +658,7 @@ public final class TicketPerfMessages {
         spikeNanos.object2LongEntrySet().stream()
                 .filter(entry -> entry.getLongValue() >= SPIKE_MIN_NANOS)
                 .sorted((a, b) -> Long.compare(b.getLongValue(), a.getLongValue()))
-                .limit(5)
+                .limit(SPIKE_REPORT_LIMIT)
                 .forEach(entry -> {
                     double maxMs = nanosToMs(entry.getLongValue());
                     String label = spikeLabels.getOrDefault(entry.getKey(), entry.getKey());
@@ -422,21 +686,216 @@ public final class TicketPerfMessages {
         return lines;
     }
 
+    private static List<String> buildLatencyLines(List<TypeLatency> latencies) {
+        List<String> lines = new ArrayList<>();
+        for (TypeLatency latency : latencies) {
+            if (lines.size() >= LATENCY_REPORT_LIMIT) {
+                break;
+            }
+            lines.add(String.format("- [%s] %s n=%d p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms",
+                    latency.category(),
+                    latency.type(),
+                    latency.count(),
+                    nanosToMs(latency.p50Nanos()),
+                    nanosToMs(latency.p99Nanos()),
+                    nanosToMs(latency.p999Nanos()),
+                    nanosToMs(latency.maxNanos())));
+        }
+        return lines;
+    }
+
+    /**
+     * 分析自身开销：按校准的单次计时成本估算增加的 MSPT，并注明已从各项耗时中扣除的计时器读数。
+     */
+    private static MutableComponent overheadLine(AnalysisOverhead overhead, long serverTickCount) {
+        double callsPerTick = serverTickCount <= 0L ? 0.0 : (double) overhead.timedCalls() / serverTickCount;
+        return Component.literal(String.format(
+                        "analysis overhead: +%.3fms/tick (%.0f calls/tick, %dns/call), timer bias removed=%.3fms/tick (%dns/call)\n",
+                        mspt(overhead.timedCalls() * overhead.perCallNanos(), serverTickCount),
+                        callsPerTick,
+                        overhead.perCallNanos(),
+                        mspt(overhead.compensatedNanos(), serverTickCount),
+                        overhead.timerNanos()))
+                .withStyle(ChatFormatting.DARK_GRAY);
+    }
+
+    private static List<String> buildChunkPhaseLines(long[] phaseNanos, long serverTickCount) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < ChunkTickPhase.COUNT; i++) {
+            double phaseMspt = mspt(phaseNanos[i], serverTickCount);
+            if (phaseMspt < 0.01) {
+                continue;
+            }
+            lines.add(String.format("- %s (mspt=%.2fms/tick)", ChunkTickPhase.byIndex(i).label, phaseMspt));
+        }
+        return lines;
+    }
+
+    /**
+     * 各分组区块 tick 的子阶段拆分，按区块 tick 总耗时降序，首行为全部分组合计。
+     */
+    private static List<String> buildGroupChunkPhaseLines(List<GroupMsptEntry> entries, long serverTickCount) {
+        long[] totals = new long[ChunkTickPhase.COUNT];
+        List<GroupMsptEntry> sorted = new ArrayList<>();
+        for (GroupMsptEntry entry : entries) {
+            if (mspt(entry.chunkTotalNanos(), serverTickCount) < 0.01) {
+                continue;
+            }
+            for (int i = 0; i < ChunkTickPhase.COUNT; i++) {
+                totals[i] += entry.chunkPhaseNanos()[i];
+            }
+            sorted.add(entry);
+        }
+        if (sorted.isEmpty()) {
+            return List.of();
+        }
+        sorted.sort(Comparator.comparingLong(GroupMsptEntry::chunkTotalNanos).reversed());
+        List<String> lines = new ArrayList<>();
+        lines.add("- all groups: " + formatPhases(totals, serverTickCount));
+        for (int i = 0; i < Math.min(CHUNK_PHASE_REPORT_LIMIT, sorted.size()); i++) {
+            GroupMsptEntry entry = sorted.get(i);
+            String label = entry.memberCount() > 1
+                    ? entry.owner() + " (+" + (entry.memberCount() - 1) + ")"
+                    : entry.owner().toString();
+            lines.add("- " + label + ": " + formatPhases(entry.chunkPhaseNanos(), serverTickCount));
+        }
+        return lines;
+    }
+
+    private static String formatPhases(long[] phaseNanos, long serverTickCount) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < ChunkTickPhase.COUNT; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(String.format("%s=%.2f", ChunkTickPhase.byIndex(i).label, mspt(phaseNanos[i], serverTickCount)));
+        }
+        return builder.toString();
+    }
+
+    private static List<String> buildWorstTickLines(List<WorstTick> worstTicks) {
+        List<String> lines = new ArrayList<>();
+        for (WorstTick tick : worstTicks) {
+            lines.add(String.format("- tick %d (total=%.2fms)", tick.tickNumber(), nanosToMs(tick.totalNanos())));
+            for (TickContributor group : tick.groups()) {
+                lines.add(String.format("    %s %.2fms", group.label(), nanosToMs(group.nanos())));
+            }
+            for (TickContributor type : tick.types()) {
+                lines.add(String.format("    %s %.2fms", type.label(), nanosToMs(type.nanos())));
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 时间线中归因耗时最高的单个 tick。
+     */
+    public record WorstTick(long tickNumber,
+                            long totalNanos,
+                            List<TickContributor> groups,
+                            List<TickContributor> types) {
+    }
+
+    /**
+     * 单个 tick 内的主要耗时来源（分组或类型）。
+     */
+    public record TickContributor(String label, long nanos) {
+    }
+
+    /**
+     * 计划刻类型的显示名（方块或流体的注册名）。
+     */
+    public static String scheduledTypeName(Object type) {
+        if (type instanceof Block block) {
+            return BuiltInRegistries.BLOCK.getKey(block).toString();
+        }
+        if (type instanceof Fluid fluid) {
+            return BuiltInRegistries.FLUID.getKey(fluid).toString();
+        }
+        return String.valueOf(type);
+    }
+
+    /**
+     * 单个来源类型的延迟分位数。
+     */
+    public record TypeLatency(String category,
+                              String type,
+                              long count,
+                              long totalNanos,
+                              long p50Nanos,
+                              long p99Nanos,
+                              long p999Nanos,
+                              long maxNanos) {
+    }
+
+    /**
+     * 分析会话自身的计时开销。
+     *
+     * @param timerNanos       单次计时的空区间读数（已逐样本扣除）
+     * @param perCallNanos     单次计时调用的总成本
+     * @param timedCalls       会话内计时调用次数
+     * @param compensatedNanos 累计扣除的纳秒
+     */
+    public record AnalysisOverhead(long timerNanos,
+                                   long perCallNanos,
+                                   long timedCalls,
+                                   long compensatedNanos) {
+    }
+
+    /**
+     * 单个分组的逐日耗时历史。
+     *
+     * @param label         分组标签
+     * @param firstEpochDay 第一天（自 1970-01-01 起的天数）
+     * @param dailyMspt     每天的平均耗时（毫秒/tick），无数据为 NaN
+     * @param dailySamples  每天的样本数
+     */
+    public record HistorySeries(String label, int firstEpochDay, double[] dailyMspt, int[] dailySamples) {
+        /**
+         * 计算从末尾往前跳过 {@code skipDays} 天后、连续 {@code days} 天的样本加权均值。
+         */
+        public double average(int days, int skipDays) {
+            double total = 0.0;
+            long samples = 0L;
+            int end = dailyMspt.length - skipDays;
+            for (int i = Math.max(0, end - days); i < end; i++) {
+                if (dailySamples[i] > 0) {
+                    total += dailyMspt[i] * dailySamples[i];
+                    samples += dailySamples[i];
+                }
+            }
+            return samples == 0L ? Double.NaN : total / samples;
+        }
+    }
+
+    /**
+     * 卡顿采样中的一个分组。
+     *
+     * @param label   分组标签；主线程不在任何被计时来源内时为 {@code <server>}
+     * @param samples 该分组的样本数
+     * @param details 各来源的描述行
+     */
+    public record HangGroup(String label, int samples, List<String> details) {
+    }
+
     /**
      * 单个分组的性能汇总行。
      */
     public record GroupMsptEntry(TicketOwner<?> owner,
+                                 int memberCount,
                                  int chunkCount,
                                  int blockEntityCount,
                                  int entityCount,
                                  long beTotalNanos,
                                  long entityTotalNanos,
-                                 long chunkTotalNanos) {
+                                 long chunkTotalNanos,
+                                 long scheduledTotalNanos,
+                                 long[] chunkPhaseNanos) {
         /**
-         * 计算三类耗时的总纳秒。
+         * 计算四类耗时的总纳秒。
          */
         public long totalNanos() {
-            return beTotalNanos + entityTotalNanos + chunkTotalNanos;
+            return beTotalNanos + entityTotalNanos + chunkTotalNanos + scheduledTotalNanos;
         }
     }
 
@@ -0,0 +1,196 @@
+package com.moepus.serverwarashi.modules.performance.report;
+
+import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.sampling.TicketPerfSampler;
+import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 供看门狗使用的分组快照。
+ * 服务器线程按配置周期把活跃分组与最近已知的分组耗时拷成不可变数组并整体发布；
+ * 看门狗线程在主线程卡死时只读取已发布的快照，不再触碰任何世界状态。
+ * 默认开启，可关闭；优先复用缓存中不受分桶轮换影响的全量分组快照，缓存过旧时才重新采集。
+ */
+public final class TicketPerfWatchdogSnapshot {
+    // 每个维度最多保留的分组数，按方块实体数降序
+    private static final int MAX_GROUPS = 256;
+    // 可复用的全量快照最大年龄，崩溃报告对时效不敏感
+    private static final long REUSE_MAX_AGE_NANOS = 60_000_000_000L;
+
+    private static volatile List<DimensionSnapshot> published = List.of();
+    // 维度 -> 分组标签 -> 最近一次分析得到的耗时（毫秒/tick），只在服务器线程访问
+    private static final Map<ResourceKey<Level>, Object2DoubleOpenHashMap<String>> LAST_COSTS = new HashMap<>();
+
+    private TicketPerfWatchdogSnapshot() {
+    }
+
+    /**
+     * 单个维度的快照。数组在发布后不再修改。
+     *
+     * @param costMspt   各分组耗时（毫秒/tick），未知为 NaN
+     * @param costSource 耗时来源说明
+     */
+    private record DimensionSnapshot(String dimension,
+                                     long capturedAtMillis,
+                                     String costSource,
+                                     String[] labels,
+                                     int[] chunkCounts,
+                                     int[] blockEntityCounts,
+                                     int[] entityCounts,
+                                     double[] costMspt) {
+    }
+
+    /**
+     * 记住分组的最近已知耗时，常驻采样器关闭时作为快照的耗时来源。
+     *
+     * @param dimension 维度
+     * @param label     分组标签（owner 的字符串形式）
+     * @param mspt      耗时（毫秒/tick）
+     */
+    public static void rememberCost(ResourceKey<Level> dimension, String label, double mspt) {
+        LAST_COSTS.computeIfAbsent(dimension, ignored -> {
+            Object2DoubleOpenHashMap<String> map = new Object2DoubleOpenHashMap<>();
+            map.defaultReturnValue(Double.NaN);
+            return map;
+        }).put(label, mspt);
+    }
+
+    /**
+     * 按配置周期重新拍摄并发布快照。
+     *
+     * @param server 当前服务器
+     */
+    public static void onServerTickPost(MinecraftServer server) {
+        if (!TicketPerfConfig.watchdogSnapshotEnabled()) {
+            if (!published.isEmpty()) {
+                published = List.of();
+            }
+            return;
+        }
+        if (server.getTickCount() % TicketPerfConfig.watchdogSnapshotIntervalTicks() != 0) {
+            return;
+        }
+        List<DimensionSnapshot> snapshots = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (ServerLevel level : server.getAllLevels()) {
+            snapshots.add(capture(level, now));
+        }
+        published = List.copyOf(snapshots);
+    }
+
+    /**
+     * 清空运行时状态，服务器停止时调用。
+     */
+    public static void clearRuntimeState() {
+        published = List.of();
+        LAST_COSTS.clear();
+    }
+
+    private static DimensionSnapshot capture(ServerLevel level, long now) {
+        ChunkGroupSnapshot.SnapshotData cached = ChunkGroupService.snapshotCache()
+                .getFreshSnapshot(level.dimension(), ChunkGroupSnapshot.PauseMode.ALL, REUSE_MAX_AGE_NANOS);
+        if (cached == null) {
+            cached = ChunkGroupService.refreshSnapshot(level, ChunkGroupSnapshot.PauseMode.ALL);
+        }
+        List<ChunkGroupSnapshot.ChunkGroupEntry> groups = new ArrayList<>(cached.groups());
+        groups.sort(Comparator.comparingInt(
+                (ChunkGroupSnapshot.ChunkGroupEntry entry) -> entry.stats().blockEntityCount()).reversed());
+
+        Object2DoubleOpenHashMap<String> costs;
+        String costSource;
+        TicketPerfSampler.SamplerReport report = TicketPerfSampler.report(level.dimension(), Integer.MAX_VALUE);
+        if (report.enabled()) {
+            costs = new Object2DoubleOpenHashMap<>(report.groups().size());
+            costs.defaultReturnValue(Double.NaN);
+            for (TicketPerfSampler.GroupCost group : report.groups()) {
+                costs.put(group.owner().toString(), group.totalNanosPerTick() / 1_000_000.0);
+            }
+            costSource = "sampler estimate";
+        } else {
+            costs = LAST_COSTS.get(level.dimension());
+            costSource = "last analysis";
+        }
+
+        int size = Math.min(groups.size(), MAX_GROUPS);
+        String[] labels = new String[size];
+        int[] chunkCounts = new int[size];
+        int[] blockEntityCounts = new int[size];
+        int[] entityCounts = new int[size];
+        double[] costMspt = new double[size];
+        for (int i = 0; i < size; i++) {
+            ChunkGroupSnapshot.ChunkGroupEntry entry = groups.get(i);
+            labels[i] = entry.label();
+            chunkCounts[i] = entry.stats().chunkCount();
+            blockEntityCounts[i] = entry.stats().blockEntityCount();
+            entityCounts[i] = entry.stats().entityCount();
+            costMspt[i] = costs == null ? Double.NaN : costs.getDouble(entry.owner().toString());
+        }
+        return new DimensionSnapshot(level.dimension().location().toString(), now, costSource,
+                labels, chunkCounts, blockEntityCounts, entityCounts, costMspt);
+    }
+
+    /**
+     * 把最近发布的快照追加到崩溃报告末尾，整个过程只打开一次文件。可在任意线程调用。
+     *
+     * @param path  崩溃报告路径
+     * @param extra 写在快照之后的附加内容
+     * @throws IOException 写入失败
+     */
+    public static void appendTo(Path path, TicketPerfFileWriter.TextBody extra) throws IOException {
+        List<DimensionSnapshot> snapshots = published;
+        long now = System.currentTimeMillis();
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(path, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                StandardCharsets.UTF_8))) {
+            out.write("\n\n==== Serverwarashi Ticket Info ====\n");
+            if (snapshots.isEmpty()) {
+                out.write("No snapshot captured (chunkperf_watchdog_snapshot_enabled is off or none taken yet).\n");
+            }
+            for (DimensionSnapshot snapshot : snapshots) {
+                write(out, snapshot, now);
+            }
+            extra.write(out);
+        }
+    }
+
+    private static void write(Writer out, DimensionSnapshot snapshot, long now) throws IOException {
+        out.write("\n-- Dimension: " + snapshot.dimension()
+                + " (captured " + (now - snapshot.capturedAtMillis()) / 1000L + "s before dump, cost: "
+                + snapshot.costSource() + ") --\n");
+        if (snapshot.labels().length == 0) {
+            out.write("No ticket groups.\n");
+            return;
+        }
+        for (int i = 0; i < snapshot.labels().length; i++) {
+            out.write("G" + i + ": " + snapshot.labels()[i]
+                    + " C=" + snapshot.chunkCounts()[i]
+                    + " BE=" + snapshot.blockEntityCounts()[i]
+                    + " E=" + snapshot.entityCounts()[i]);
+            double mspt = snapshot.costMspt()[i];
+            if (!Double.isNaN(mspt)) {
+                out.write(String.format(Locale.ROOT, " cost=%.3fms/t", mspt));
+            }
+            out.write('\n');
+        }
+    }
+}
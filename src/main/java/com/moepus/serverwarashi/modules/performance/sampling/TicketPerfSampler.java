@@ -0,0 +1,505 @@
+package com.moepus.serverwarashi.modules.performance.sampling;
+
+import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.common.jfr.GroupCostEvent;
+import com.moepus.serverwarashi.common.ticket.TicketOwner;
+import com.moepus.serverwarashi.config.TicketPerfConfig;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongMap;
+import it.unimi.dsi.fastutil.objects.Reference2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import jdk.jfr.EventType;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.entity.TickingBlockEntity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 常驻低开销采样器。
+ * 对方块实体 / 实体 / 区块 tick / 计划刻随机抽取约 1/N 计时，按分组与类型维护指数衰减的每 tick 耗时估计。
+ * 采样自身开销按窗口测量，超过平均 MSPT 的配置比例时自动降低采样率。
+ * 全部状态只在服务器线程访问。
+ */
+public final class TicketPerfSampler {
+    // 估计值折叠窗口
+    private static final int FOLD_INTERVAL_TICKS = 20;
+    // 区块 -> 分组映射的重建周期
+    private static final int REMAP_INTERVAL_TICKS = 600;
+    // 重建映射时可直接复用的分组快照最大年龄，与重建周期（20 TPS 下）一致
+    private static final long REMAP_MAX_AGE_NANOS = 30_000_000_000L;
+    private static final int MAX_RATE = 1 << 16;
+    // 低于该值（纳秒/tick）且已不在当前分组中的估计会被丢弃
+    private static final double MIN_ESTIMATE_NANOS = 100.0;
+    private static final String CHUNK_TYPE = "chunk tick";
+    // 折叠时只查询一次是否在录制，不再为判断而分配事件对象
+    private static final EventType GROUP_COST_EVENT = EventType.getEventType(GroupCostEvent.class);
+
+    private static boolean enabled;
+    private static int rate = 1;
+    private static int countdown = 1;
+    private static long randomState = 0x9E3779B97F4A7C15L;
+
+    private static final Reference2ObjectOpenHashMap<ResourceKey<Level>, DimensionState> DIMENSIONS =
+            new Reference2ObjectOpenHashMap<>();
+    private static final Object2LongOpenHashMap<String> BLOCK_ENTITY_TYPE_WINDOW = new Object2LongOpenHashMap<>();
+    private static final Reference2LongOpenHashMap<EntityType<?>> ENTITY_TYPE_WINDOW = new Reference2LongOpenHashMap<>();
+    private static long chunkTypeWindowNanos;
+    private static final Reference2LongOpenHashMap<Object> SCHEDULED_TYPE_WINDOW = new Reference2LongOpenHashMap<>();
+    private static final Map<String, TypeEstimate> TYPE_ESTIMATES = new HashMap<>();
+
+    private static int windowTicks;
+    private static long windowSamples;
+    private static long windowOverheadNanos;
+    private static double overheadNanosPerTick;
+    private static double samplesPerTick;
+    private static double budgetNanosPerTick;
+
+    private TicketPerfSampler() {
+    }
+
+    // --- 热路径 ---
+
+    /**
+     * 判断本次 tick 是否计时。未启用时只读一个静态字段。
+     *
+     * @return 是否采样本次 tick
+     */
+    public static boolean shouldSample() {
+        return enabled && --countdown <= 0 && rearm();
+    }
+
+    public static void recordBlockEntityTick(Level level, TickingBlockEntity ticker, long durationNanos, long tickEndNanos) {
+        DimensionState state = DIMENSIONS.get(level.dimension());
+        if (state != null) {
+            int groupIndex = state.chunkToGroup.get(ChunkPos.asLong(ticker.getPos()));
+            if (groupIndex >= 0) {
+                state.beWindowNanos[groupIndex] += durationNanos;
+            }
+        }
+        BLOCK_ENTITY_TYPE_WINDOW.addTo(ticker.getType(), durationNanos);
+        finishSample(tickEndNanos);
+    }
+
+    public static void recordEntityTick(Level level, Entity entity, long chunkPos, long durationNanos, long tickEndNanos) {
+        DimensionState state = DIMENSIONS.get(level.dimension());
+        if (state != null) {
+            int groupIndex = state.chunkToGroup.get(chunkPos);
+            if (groupIndex >= 0) {
+                state.entityWindowNanos[groupIndex] += durationNanos;
+            }
+        }
+        ENTITY_TYPE_WINDOW.addTo(entity.getType(), durationNanos);
+        finishSample(tickEndNanos);
+    }
+
+    public static void recordChunkTick(Level level, long chunkPos, long durationNanos, long tickEndNanos) {
+        DimensionState state = DIMENSIONS.get(level.dimension());
+        if (state != null) {
+            int groupIndex = state.chunkToGroup.get(chunkPos);
+            if (groupIndex >= 0) {
+                state.chunkWindowNanos[groupIndex] += durationNanos;
+            }
+        }
+        chunkTypeWindowNanos += durationNanos;
+        finishSample(tickEndNanos);
+    }
+
+    /**
+     * @param type 方块或流体
+     */
+    public static void recordScheduledTick(Level level, Object type, long chunkPos, long durationNanos, long tickEndNanos) {
+        DimensionState state = DIMENSIONS.get(level.dimension());
+        if (state != null) {
+            int groupIndex = state.chunkToGroup.get(chunkPos);
+            if (groupIndex >= 0) {
+                state.scheduledWindowNanos[groupIndex] += durationNanos;
+            }
+        }
+        SCHEDULED_TYPE_WINDOW.addTo(type, durationNanos);
+        finishSample(tickEndNanos);
+    }
+
+    private static void finishSample(long tickEndNanos) {
+        windowSamples++;
+        windowOverheadNanos += System.nanoTime() - tickEndNanos;
+    }
+
+    private static boolean rearm() {
+        countdown = nextInterval();
+        return true;
+    }
+
+    /**
+     * 在 [1, 2N-1] 内均匀取下一次采样间隔，均值为 N，避免与周期性负载同相。
+     */
+    private static int nextInterval() {
+        if (rate <= 1) {
+            return 1;
+        }
+        long x = randomState;
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        randomState = x;
+        return 1 + (int) ((x >>> 1) % (2L * rate - 1));
+    }
+
+    // --- 生命周期 ---
+
+    /**
+     * 服务器 tick 结束时推进采样窗口：折叠估计、调节采样率、周期性重建分组映射。
+     *
+     * @param server 当前服务器
+     */
+    public static void onServerTickPost(MinecraftServer server) {
+        if (!TicketPerfConfig.samplerEnabled()) {
+            if (enabled) {
+                clearRuntimeState();
+            }
+            return;
+        }
+        if (!enabled) {
+            enabled = true;
+            rate = TicketPerfConfig.samplerRate();
+            countdown = nextInterval();
+            remap(server);
+            return;
+        }
+        windowTicks++;
+        boolean remapDue = server.getTickCount() % REMAP_INTERVAL_TICKS == 0;
+        // 重建映射前先折叠窗口，窗口累计按旧分组下标保存
+        if (windowTicks >= FOLD_INTERVAL_TICKS || remapDue) {
+            fold(server);
+        }
+        if (remapDue) {
+            remap(server);
+        }
+    }
+
+    /**
+     * 清空采样器的全部运行时状态。
+     */
+    public static void clearRuntimeState() {
+        enabled = false;
+        rate = 1;
+        countdown = 1;
+        DIMENSIONS.clear();
+        BLOCK_ENTITY_TYPE_WINDOW.clear();
+        ENTITY_TYPE_WINDOW.clear();
+        chunkTypeWindowNanos = 0L;
+        SCHEDULED_TYPE_WINDOW.clear();
+        TYPE_ESTIMATES.clear();
+        windowTicks = 0;
+        windowSamples = 0L;
+        windowOverheadNanos = 0L;
+        overheadNanosPerTick = 0.0;
+        samplesPerTick = 0.0;
+        budgetNanosPerTick = 0.0;
+    }
+
+    private static void fold(MinecraftServer server) {
+        // 采样耗时 * N 近似全量耗时，再均摊到窗口内每个 tick
+        double scale = (double) rate / windowTicks;
+        double keep = Math.pow(0.5, windowTicks / (double) TicketPerfConfig.samplerHalfLifeTicks());
+        double gain = 1.0 - keep;
+
+        for (Map.Entry<ResourceKey<Level>, DimensionState> entry : DIMENSIONS.entrySet()) {
+            entry.getValue().fold(scale, keep, gain);
+            entry.getValue().commitCostEvents(entry.getKey());
+        }
+        for (TypeEstimate estimate : TYPE_ESTIMATES.values()) {
+            estimate.nanosPerTick *= keep;
+        }
+        for (Object2LongMap.Entry<String> entry : BLOCK_ENTITY_TYPE_WINDOW.object2LongEntrySet()) {
+            typeEstimate(TypeCategory.BLOCK_ENTITY, entry.getKey()).nanosPerTick += entry.getLongValue() * scale * gain;
+        }
+        for (Reference2LongMap.Entry<EntityType<?>> entry : ENTITY_TYPE_WINDOW.reference2LongEntrySet()) {
+            String name = BuiltInRegistries.ENTITY_TYPE.getKey(entry.getKey()).toString();
+            typeEstimate(TypeCategory.ENTITY, name).nanosPerTick += entry.getLongValue() * scale * gain;
+        }
+        if (chunkTypeWindowNanos > 0L) {
+            typeEstimate(TypeCategory.CHUNK, CHUNK_TYPE).nanosPerTick += chunkTypeWindowNanos * scale * gain;
+        }
+        for (Reference2LongMap.Entry<Object> entry : SCHEDULED_TYPE_WINDOW.reference2LongEntrySet()) {
+            String name = TicketPerfMessages.scheduledTypeName(entry.getKey());
+            typeEstimate(TypeCategory.SCHEDULED, name).nanosPerTick += entry.getLongValue() * scale * gain;
+        }
+        TYPE_ESTIMATES.values().removeIf(estimate -> estimate.nanosPerTick < MIN_ESTIMATE_NANOS);
+
+        adjustRate(server);
+
+        BLOCK_ENTITY_TYPE_WINDOW.clear();
+        ENTITY_TYPE_WINDOW.clear();
+        chunkTypeWindowNanos = 0L;
+        SCHEDULED_TYPE_WINDOW.clear();
+        windowTicks = 0;
+        windowSamples = 0L;
+        windowOverheadNanos = 0L;
+    }
+
+    /**
+     * 开销超过预算时采样率减半，远低于预算时逐步恢复到配置值。
+     */
+    private static void adjustRate(MinecraftServer server) {
+        overheadNanosPerTick = (double) windowOverheadNanos / windowTicks;
+        samplesPerTick = (double) windowSamples / windowTicks;
+        budgetNanosPerTick = server.getAverageTickTimeNanos() * TicketPerfConfig.samplerMaxOverheadFraction();
+        int configuredRate = TicketPerfConfig.samplerRate();
+        if (overheadNanosPerTick > budgetNanosPerTick && rate < MAX_RATE) {
+            rate = Math.min(rate * 2, MAX_RATE);
+        } else if (overheadNanosPerTick * 4.0 < budgetNanosPerTick && rate > configuredRate) {
+            rate = Math.max(rate / 2, configuredRate);
+        } else if (rate < configuredRate) {
+            rate = configuredRate;
+        }
+    }
+
+    private static TypeEstimate typeEstimate(TypeCategory category, String name) {
+        return TYPE_ESTIMATES.computeIfAbsent(category.prefix + name, ignored -> new TypeEstimate(category, name));
+    }
+
+    /**
+     * 按全部分组重建区块 -> 分组映射。已有估计按 owner 保留并继续衰减。
+     * 不按暂停状态过滤：分桶轮换远快于重建周期，暂停的区块本就不产生样本。
+     * 缓存中已有不超过一个重建周期的快照时直接复用，否则才重新采集；
+     * 重建耗时计入下一窗口的开销，参与采样率调节。
+     */
+    private static void remap(MinecraftServer server) {
+        long start = System.nanoTime();
+        for (ServerLevel level : server.getAllLevels()) {
+            ChunkGroupSnapshot.SnapshotData snapshot = ChunkGroupService.snapshotCache().getFreshSnapshot(
+                    level.dimension(), ChunkGroupSnapshot.PauseMode.ALL, REMAP_MAX_AGE_NANOS);
+            if (snapshot == null) {
+                snapshot = ChunkGroupService.refreshSnapshot(level, ChunkGroupSnapshot.PauseMode.ALL);
+            }
+            DimensionState previous = DIMENSIONS.get(level.dimension());
+            DIMENSIONS.put(level.dimension(), new DimensionState(snapshot.groups(), previous));
+        }
+        windowOverheadNanos += System.nanoTime() - start;
+    }
+
+    // --- 报告 ---
+
+    /**
+     * 生成指定维度的当前排名快照。
+     *
+     * @param dimension 目标维度
+     * @param limit     每张表最多条目数
+     * @return 排名快照
+     */
+    public static SamplerReport report(ResourceKey<Level> dimension, int limit) {
+        List<GroupCost> groups = new ArrayList<>();
+        DimensionState state = DIMENSIONS.get(dimension);
+        if (state != null) {
+            for (GroupEstimate estimate : state.estimates.values()) {
+                groups.add(new GroupCost(
+                        estimate.owner,
+                        estimate.memberCount,
+                        estimate.chunkCount,
+                        estimate.beNanosPerTick,
+                        estimate.entityNanosPerTick,
+                        estimate.chunkNanosPerTick,
+                        estimate.scheduledNanosPerTick
+                ));
+            }
+        }
+        groups.sort(Comparator.comparingDouble(GroupCost::totalNanosPerTick).reversed());
+
+        List<TypeCost> types = new ArrayList<>(TYPE_ESTIMATES.size());
+        for (TypeEstimate estimate : TYPE_ESTIMATES.values()) {
+            types.add(new TypeCost(estimate.category, estimate.name, estimate.nanosPerTick));
+        }
+        types.sort(Comparator.comparingDouble(TypeCost::nanosPerTick).reversed());
+
+        return new SamplerReport(
+                dimension,
+                enabled,
+                rate,
+                samplesPerTick,
+                overheadNanosPerTick,
+                budgetNanosPerTick,
+                groups.subList(0, Math.min(limit, groups.size())),
+                types.subList(0, Math.min(limit, types.size()))
+        );
+    }
+
+    public enum TypeCategory {
+        BLOCK_ENTITY("BE", "be:"),
+        ENTITY("E", "e:"),
+        CHUNK("C", "c:"),
+        SCHEDULED("S", "s:");
+
+        public final String shortName;
+        private final String prefix;
+
+        TypeCategory(String shortName, String prefix) {
+            this.shortName = shortName;
+            this.prefix = prefix;
+        }
+    }
+
+    /**
+     * 采样器当前状态与排名。
+     */
+    public record SamplerReport(ResourceKey<Level> dimension,
+                                boolean enabled,
+                                int rate,
+                                double samplesPerTick,
+                                double overheadNanosPerTick,
+                                double budgetNanosPerTick,
+                                List<GroupCost> groups,
+                                List<TypeCost> types) {
+    }
+
+    public record GroupCost(TicketOwner<?> owner,
+                            int memberCount,
+                            int chunkCount,
+                            double beNanosPerTick,
+                            double entityNanosPerTick,
+                            double chunkNanosPerTick,
+                            double scheduledNanosPerTick) {
+        public double totalNanosPerTick() {
+            return beNanosPerTick + entityNanosPerTick + chunkNanosPerTick + scheduledNanosPerTick;
+        }
+    }
+
+    public record TypeCost(TypeCategory category, String name, double nanosPerTick) {
+    }
+
+    private static final class TypeEstimate {
+        private final TypeCategory category;
+        private final String name;
+        private double nanosPerTick;
+
+        private TypeEstimate(TypeCategory category, String name) {
+            this.category = category;
+            this.name = name;
+        }
+    }
+
+    private static final class GroupEstimate {
+        private final TicketOwner<?> owner;
+        private int memberCount;
+        private int chunkCount;
+        private double beNanosPerTick;
+        private double entityNanosPerTick;
+        private double chunkNanosPerTick;
+        private double scheduledNanosPerTick;
+        // 是否仍属于当前区块 -> 分组映射
+        private boolean mapped;
+
+        private GroupEstimate(TicketOwner<?> owner) {
+            this.owner = owner;
+        }
+
+        private double totalNanosPerTick() {
+            return beNanosPerTick + entityNanosPerTick + chunkNanosPerTick + scheduledNanosPerTick;
+        }
+    }
+
+    /**
+     * 单个维度的采样状态：分组映射、当前窗口累计（按分组下标）与按 owner 保存的估计。
+     */
+    private static final class DimensionState {
+        private final Long2IntOpenHashMap chunkToGroup;
+        private final GroupEstimate[] groupEstimates;
+        private final long[] beWindowNanos;
+        private final long[] entityWindowNanos;
+        private final long[] chunkWindowNanos;
+        private final long[] scheduledWindowNanos;
+        private final Map<TicketOwner<?>, GroupEstimate> estimates;
+
+        private DimensionState(List<ChunkGroupSnapshot.ChunkGroupEntry> groups, DimensionState previous) {
+            int size = groups.size();
+            this.chunkToGroup = new Long2IntOpenHashMap();
+            this.chunkToGroup.defaultReturnValue(-1);
+            this.groupEstimates = new GroupEstimate[size];
+            this.beWindowNanos = new long[size];
+            this.entityWindowNanos = new long[size];
+            this.chunkWindowNanos = new long[size];
+            this.scheduledWindowNanos = new long[size];
+            this.estimates = previous == null ? new HashMap<>() : previous.estimates;
+            for (GroupEstimate estimate : estimates.values()) {
+                estimate.mapped = false;
+            }
+            for (int i = 0; i < size; i++) {
+                ChunkGroupSnapshot.ChunkGroupEntry entry = groups.get(i);
+                for (long chunkPos : entry.chunks()) {
+                    chunkToGroup.put(chunkPos, i);
+                }
+                GroupEstimate estimate = estimates.computeIfAbsent(entry.owner(), GroupEstimate::new);
+                estimate.memberCount = entry.memberCount();
+                estimate.chunkCount = entry.stats().chunkCount();
+                estimate.mapped = true;
+                groupEstimates[i] = estimate;
+            }
+        }
+
+        private void fold(double scale, double keep, double gain) {
+            for (GroupEstimate estimate : estimates.values()) {
+                estimate.beNanosPerTick *= keep;
+                estimate.entityNanosPerTick *= keep;
+                estimate.chunkNanosPerTick *= keep;
+                estimate.scheduledNanosPerTick *= keep;
+            }
+            for (int i = 0; i < groupEstimates.length; i++) {
+                GroupEstimate estimate = groupEstimates[i];
+                estimate.beNanosPerTick += beWindowNanos[i] * scale * gain;
+                estimate.entityNanosPerTick += entityWindowNanos[i] * scale * gain;
+                estimate.chunkNanosPerTick += chunkWindowNanos[i] * scale * gain;
+                estimate.scheduledNanosPerTick += scheduledWindowNanos[i] * scale * gain;
+                beWindowNanos[i] = 0L;
+                entityWindowNanos[i] = 0L;
+                chunkWindowNanos[i] = 0L;
+                scheduledWindowNanos[i] = 0L;
+            }
+            Iterator<GroupEstimate> iterator = estimates.values().iterator();
+            while (iterator.hasNext()) {
+                GroupEstimate estimate = iterator.next();
+                if (estimate.totalNanosPerTick() < MIN_ESTIMATE_NANOS && !estimate.mapped) {
+                    iterator.remove();
+                }
+            }
+        }
+
+        /**
+         * JFR 录制中时为每个仍被映射的分组提交一条耗时事件。
+         */
+        private void commitCostEvents(ResourceKey<Level> dimension) {
+            if (!GROUP_COST_EVENT.isEnabled()) {
+                return;
+            }
+            String dimensionName = dimension.location().toString();
+            for (GroupEstimate estimate : groupEstimates) {
+                GroupCostEvent event = new GroupCostEvent();
+                if (!event.shouldCommit()) {
+                    return;
+                }
+                event.dimension = dimensionName;
+                event.group = estimate.owner.toString();
+                event.source = "sampler";
+                event.blockEntityNanos = (long) estimate.beNanosPerTick;
+                event.entityNanos = (long) estimate.entityNanosPerTick;
+                event.chunkNanos = (long) estimate.chunkNanosPerTick;
+                event.scheduledNanos = (long) estimate.scheduledNanosPerTick;
+                event.commit();
+            }
+        }
+    }
+}
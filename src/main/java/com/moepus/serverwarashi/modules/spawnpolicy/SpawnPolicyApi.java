@@ -0,0 +1,54 @@
+package com.moepus.serverwarashi.modules.spawnpolicy;
+
+import com.moepus.serverwarashi.config.SpawnPolicyConfig;
+import com.moepus.serverwarashi.modules.performance.report.TicketPerfMessages;
+import net.minecraft.ChatFormatting;
+import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.server.level.ServerLevel;
+
+/**
+ * 自然生成抑制模块对外入口。
+ * 层级：入口层。
+ * 上游：Commands。下游：SpawnPolicyService。
+ */
+public final class SpawnPolicyApi {
+    private SpawnPolicyApi() {
+    }
+
+    /**
+     * 扫描当前维度并列出附近无玩家（启用策略时会被跳过自然生成）的分组，不修改任何状态。
+     *
+     * @param level 目标维度
+     * @return 分析报告
+     */
+    public static Component scan(ServerLevel level) {
+        SpawnPolicyService.SpawnScan scan = SpawnPolicyService.scan(level);
+        MutableComponent root = Component.literal("Groups without nearby players:\n").withStyle(ChatFormatting.AQUA)
+                .append(Component.literal("Dimension: " + level.dimension().location()
+                        + " | Groups=" + scan.groupCount()
+                        + " | Suppressible=" + scan.suppressedGroups().size() + "/" + scan.suppressedChunks().size()
+                        + " | Policy=" + (SpawnPolicyConfig.enabled() ? "on" : "off") + "\n")
+                        .withStyle(ChatFormatting.GRAY));
+        if (scan.suppressedGroups().isEmpty()) {
+            return root.append(Component.literal("Every group has a player nearby\n"));
+        }
+        for (int i = 0; i < scan.suppressedGroups().size(); i++) {
+            SpawnPolicyService.SuppressedGroup group = scan.suppressedGroups().get(i);
+            root = root.append(Component.empty()
+                    .append(TicketPerfMessages.groupComponent(group.owner(), group.memberCount()))
+                    .append(Component.literal(" ").withStyle(ChatFormatting.DARK_GRAY))
+                    .append(Component.literal("S" + i + ": ").withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal("C=" + group.chunkCount()).withStyle(ChatFormatting.GRAY))
+                    .append(Component.literal("\n").withStyle(ChatFormatting.DARK_GRAY)));
+        }
+        return root;
+    }
+
+    /**
+     * 关闭策略后立即恢复全部维度的自然生成。
+     */
+    public static void clearAll() {
+        SpawnPolicyRuntime.clearRuntimeState();
+    }
+}
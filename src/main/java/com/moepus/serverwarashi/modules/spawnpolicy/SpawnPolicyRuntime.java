@@ -0,0 +1,75 @@
+package com.moepus.serverwarashi.modules.spawnpolicy;
+
+import com.moepus.serverwarashi.config.SpawnPolicyConfig;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import net.minecraft.resources.ResourceKey;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.Level;
+
+/**
+ * 自然生成抑制模块运行时入口。
+ * 层级：入口层。
+ * 上游：ServerWarashiEvents / TicketPerfMixinHooks。下游：SpawnPolicyService。
+ */
+public final class SpawnPolicyRuntime {
+    private static final Reference2ObjectOpenHashMap<ResourceKey<Level>, LongOpenHashSet> SUPPRESSED_CHUNKS =
+            new Reference2ObjectOpenHashMap<>();
+    private static ResourceKey<Level> cachedDimension;
+    private static LongOpenHashSet cachedChunks;
+
+    private SpawnPolicyRuntime() {
+    }
+
+    /**
+     * 在维度 tick 中按周期重新评估各分组附近是否有玩家。
+     * 关闭策略后首次进入该维度时丢弃该维度的抑制集合。
+     *
+     * @param level 目标维度
+     */
+    public static void onLevelTickPre(ServerLevel level) {
+        if (!SpawnPolicyConfig.enabled()) {
+            if (SUPPRESSED_CHUNKS.remove(level.dimension()) != null) {
+                invalidateCache();
+            }
+            return;
+        }
+        if (level.getServer().getTickCount() % SpawnPolicyConfig.scanIntervalTicks() != 0) {
+            return;
+        }
+        SUPPRESSED_CHUNKS.put(level.dimension(), SpawnPolicyService.scan(level).suppressedChunks());
+        invalidateCache();
+    }
+
+    /**
+     * 热路径：判断指定区块本 tick 是否跳过自然生成。策略关闭时只做一次空表判断。
+     *
+     * @param level    目标维度
+     * @param chunkPos 区块坐标
+     * @return 是否跳过
+     */
+    public static boolean isSpawnSuppressed(Level level, long chunkPos) {
+        if (SUPPRESSED_CHUNKS.isEmpty()) {
+            return false;
+        }
+        ResourceKey<Level> dimension = level.dimension();
+        if (dimension != cachedDimension) {
+            cachedDimension = dimension;
+            cachedChunks = SUPPRESSED_CHUNKS.get(dimension);
+        }
+        return cachedChunks != null && cachedChunks.contains(chunkPos);
+    }
+
+    /**
+     * 清空抑制模块的全部运行时状态。
+     */
+    public static void clearRuntimeState() {
+        SUPPRESSED_CHUNKS.clear();
+        invalidateCache();
+    }
+
+    private static void invalidateCache() {
+        cachedDimension = null;
+        cachedChunks = null;
+    }
+}
@@ -0,0 +1,89 @@
+package com.moepus.serverwarashi.modules.spawnpolicy;
+
+import com.moepus.serverwarashi.common.group.ChunkGroupService;
+import com.moepus.serverwarashi.common.group.ChunkGroupSnapshot;
+import com.moepus.serverwarashi.common.ticket.TicketOwner;
+import com.moepus.serverwarashi.config.SpawnPolicyConfig;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.level.ChunkPos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 自然生成抑制策略实现。
+ * 以分组为单位判定：分组内任一区块附近有玩家时整组照常生成，否则整组跳过
+ * {@code NaturalSpawner.spawnForChunk}，连同其中逐区块的本地生物上限计算一起省掉。
+ */
+public final class SpawnPolicyService {
+    private SpawnPolicyService() {
+    }
+
+    /**
+     * 扫描当前维度的全部分组，找出附近没有玩家的分组。
+     * 不按暂停状态过滤：分桶轮换远快于扫描周期，扫描后才轮换进来的分组也必须被覆盖；
+     * 暂停中的区块本就不生成，纳入抑制集合没有副作用。
+     *
+     * @param level 目标维度
+     * @return 扫描结果
+     */
+    public static SpawnScan scan(ServerLevel level) {
+        List<ChunkGroupSnapshot.ChunkGroupEntry> groups =
+                ChunkGroupService.listGroups(level, ChunkGroupSnapshot.PauseMode.ALL);
+        LongArrayList playerChunks = new LongArrayList();
+        for (ServerPlayer player : level.players()) {
+            if (!player.isSpectator()) {
+                playerChunks.add(player.chunkPosition().toLong());
+            }
+        }
+        int radius = SpawnPolicyConfig.playerRadiusChunks();
+        LongOpenHashSet suppressedChunks = new LongOpenHashSet();
+        List<SuppressedGroup> suppressedGroups = new ArrayList<>();
+        for (ChunkGroupSnapshot.ChunkGroupEntry group : groups) {
+            if (anyPlayerNearby(group, playerChunks, radius)) {
+                continue;
+            }
+            suppressedChunks.addAll(group.chunks());
+            suppressedGroups.add(new SuppressedGroup(group.owner(), group.memberCount(), group.stats().chunkCount()));
+        }
+        return new SpawnScan(groups.size(), suppressedGroups, suppressedChunks);
+    }
+
+    private static boolean anyPlayerNearby(ChunkGroupSnapshot.ChunkGroupEntry group,
+                                           LongArrayList playerChunks,
+                                           int radius) {
+        if (playerChunks.isEmpty()) {
+            return false;
+        }
+        for (long chunkPos : group.chunks()) {
+            int x = ChunkPos.getX(chunkPos);
+            int z = ChunkPos.getZ(chunkPos);
+            for (int i = 0; i < playerChunks.size(); i++) {
+                long playerChunk = playerChunks.getLong(i);
+                if (Math.abs(ChunkPos.getX(playerChunk) - x) <= radius
+                        && Math.abs(ChunkPos.getZ(playerChunk) - z) <= radius) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 一次扫描的结果。
+     *
+     * @param groupCount       参与判定的分组数
+     * @param suppressedGroups 附近无玩家的分组
+     * @param suppressedChunks 这些分组的全部区块
+     */
+    public record SpawnScan(int groupCount,
+                            List<SuppressedGroup> suppressedGroups,
+                            LongOpenHashSet suppressedChunks) {
+    }
+
+    public record SuppressedGroup(TicketOwner<?> owner, int memberCount, int chunkCount) {
+    }
+}